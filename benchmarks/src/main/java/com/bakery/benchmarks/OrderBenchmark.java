@@ -0,0 +1,46 @@
+package com.bakery.benchmarks;
+
+import com.bakery.model.Order;
+import com.bakery.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderBenchmark places orders end to end the way the order screen does, without the screen
+ * Each order looks up a few products, checks their stock, fills a cart and places it, which
+ * updates the stock, appends the sales to the ledger and logs the change
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBenchmark {
+    private static final int LINES_PER_ORDER = 3;
+    
+    @Benchmark
+    @Threads(1)
+    public boolean placeOrder(StoreState state) {
+        Order order = new Order();
+        for (int i = 0; i < LINES_PER_ORDER; i++) {
+            Product product = state.store.findProductById(state.randomProductId());
+            if (product != null && product.getQuantity() >= 1) {
+                order.addLine(product, 1);
+            }
+        }
+        return state.store.placeOrder(order);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean placeOrderConcurrently(StoreState state) {
+        return placeOrder(state);
+    }
+}
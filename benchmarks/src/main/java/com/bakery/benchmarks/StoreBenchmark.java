@@ -0,0 +1,78 @@
+package com.bakery.benchmarks;
+
+import com.bakery.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StoreBenchmark measures the DataStore calls the screens make most, on a local store
+ * Results are operations per second over all threads; the *Concurrently variants use every
+ * core, as a store serving several tills would
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBenchmark {
+    
+    @Benchmark
+    @Threads(1)
+    public Product findProductById(StoreState state) {
+        return state.store.findProductById(state.randomProductId());
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Product findProductByIdConcurrently(StoreState state) {
+        return findProductById(state);
+    }
+    
+    // Sell one of a random product, as a till does for a single item
+    @Benchmark
+    @Threads(1)
+    public boolean updateStock(StoreState state) {
+        return state.store.updateStock(state.randomProductId(), 1);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean updateStockConcurrently(StoreState state) {
+        return updateStock(state);
+    }
+    
+    // Add a product under a fresh ID, as the product screen does
+    @Benchmark
+    @Threads(1)
+    public void addProduct(StoreState state) {
+        int id = state.store.getNextProductId();
+        state.store.addProduct(new Product(id, "Benchmark Loaf " + id, "Bread", 3.5, 10));
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addProductConcurrently(StoreState state) {
+        addProduct(state);
+    }
+    
+    // A copy of the whole catalog
+    @Benchmark
+    @Threads(1)
+    public List<Product> getProducts(StoreState state) {
+        return state.store.getProducts();
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<Product> getProductsConcurrently(StoreState state) {
+        return getProducts(state);
+    }
+}
@@ -0,0 +1,56 @@
+package com.bakery.benchmarks;
+
+import com.bakery.model.BenchmarkData;
+import com.bakery.model.DataStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * StoreState is a local DataStore opened on a fresh data directory of catalogSize products
+ * Every product has more stock than a benchmark can sell, so stock updates always succeed
+ *
+ * The store is a singleton, so each trial needs its own JVM: keep @Fork at 1 or more.
+ */
+@State(Scope.Benchmark)
+public class StoreState {
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+    
+    DataStore store;
+    private Path dataDir;
+    private int firstAddedId;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataDir = BenchmarkData.createDataDir(catalogSize);
+        store = BenchmarkData.openStore(dataDir);
+        firstAddedId = store.getNextProductId();
+    }
+    
+    // Remove products added during the iteration, so the catalog keeps its size
+    @TearDown(Level.Iteration)
+    public void removeAddedProducts() {
+        int nextId = store.getNextProductId();
+        for (int id = firstAddedId; id < nextId; id++) {
+            store.deleteProduct(id);
+        }
+        firstAddedId = nextId + 1;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataStore.shutdown();
+        BenchmarkData.delete(dataDir);
+    }
+    
+    // The ID of a random product in the seeded catalog
+    int randomProductId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
@@ -0,0 +1,405 @@
+package com.bakery.controller;
+
+import com.bakery.model.BenchmarkData;
+import com.bakery.model.DataStore;
+import com.bakery.model.Product;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
+
+/**
+ * UiPerformanceSuite - Times the product screens against a large catalog, without a display
+ * Usage: UiPerformanceSuite <catalog size>
+ *
+ * JavaFX runs on Monocle's headless platform with the software renderer, so the suite works
+ * on a build server. The store is seeded with the given number of products, then for the
+ * order and product screens it measures, on the JavaFX Application Thread:
+ * - sceneBuild: building the screen's controls and scene
+ * - firstRender: from the scene being shown to the end of the first layout with table rows
+ * - scrollFrame: one pulse of scrolling the product table, wheel steps and thumb jumps,
+ *   from the scroll to the end of that pulse's CSS and layout
+ * - selectRow (product screen): from a row being selected to the end of the layout showing
+ *   it in the form, which ProductController.populateForm fills in
+ * Jumps and selections pick rows among those the table holds, which for a catalog larger than
+ * PagedProductList's window is the window around the rows shown.
+ * Each measure is checked against a budget in milliseconds, the same for every catalog size,
+ * given as a system property (defaults in brackets): on the median for sceneBuild [250] and
+ * firstRender [1000], on the 99th percentile for scrollFrame [50] and selectRow [50], e.g.
+ * -Dui-perf.frameMillis=30. Results are written as TSV to ui-perf.dir (default
+ * target/ui-perf). The exit status is 1 if any budget is exceeded.
+ *
+ * The store is a singleton, so each catalog size runs in its own JVM.
+ * Run it with: mvn -f benchmarks/pom.xml -Pui-perf package
+ */
+public class UiPerformanceSuite {
+    private static final long FX_TIMEOUT_SECONDS = 120;
+    private static final int BUILDS = Integer.getInteger("ui-perf.builds", 5);
+    private static final int SCROLL_FRAMES = Integer.getInteger("ui-perf.scrollFrames", 600);
+    private static final int SELECTIONS = Integer.getInteger("ui-perf.selections", 200);
+    // Frames run before each measured run and not counted, while the JIT compiles the code
+    private static final int WARMUP_FRAMES = Integer.getInteger("ui-perf.warmupFrames", 200);
+    // Every so many scroll frames the thumb is dragged somewhere else instead of a wheel step
+    private static final int JUMP_EVERY = 20;
+    private static final int WHEEL_ROWS = 3;
+    
+    private final int catalogSize;
+    private final Random random = new Random(42);
+    private final List<Result> results = new ArrayList<>();
+    private Navigator navigator;
+    
+    /**
+     * One measure of one screen, in nanoseconds per sample
+     */
+    private static final class Result {
+        final String screen;
+        final String measure;
+        final long[] samples;
+        final double budgetMillis;
+        // Median or 99th percentile, whichever the budget applies to
+        final boolean gateOnP99;
+        
+        Result(String screen, String measure, long[] samples, double budgetMillis, boolean gateOnP99) {
+            this.screen = screen;
+            this.measure = measure;
+            this.samples = samples.clone();
+            this.budgetMillis = budgetMillis;
+            this.gateOnP99 = gateOnP99;
+            Arrays.sort(this.samples);
+        }
+        
+        double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+            return samples[Math.max(0, Math.min(samples.length - 1, index))] / 1e6;
+        }
+        
+        double gatedMillis() {
+            return percentileMillis(gateOnP99 ? 99 : 50);
+        }
+        
+        boolean withinBudget() {
+            return gatedMillis() <= budgetMillis;
+        }
+    }
+    
+    /**
+     * Runs one action per pulse, just before that pulse's CSS and layout pass, and times each
+     * from the action to the end of layout
+     */
+    private static final class FrameDriver {
+        private final Scene scene;
+        private final IntConsumer action;
+        private final long[] times;
+        private final CompletableFuture<long[]> done = new CompletableFuture<>();
+        private final Runnable before = this::before;
+        private final Runnable after = this::after;
+        private int frame;
+        private long start;
+        
+        FrameDriver(Scene scene, int frames, IntConsumer action) {
+            this.scene = scene;
+            this.action = action;
+            this.times = new long[frames];
+        }
+        
+        // Call on the FX thread
+        CompletableFuture<long[]> start() {
+            scene.addPreLayoutPulseListener(before);
+            scene.addPostLayoutPulseListener(after);
+            Platform.requestNextPulse();
+            return done;
+        }
+        
+        private void before() {
+            if (start == 0 && frame < times.length) {
+                start = System.nanoTime();
+                action.accept(frame);
+            }
+        }
+        
+        private void after() {
+            if (start == 0) {
+                Platform.requestNextPulse();
+                return;
+            }
+            times[frame++] = System.nanoTime() - start;
+            start = 0;
+            if (frame < times.length) {
+                Platform.requestNextPulse();
+            } else {
+                scene.removePreLayoutPulseListener(before);
+                scene.removePostLayoutPulseListener(after);
+                done.complete(times);
+            }
+        }
+    }
+    
+    public UiPerformanceSuite(int catalogSize) {
+        this.catalogSize = catalogSize;
+    }
+    
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: UiPerformanceSuite <catalog size>");
+            System.exit(2);
+        }
+        if (Boolean.parseBoolean(System.getProperty("ui-perf.headless", "true"))) {
+            setIfAbsent("glass.platform", "Monocle");
+            setIfAbsent("monocle.platform", "Headless");
+            setIfAbsent("prism.order", "sw");
+        }
+        int catalogSize = Integer.parseInt(args[0]);
+        Path dataDir = BenchmarkData.createDataDir(catalogSize);
+        int status;
+        boolean started = false;
+        try {
+            long start = System.nanoTime();
+            BenchmarkData.openStore(dataDir);
+            System.out.printf(Locale.ROOT, "Store opened with %,d products in %.0f ms%n",
+                    catalogSize, (System.nanoTime() - start) / 1e6);
+            Platform.startup(() -> { });
+            started = true;
+            UiPerformanceSuite suite = new UiPerformanceSuite(catalogSize);
+            suite.run();
+            status = suite.report(Paths.get(System.getProperty("ui-perf.dir", "target/ui-perf"))) ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Error running UI performance suite: " + e);
+            status = 1;
+        } finally {
+            if (started) {
+                Platform.exit();
+            }
+            DataStore.shutdown();
+            BenchmarkData.delete(dataDir);
+        }
+        System.exit(status);
+    }
+    
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+    
+    // Measure the order screen, then the product screen
+    public void run() throws Exception {
+        onFx(() -> {
+            Stage stage = new Stage();
+            stage.setTitle("Bakery UI performance");
+            navigator = new Navigator(stage);
+            return null;
+        });
+        measureScrolling("order", measureScreen("order", () -> new OrderController(navigator)));
+        TableView<Product> productTable = measureScreen("products", () -> new ProductController(navigator));
+        measureScrolling("products", productTable);
+        measureSelection(productTable);
+    }
+    
+    // Build the screen several times and show each build until its table has rows
+    private TableView<Product> measureScreen(String screen, Callable<Navigator.Page> build) throws Exception {
+        long[] builds = new long[BUILDS];
+        long[] renders = new long[BUILDS];
+        TableView<Product> table = null;
+        for (int i = 0; i < BUILDS; i++) {
+            int n = i;
+            Navigator.Page page = onFx(() -> {
+                long start = System.nanoTime();
+                Navigator.Page built = build.call();
+                builds[n] = System.nanoTime() - start;
+                return built;
+            });
+            table = firstRender(page, renders, i);
+        }
+        results.add(new Result(screen, "sceneBuild", builds, budget("sceneBuildMillis", 250), false));
+        results.add(new Result(screen, "firstRender", renders, budget("firstRenderMillis", 1000), false));
+        return table;
+    }
+    
+    /**
+     * Show the screen and time it to the end of the first layout pass with table rows in it
+     * The table is looked up once laid out, since a ScrollPane only adds its content then
+     */
+    private TableView<Product> firstRender(Navigator.Page page, long[] renders, int index) throws Exception {
+        Scene scene = page.getScene();
+        CompletableFuture<TableView<Product>> rendered = new CompletableFuture<>();
+        long[] shown = new long[1];
+        Runnable check = new Runnable() {
+            @Override
+            public void run() {
+                TableView<Product> table = productTableOf(scene);
+                if (table != null && !table.getItems().isEmpty() && firstVisibleRow(table) != null) {
+                    renders[index] = System.nanoTime() - shown[0];
+                    scene.removePostLayoutPulseListener(this);
+                    rendered.complete(table);
+                } else {
+                    Platform.requestNextPulse();
+                }
+            }
+        };
+        onFx(() -> {
+            shown[0] = System.nanoTime();
+            page.showing();
+            Stage stage = navigator.getStage();
+            stage.setScene(scene);
+            stage.show();
+            scene.addPostLayoutPulseListener(check);
+            Platform.requestNextPulse();
+            return null;
+        });
+        return rendered.get(FX_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    // Wheel steps down the table, with a drag of the thumb to a random row every so often
+    private void measureScrolling(String screen, TableView<Product> table) throws Exception {
+        onFx(() -> {
+            navigator.getStage().setScene(table.getScene());
+            table.scrollTo(0);
+            return null;
+        });
+        VirtualFlow<?> flow = virtualFlow(table);
+        long[] frames = runFrames(table.getScene(), WARMUP_FRAMES, SCROLL_FRAMES, frame -> {
+            if (frame % JUMP_EVERY == JUMP_EVERY - 1) {
+                flow.scrollTo(random.nextInt(table.getItems().size()));
+            } else {
+                IndexedCell<?> row = flow.getFirstVisibleCell();
+                flow.scrollPixels(WHEEL_ROWS * (row != null ? row.getHeight() : 24));
+            }
+        });
+        results.add(new Result(screen, "scrollFrame", frames, budget("frameMillis", 50), true));
+    }
+    
+    // Bring a random row into view, then select it in the next pulse and time that one
+    private void measureSelection(TableView<Product> table) throws Exception {
+        int rowCount = onFx(() -> {
+            navigator.getStage().setScene(table.getScene());
+            return table.getItems().size();
+        });
+        int warmup = WARMUP_FRAMES / 2;
+        int[] rows = new int[warmup + SELECTIONS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = random.nextInt(rowCount);
+        }
+        long[] frames = runFrames(table.getScene(), warmup * 2, SELECTIONS * 2, frame -> {
+            int row = rows[frame / 2];
+            if (frame % 2 == 0) {
+                table.scrollTo(row);
+            } else {
+                table.getSelectionModel().select(row);
+            }
+        });
+        long[] selections = new long[SELECTIONS];
+        for (int i = 0; i < selections.length; i++) {
+            selections[i] = frames[i * 2 + 1];
+        }
+        String expected = onFx(() -> table.getSelectionModel().getSelectedItem().getProductName());
+        boolean populated = onFx(() -> table.getScene().getRoot().lookupAll(".text-field").stream()
+                .anyMatch(node -> node instanceof TextField && expected.equals(((TextField) node).getText())));
+        if (!populated) {
+            throw new IllegalStateException("selected product was not shown in the form");
+        }
+        results.add(new Result("products", "selectRow", selections, budget("selectMillis", 50), true));
+    }
+    
+    // Times of the measured frames, after the warmup ones
+    private static long[] runFrames(Scene scene, int warmup, int frames, IntConsumer action) throws Exception {
+        CompletableFuture<long[]> done = onFx(() -> new FrameDriver(scene, warmup + frames, action).start());
+        long[] times = done.get(FX_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return Arrays.copyOfRange(times, warmup, times.length);
+    }
+    
+    // Print the results and write them as TSV; true if every measure is within budget
+    boolean report(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("ui-perf-" + catalogSize + ".tsv");
+        boolean passed = true;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("catalog\tscreen\tmeasure\tsamples\tp50_ms\tp99_ms\tmax_ms\tbudget_ms\tgate\tresult");
+            System.out.printf(Locale.ROOT, "%-9s %-12s %7s %9s %9s %9s %9s  %s%n",
+                    "screen", "measure", "samples", "p50 ms", "p99 ms", "max ms", "budget", "result");
+            for (Result r : results) {
+                String outcome = r.withinBudget() ? "ok" : "OVER";
+                passed &= r.withinBudget();
+                out.printf(Locale.ROOT, "%d\t%s\t%s\t%d\t%.3f\t%.3f\t%.3f\t%.1f\t%s\t%s%n",
+                        catalogSize, r.screen, r.measure, r.samples.length, r.percentileMillis(50),
+                        r.percentileMillis(99), r.percentileMillis(100), r.budgetMillis,
+                        r.gateOnP99 ? "p99" : "p50", outcome);
+                System.out.printf(Locale.ROOT, "%-9s %-12s %7d %9.2f %9.2f %9.2f %9.1f  %s%n",
+                        r.screen, r.measure, r.samples.length, r.percentileMillis(50),
+                        r.percentileMillis(99), r.percentileMillis(100), r.budgetMillis,
+                        outcome + (r.withinBudget() ? "" : " (" + (r.gateOnP99 ? "p99" : "p50") + ")"));
+            }
+        }
+        System.out.println("Results written to " + file.toAbsolutePath());
+        System.out.println(passed ? "All measures within budget" : "UI performance budget exceeded");
+        return passed;
+    }
+    
+    private static double budget(String name, double defaultMillis) {
+        String value = System.getProperty("ui-perf." + name);
+        return value != null ? Double.parseDouble(value) : defaultMillis;
+    }
+    
+    // The screen's table of catalog products, as opposed to a cart; null until laid out
+    @SuppressWarnings("unchecked")
+    private static TableView<Product> productTableOf(Scene scene) {
+        for (Node node : scene.getRoot().lookupAll(".table-view")) {
+            if (node instanceof TableView && ((TableView<?>) node).getItems() instanceof PagedProductList) {
+                return (TableView<Product>) node;
+            }
+        }
+        return null;
+    }
+    
+    private static VirtualFlow<?> virtualFlow(TableView<Product> table) throws Exception {
+        return onFx(() -> (VirtualFlow<?>) table.lookup(".virtual-flow"));
+    }
+    
+    private static IndexedCell<?> firstVisibleRow(TableView<Product> table) {
+        Node flow = table.lookup(".virtual-flow");
+        if (!(flow instanceof VirtualFlow)) {
+            return null;
+        }
+        IndexedCell<?> row = ((VirtualFlow<?>) flow).getFirstVisibleCell();
+        return row != null && !row.isEmpty() ? row : null;
+    }
+    
+    // Run on the JavaFX Application Thread and wait for the result
+    private static <T> T onFx(Callable<T> work) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(work.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        try {
+            return result.get(FX_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException e) {
+            throw new TimeoutException("JavaFX Application Thread did not respond in " + FX_TIMEOUT_SECONDS + " s");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.bakery.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * BenchmarkData builds catalogs and data directories for the benchmarks
+ * Lives in the model package so it can write products.bin the way the store does,
+ * instead of adding products one by one through the store's mutation log
+ */
+public final class BenchmarkData {
+    // Enough stock that no benchmark ever runs a product out
+    public static final int SEEDED_QUANTITY = Integer.MAX_VALUE / 2;
+    
+    private static final String[] CATEGORIES = {"Bread", "Pastry", "Cake", "Cookies", "Drinks", "Savory"};
+    private static final String[] NAMES = {"Sourdough", "Croissant", "Baguette", "Brownie", "Muffin", "Scone", "Danish", "Bagel"};
+    
+    private BenchmarkData() {
+    }
+    
+    // Products with IDs 1..size, spread over a few categories
+    public static List<Product> products(int size) {
+        List<Product> products = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            String name = NAMES[id % NAMES.length] + " " + id;
+            products.add(new Product(id, name, CATEGORIES[id % CATEGORIES.length], 1 + (id % 500) / 100.0, SEEDED_QUANTITY));
+        }
+        return products;
+    }
+    
+    // A fresh data directory holding a catalog of the given size and nothing else
+    public static Path createDataDir(int catalogSize) {
+        try {
+            Path dir = Files.createTempDirectory("bakery-bench");
+            ProductFile.write(dir.resolve("products.bin"), products(catalogSize), catalogSize + 1);
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Open the store on a data directory made by createDataDir
+     * The store is a singleton, so this works once per JVM; JMH forks one per trial
+     */
+    public static DataStore openStore(Path dataDir) {
+        System.setProperty("bakery.data.dir", dataDir.toString());
+        return DataStore.getInstance();
+    }
+    
+    // Remove a data directory and everything in it
+    public static void delete(Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting benchmark data: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.bakery.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileBenchmark times saving and loading the store's files without the store around them
+ * products.bin is written and read whole, as on a checkpoint and on startup; sales.dat holds
+ * the running totals, and the sales ledger is appended to per sale and scanned by the reports
+ *
+ * Every benchmark has a single-threaded and a *Concurrently variant using all cores.
+ * Each thread saves into its own directory, so concurrent saves measure the disk, not each other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+    
+    /**
+     * A products.bin holding a catalog of catalogSize products
+     */
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"1000", "100000", "1000000"})
+        public int catalogSize;
+        
+        List<Product> products;
+        Path dataDir;
+        Path productsFile;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            products = BenchmarkData.products(catalogSize);
+            dataDir = BenchmarkData.createDataDir(catalogSize);
+            productsFile = dataDir.resolve("products.bin");
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BenchmarkData.delete(dataDir);
+        }
+    }
+    
+    /**
+     * A sales ledger holding salesCount sales over the last 30 days, and a sales.dat
+     */
+    @State(Scope.Benchmark)
+    public static class Sales {
+        @Param({"1000", "100000"})
+        public int salesCount;
+        
+        Path dataDir;
+        Path salesFile;
+        SalesLedger ledger;
+        long fromMillis;
+        long toMillis;
+        
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dataDir = Files.createTempDirectory("bakery-bench");
+            salesFile = dataDir.resolve("sales.dat");
+            SalesFile.write(salesFile, 12345.67, salesCount);
+            
+            toMillis = Instant.now().toEpochMilli();
+            fromMillis = Instant.ofEpochMilli(toMillis).minus(30, ChronoUnit.DAYS).toEpochMilli();
+            long step = (toMillis - fromMillis) / salesCount;
+            ledger = new SalesLedger(dataDir.resolve("sales"));
+            for (int i = 0; i < salesCount; i++) {
+                ledger.append(sale(fromMillis + i * step, i + 1));
+            }
+            ledger.sync();
+            toMillis++;
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            ledger.close();
+            BenchmarkData.delete(dataDir);
+        }
+    }
+    
+    /**
+     * A directory of the thread's own to save into
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        Path dir;
+        SalesLedger ledger;
+        long orderId;
+        
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bakery-bench");
+            ledger = new SalesLedger(dir.resolve("sales"));
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            ledger.close();
+            BenchmarkData.delete(dir);
+        }
+    }
+    
+    private static SaleEntry sale(long timestamp, long orderId) {
+        int productId = 1 + (int) (orderId % 1000);
+        int quantity = 1 + (int) (orderId % 5);
+        return new SaleEntry(timestamp, orderId, productId, quantity, 2.5, quantity * 2.5);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void saveProducts(Catalog catalog, Output output) throws IOException {
+        ProductFile.write(output.dir.resolve("products.bin"), catalog.products, catalog.catalogSize + 1);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void saveProductsConcurrently(Catalog catalog, Output output) throws IOException {
+        saveProducts(catalog, output);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public ProductFile.Contents loadProducts(Catalog catalog) throws IOException {
+        return ProductFile.read(catalog.productsFile);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ProductFile.Contents loadProductsConcurrently(Catalog catalog) throws IOException {
+        return loadProducts(catalog);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void saveSalesTotals(Output output) throws IOException {
+        SalesFile.write(output.dir.resolve("sales.dat"), ThreadLocalRandom.current().nextDouble(), 42);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void saveSalesTotalsConcurrently(Output output) throws IOException {
+        saveSalesTotals(output);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public SalesFile loadSalesTotals(Sales sales) throws IOException {
+        return SalesFile.read(sales.salesFile);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SalesFile loadSalesTotalsConcurrently(Sales sales) throws IOException {
+        return loadSalesTotals(sales);
+    }
+    
+    // One sale appended to the ledger, without forcing it to disk (the store syncs in groups)
+    @Benchmark
+    @Threads(1)
+    public void appendSale(Output output) throws IOException {
+        output.ledger.append(sale(System.currentTimeMillis(), ++output.orderId));
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void appendSaleConcurrently(Output output) throws IOException {
+        appendSale(output);
+    }
+    
+    // Every sale of the last 30 days, as a report over the whole ledger reads them
+    @Benchmark
+    @Threads(1)
+    public List<SaleEntry> loadSales(Sales sales) throws IOException {
+        return sales.ledger.query(sales.fromMillis, sales.toMillis);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<SaleEntry> loadSalesConcurrently(Sales sales) throws IOException {
+        return loadSales(sales);
+    }
+}
@@ -1,18 +1,40 @@
 package com.bakery.app;
 
 import com.bakery.controller.LoginController;
+import com.bakery.model.DataStore;
+import com.bakery.model.Metrics;
+import com.bakery.model.StartupTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.stage.Stage;
 
 /**
  * BakeryApp - Main application class
  * Entry point for the Bakery Management System
+ *
+ * The store loads on a background thread while the login screen is up, so the window
+ * appears at once however large the data files are. Startup phases are logged.
+ *
+ * With -Dbakery.exitAfterStartup=true the application quits once the first frame is drawn
+ * and the store is loaded; the fast-startup Maven profile uses this for its training and
+ * timing runs.
+ *
+ * With -Dbakery.flightRecorder=<directory> a continuous flight recording runs from launch,
+ * and Ctrl+Shift+F12 writes it out (see FlightRecording).
  */
 public class BakeryApp extends Application {
     
     @Override
     public void start(Stage primaryStage) {
         try {
+            // Start loading the data files before anything else
+            DataStore.load();
+            
             // Set application title
             primaryStage.setTitle("Bakery Management System");
             
@@ -22,19 +44,55 @@ public class BakeryApp extends Application {
             primaryStage.setResizable(false);
             
             // Start with login screen
+            long buildStart = System.nanoTime();
             LoginController loginController = new LoginController(primaryStage);
-            primaryStage.setScene(loginController.getScene());
+            Metrics.latency("screen.build.login").recordSince(buildStart);
+            Scene scene = loginController.getScene();
+            primaryStage.setScene(scene);
+            
+            // Log the first frame, which is laid out on the first pulse after showing
+            scene.addPostLayoutPulseListener(new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    StartupTimer.sinceLaunch("first frame");
+                    if (Boolean.getBoolean("bakery.exitAfterStartup")) {
+                        DataStore.load().whenComplete((store, error) -> Platform.runLater(Platform::exit));
+                    }
+                }
+            });
+            
+            // Write the flight recording on demand, from any screen
+            if (FlightRecording.isRecording()) {
+                KeyCombination dumpKeys = new KeyCodeCombination(KeyCode.F12,
+                        KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+                primaryStage.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+                    if (dumpKeys.match(e)) {
+                        Thread dump = new Thread(FlightRecording::dump, "bakery-recording-dump");
+                        dump.setDaemon(true);
+                        dump.start();
+                        e.consume();
+                    }
+                });
+            }
             
             // Show the application
             primaryStage.show();
-            
+        
         } catch (Exception e) {
             e.printStackTrace();
             System.err.println("Error starting application: " + e.getMessage());
         }
     }
     
+    @Override
+    public void stop() {
+        // Flush pending writes when the window is closed
+        DataStore.shutdown();
+    }
+    
     public static void main(String[] args) {
+        FlightRecording.startIfRequested();
         launch(args);
     }
 }
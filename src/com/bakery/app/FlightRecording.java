@@ -0,0 +1,83 @@
+package com.bakery.app;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * FlightRecording keeps a continuous Java Flight Recorder recording of the last few minutes
+ * Started with -Dbakery.flightRecorder=<directory>, so a stall at a till can be matched
+ * to GC pauses, file I/O or JavaFX thread work without attaching a profiler
+ *
+ * The recording uses the JDK's low-overhead "default" settings plus the Bakery events
+ * (bakery.flightRecorderSettings may name "profile" or a .jfc file instead) and keeps
+ * bakery.flightRecorderMinutes (default 30) of history. It is written to the directory:
+ * - on demand, with Ctrl+Shift+F12 in the application, as bakery-<time>.jfr
+ * - when the process exits, as bakery-last-run.jfr
+ * On the inventory server, "jcmd <pid> JFR.dump name=bakery" writes it on demand.
+ */
+final class FlightRecording {
+    private static final String NAME = "bakery";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    
+    private static Recording recording;
+    private static Path directory;
+    
+    private FlightRecording() {
+    }
+    
+    // Start the recording if the command line asks for one
+    static synchronized void startIfRequested() {
+        String dir = System.getProperty("bakery.flightRecorder");
+        if (dir == null || dir.isBlank() || recording != null) {
+            return;
+        }
+        try {
+            directory = Paths.get(dir.trim());
+            Files.createDirectories(directory);
+            Recording r = new Recording(settings(System.getProperty("bakery.flightRecorderSettings", "default")));
+            r.setName(NAME);
+            r.setToDisk(true);
+            r.setMaxAge(Duration.ofMinutes(Long.getLong("bakery.flightRecorderMinutes", 30L)));
+            r.setDumpOnExit(true);
+            r.setDestination(directory.resolve("bakery-last-run.jfr"));
+            r.start();
+            recording = r;
+            System.out.println("Flight recording to " + directory.toAbsolutePath());
+        } catch (IOException | ParseException | IllegalStateException e) {
+            System.err.println("Error starting flight recording: " + e.getMessage());
+        }
+    }
+    
+    private static Configuration settings(String name) throws IOException, ParseException {
+        return name.endsWith(".jfc")
+                ? Configuration.create(Paths.get(name))
+                : Configuration.getConfiguration(name);
+    }
+    
+    static synchronized boolean isRecording() {
+        return recording != null;
+    }
+    
+    // Write what has been recorded so far; the recording carries on
+    static synchronized void dump() {
+        if (recording == null) {
+            return;
+        }
+        Path file = directory.resolve("bakery-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        try {
+            recording.dump(file);
+            System.out.println("Flight recording written to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error writing flight recording: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.bakery.app;
+
+import com.bakery.model.DataStore;
+import com.bakery.model.StoreServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * InventoryServer - Runs the shared inventory store for several tills
+ * Usage: InventoryServer [port] [bind address]   (default: 7420 on all interfaces)
+ *
+ * The server keeps the data files in bakery.data.dir like the desktop application does.
+ * Tills connect by starting BakeryApp with -Dbakery.server=host:port.
+ */
+public class InventoryServer {
+    private static final int DEFAULT_PORT = 7420;
+    
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetSocketAddress address = args.length > 1
+                ? new InetSocketAddress(args[1], port)
+                : new InetSocketAddress(port);
+        
+        FlightRecording.startIfRequested();
+        
+        // The server always hosts the files itself
+        System.clearProperty("bakery.server");
+        DataStore store = DataStore.getInstance();
+        try {
+            StoreServer server = new StoreServer(store, address);
+            server.start();
+            System.out.println("Inventory server listening on " + address.getHostString() + ":" + server.getPort());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    System.err.println("Error stopping inventory server: " + e.getMessage());
+                }
+            }, "bakery-server-stop"));
+            Thread.currentThread().join();
+        } catch (IOException e) {
+            System.err.println("Error starting inventory server: " + e.getMessage());
+            DataStore.shutdown();
+            System.exit(1);
+        } catch (InterruptedException e) {
+            DataStore.shutdown();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.bakery.app;
+
+import com.bakery.model.DataStore;
+import com.bakery.model.LatencyHistogram;
+import com.bakery.model.Metrics;
+import com.bakery.model.Order;
+import com.bakery.model.Product;
+import com.bakery.model.SaleEntry;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadGenerator - Places randomized orders from many simulated tills, without the JavaFX UI
+ * Usage: LoadGenerator [--terminals 8] [--seconds 60] [--products 10000] [--stock 10000]
+ *                      [--zipf 1.0] [--max-lines 5] [--think-ms 0]
+ *
+ * Each terminal is a thread that looks up the products of an order, fills a cart and places
+ * it through DataStore, like the order screen does, over and over until the time is up.
+ * Products are picked with a Zipfian popularity (exponent --zipf), so a few best sellers
+ * take most orders and run short of stock, as in a real bakery.
+ *
+ * The store is the one DataStore.getInstance gives: files in bakery.data.dir, or an
+ * inventory server with -Dbakery.server=host:port. --products N adds N fresh products to
+ * sell (use a scratch data directory); --products 0 sells the existing catalog instead.
+ *
+ * At the end it reports orders per second and checkout latency percentiles, then checks that
+ * for every product the stock taken equals the quantity the terminals sold and the quantity
+ * in the sales ledger, and that the sales totals grew by exactly what was sold. The checks
+ * assume nothing else sells meanwhile. The exit status is 1 if any check fails.
+ * Run it with: mvn -Pload-test package
+ */
+public class LoadGenerator {
+    private static final long REPORT_INTERVAL_MILLIS = 10_000;
+    // Ledger read in slices, so a long soak does not hold every sale in memory at once
+    private static final long LEDGER_SLICE_MILLIS = 60_000;
+    private static final long DURABLE_TIMEOUT_MILLIS = 60_000;
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+    
+    private final int terminals;
+    private final long durationMillis;
+    private final int seedProducts;
+    private final int seedStock;
+    private final double zipfExponent;
+    private final int maxLines;
+    private final long thinkMillis;
+    
+    private final DataStore store;
+    private int[] productIds;
+    // Cumulative popularity of productIds, for picking products by binary search
+    private double[] popularity;
+    // Sold per position in productIds, as the terminals saw their orders placed
+    private AtomicLongArray sold;
+    private final LongAdder placed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final DoubleAdder revenue = new DoubleAdder();
+    private final LatencyHistogram checkoutLatency = Metrics.latency("loadtest.checkout");
+    
+    private LoadGenerator(Map<String, String> options) {
+        terminals = Integer.parseInt(options.getOrDefault("terminals", "8"));
+        durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("seconds", "60")));
+        seedProducts = Integer.parseInt(options.getOrDefault("products", "10000"));
+        seedStock = Integer.parseInt(options.getOrDefault("stock", "10000"));
+        zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        maxLines = Integer.parseInt(options.getOrDefault("max-lines", "5"));
+        thinkMillis = Long.parseLong(options.getOrDefault("think-ms", "0"));
+        store = DataStore.getInstance();
+    }
+    
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Usage: LoadGenerator [--terminals N] [--seconds N] [--products N] [--stock N]"
+                        + " [--zipf S] [--max-lines N] [--think-ms N]");
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        
+        boolean consistent;
+        try {
+            consistent = new LoadGenerator(options).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            consistent = false;
+        } finally {
+            DataStore.shutdown();
+        }
+        System.exit(consistent ? 0 : 1);
+    }
+    
+    // Run the load and the checks; returns true if the store stayed consistent
+    private boolean run() throws InterruptedException {
+        prepareCatalog();
+        if (productIds.length == 0) {
+            System.err.println("Error: no products to sell");
+            return false;
+        }
+        int[] initialStock = stockLevels();
+        double initialSales = store.getTotalSales();
+        long initialSold = store.getTotalProductsSold();
+        
+        System.out.printf(Locale.ROOT, "Load: %d terminals for %d s over %d products (zipf %.2f)%n",
+                terminals, TimeUnit.MILLISECONDS.toSeconds(durationMillis), productIds.length, zipfExponent);
+        long startMillis = System.currentTimeMillis();
+        LatencyHistogram.Snapshot before = checkoutLatency.snapshot();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 1; t <= terminals; t++) {
+            Thread thread = new Thread(() -> runTerminal(deadline), "bakery-terminal-" + t);
+            thread.start();
+            threads.add(thread);
+        }
+        reportProgress(threads, startMillis);
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        
+        // Everything placed must reach the ledger before it can be compared
+        try {
+            if (!store.awaitDurable(store.getLastMutationId(), DURABLE_TIMEOUT_MILLIS)) {
+                System.err.println("Warning: sales not yet written to disk after " + DURABLE_TIMEOUT_MILLIS + " ms");
+            }
+        } catch (IOException e) {
+            System.err.println("Error: sales could not be written to disk: " + e.getMessage());
+            return false;
+        }
+        printResults(checkoutLatency.snapshot().since(before), elapsedMillis);
+        return checkConsistency(initialStock, initialSales, initialSold, startMillis);
+    }
+    
+    // Add the products to sell, or take the existing catalog
+    private void prepareCatalog() {
+        if (seedProducts > 0) {
+            productIds = new int[seedProducts];
+            for (int i = 0; i < seedProducts; i++) {
+                int id = store.getNextProductId();
+                store.addProduct(new Product(id, "Load Test Item " + id, "Load Test", 1 + (i % 400) / 100.0, seedStock));
+                productIds[i] = id;
+            }
+        } else {
+            productIds = store.getProducts().stream().mapToInt(Product::getProductId).toArray();
+        }
+        sold = new AtomicLongArray(productIds.length);
+        
+        // The i-th product is picked with weight 1 / i^s
+        popularity = new double[productIds.length];
+        double sum = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            sum += 1 / Math.pow(i + 1, zipfExponent);
+            popularity[i] = sum;
+        }
+        for (int i = 0; i < popularity.length; i++) {
+            popularity[i] /= sum;
+        }
+    }
+    
+    private int pickProduct(ThreadLocalRandom random) {
+        int position = Arrays.binarySearch(popularity, random.nextDouble());
+        return Math.min(position >= 0 ? position : -position - 1, productIds.length - 1);
+    }
+    
+    // One till: fill a cart from the current stock and place it, until the deadline
+    private void runTerminal(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] positions = new int[maxLines];
+        int[] quantities = new int[maxLines];
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            Order order = new Order();
+            int lines = 0;
+            int wanted = 1 + random.nextInt(maxLines);
+            for (int i = 0; i < wanted; i++) {
+                int position = pickProduct(random);
+                Product product = store.findProductById(productIds[position]);
+                int quantity = 1 + random.nextInt(3);
+                if (product == null || product.getQuantity() < quantity || order.findLine(product.getProductId()) != null) {
+                    continue;
+                }
+                order.addLine(product, quantity);
+                positions[lines] = position;
+                quantities[lines] = quantity;
+                lines++;
+            }
+            if (lines == 0) {
+                // Everything picked was sold out; a till would not place an empty order
+                rejected.increment();
+                continue;
+            }
+            boolean accepted = store.placeOrder(order);
+            checkoutLatency.recordSince(start);
+            if (accepted) {
+                placed.increment();
+                revenue.add(order.getTotal());
+                for (int i = 0; i < lines; i++) {
+                    sold.addAndGet(positions[i], quantities[i]);
+                }
+            } else {
+                rejected.increment();
+            }
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    // Print orders per second every interval until the terminals are done
+    private void reportProgress(List<Thread> threads, long startMillis) throws InterruptedException {
+        long lastPlaced = 0;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                thread.join(REPORT_INTERVAL_MILLIS);
+                if (thread.isAlive()) {
+                    long total = placed.sum();
+                    System.out.printf(Locale.ROOT, "  %3d s: %.0f orders/s, %d rejected%n",
+                            (System.currentTimeMillis() - startMillis) / 1000,
+                            (total - lastPlaced) * 1000.0 / REPORT_INTERVAL_MILLIS, rejected.sum());
+                    lastPlaced = total;
+                }
+            }
+        }
+    }
+    
+    private void printResults(LatencyHistogram.Snapshot latency, long elapsedMillis) {
+        System.out.printf(Locale.ROOT, "Orders placed: %d (%.0f orders/s), rejected for lack of stock: %d%n",
+                placed.sum(), placed.sum() * 1000.0 / Math.max(1, elapsedMillis), rejected.sum());
+        System.out.printf(Locale.ROOT, "Checkout latency (us): mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                latency.getMeanMicros(), latency.getP50Micros(), latency.getP90Micros(),
+                latency.getP99Micros(), latency.getP999Micros(), latency.getMaxMicros());
+    }
+    
+    private int[] stockLevels() {
+        List<Product> products = store.getProductsById(productIds);
+        int[] stock = new int[productIds.length];
+        for (int i = 0; i < stock.length; i++) {
+            Product product = products.get(i);
+            stock[i] = product != null ? product.getQuantity() : -1;
+        }
+        return stock;
+    }
+    
+    // Compare the stock taken with what the terminals sold, the sales ledger and the totals
+    private boolean checkConsistency(int[] initialStock, double initialSales, long initialSold, long startMillis) {
+        int[] finalStock = stockLevels();
+        long[] ledgerSold = ledgerQuantities(startMillis);
+        
+        List<String> problems = new ArrayList<>();
+        long consumed = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            long taken = (long) initialStock[i] - finalStock[i];
+            consumed += taken;
+            if (finalStock[i] < 0 || taken != sold.get(i) || taken != ledgerSold[i]) {
+                problems.add("product " + productIds[i] + ": stock " + initialStock[i] + " -> " + finalStock[i]
+                        + ", terminals sold " + sold.get(i) + ", ledger " + ledgerSold[i]);
+            }
+        }
+        long soldDelta = store.getTotalProductsSold() - initialSold;
+        if (soldDelta != consumed) {
+            problems.add("products sold total grew by " + soldDelta + ", stock fell by " + consumed);
+        }
+        double salesDelta = store.getTotalSales() - initialSales;
+        // Both sides add up doubles in a different order, so allow for rounding
+        if (Math.abs(salesDelta - revenue.sum()) > 1e-9 * Math.abs(revenue.sum()) + 0.01) {
+            problems.add(String.format(Locale.ROOT, "sales total grew by %.2f, orders placed total %.2f",
+                    salesDelta, revenue.sum()));
+        }
+        
+        System.out.println("Stock consumed: " + consumed + " items");
+        if (problems.isEmpty()) {
+            System.out.println("Consistency: OK (stock taken = items sold = sales ledger = sales totals)");
+            return true;
+        }
+        System.out.println("Consistency: FAILED, " + problems.size() + " problems");
+        problems.stream().limit(MAX_REPORTED_MISMATCHES).forEach(p -> System.out.println("  " + p));
+        return false;
+    }
+    
+    // Quantity per product in the ledger since the run started
+    private long[] ledgerQuantities(long startMillis) {
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < productIds.length; i++) {
+            positions.put(productIds[i], i);
+        }
+        long[] quantities = new long[productIds.length];
+        long end = System.currentTimeMillis() + 1;
+        for (long from = startMillis; from < end; from += LEDGER_SLICE_MILLIS) {
+            for (SaleEntry entry : store.getSales(toLocal(from), toLocal(Math.min(from + LEDGER_SLICE_MILLIS, end)))) {
+                Integer position = positions.get(entry.getProductId());
+                if (position != null) {
+                    quantities[position] += entry.getQuantity();
+                }
+            }
+        }
+        return quantities;
+    }
+    
+    private static LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -1,5 +1,6 @@
 package com.bakery.controller;
 
+import com.bakery.model.DataStore;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -12,14 +13,16 @@ import java.util.Optional;
 
 /**
  * HomeController handles the main home/dashboard screen
- * Shows navigation buttons to different features
+ * Shows navigation buttons to different features, and a banner while products run low
  */
-public class HomeController {
+public class HomeController implements Navigator.Page {
+    private Navigator navigator;
     private Stage primaryStage;
     private Scene scene;
     
-    public HomeController(Stage primaryStage) {
-        this.primaryStage = primaryStage;
+    HomeController(Navigator navigator) {
+        this.navigator = navigator;
+        this.primaryStage = navigator.getStage();
         createHomeScene();
     }
     
@@ -43,6 +46,10 @@ public class HomeController {
         
         header.getChildren().addAll(titleLabel, subtitleLabel);
         
+        // Low stock warning above the header, updated as products sell
+        LowStockBanner lowStockBanner = new LowStockBanner(DataStore.getInstance(),
+                () -> navigator.show(Navigator.Screen.PRODUCTS));
+        
         // Center section - Menu buttons
         GridPane menuGrid = new GridPane();
         menuGrid.setAlignment(Pos.CENTER);
@@ -57,20 +64,9 @@ public class HomeController {
         Button exitButton = createMenuButton("❌ Exit", "Close application");
         
         // Button actions
-        orderButton.setOnAction(e -> {
-            OrderController orderController = new OrderController(primaryStage);
-            primaryStage.setScene(orderController.getScene());
-        });
-        
-        manageButton.setOnAction(e -> {
-            ProductController productController = new ProductController(primaryStage);
-            primaryStage.setScene(productController.getScene());
-        });
-        
-        salesButton.setOnAction(e -> {
-            SalesController salesController = new SalesController(primaryStage);
-            primaryStage.setScene(salesController.getScene());
-        });
+        orderButton.setOnAction(e -> navigator.show(Navigator.Screen.ORDER));
+        manageButton.setOnAction(e -> navigator.show(Navigator.Screen.PRODUCTS));
+        salesButton.setOnAction(e -> navigator.show(Navigator.Screen.SALES));
         
         exitButton.setOnAction(e -> {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -80,6 +76,8 @@ public class HomeController {
             
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
+                // Make sure queued changes reach the disk before closing
+                DataStore.shutdown();
                 primaryStage.close();
             }
         });
@@ -91,17 +89,11 @@ public class HomeController {
         menuGrid.add(exitButton, 1, 1);
         
         // Set layout
-        mainContainer.setTop(header);
+        mainContainer.setTop(new VBox(lowStockBanner.getNode(), header));
         mainContainer.setCenter(menuGrid);
         
         // Create scene
-        scene = new Scene(mainContainer, 900, 650);
-        try {
-            String cssPath = getClass().getResource("/styles.css").toExternalForm();
-            scene.getStylesheets().add(cssPath);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not load CSS file. Using default styling.");
-        }
+        scene = Navigator.createScene(mainContainer);
     }
     
     /**
@@ -128,6 +120,7 @@ public class HomeController {
         return button;
     }
     
+    @Override
     public Scene getScene() {
         return scene;
     }
@@ -1,5 +1,7 @@
 package com.bakery.controller;
 
+import com.bakery.model.DataStore;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -12,6 +14,9 @@ import javafx.stage.Stage;
 /**
  * LoginController handles the login screen
  * Default credentials: admin / admin123
+ *
+ * The store is still loading while this screen shows; a login before it is ready waits
+ * with a progress indicator and then goes on to the home screen.
  */
 public class LoginController {
     private Stage primaryStage;
@@ -78,6 +83,13 @@ public class LoginController {
         errorLabel.getStyleClass().add("error-label");
         errorLabel.setVisible(false);
         
+        // Shown while a login waits for the store to load
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(24, 24);
+        Label progressLabel = new Label("Loading inventory...", progress);
+        progressLabel.setVisible(false);
+        progressLabel.setManaged(false);
+        
         // Login button action
         loginButton.setOnAction(e -> {
             String username = usernameField.getText();
@@ -87,9 +99,22 @@ public class LoginController {
                 errorLabel.setText("Please enter both username and password");
                 errorLabel.setVisible(true);
             } else if (username.equals("admin") && password.equals("admin123")) {
-                // Successful login - go to home screen
-                HomeController homeController = new HomeController(primaryStage);
-                primaryStage.setScene(homeController.getScene());
+                // Successful login - go to home screen once the store has loaded
+                errorLabel.setVisible(false);
+                loginButton.setDisable(true);
+                progressLabel.setVisible(true);
+                progressLabel.setManaged(true);
+                DataStore.load().whenComplete((store, error) -> Platform.runLater(() -> {
+                    loginButton.setDisable(false);
+                    progressLabel.setVisible(false);
+                    progressLabel.setManaged(false);
+                    if (error != null) {
+                        errorLabel.setText("Could not load the inventory: " + error.getMessage());
+                        errorLabel.setVisible(true);
+                    } else {
+                        openHome();
+                    }
+                }));
             } else {
                 errorLabel.setText("Invalid username or password");
                 errorLabel.setVisible(true);
@@ -104,6 +129,7 @@ public class LoginController {
             usernameBox,
             passwordBox,
             errorLabel,
+            progressLabel,
             loginButton
         );
         
@@ -125,6 +151,13 @@ public class LoginController {
         }
     }
     
+    // Show the home screen and build the other screens meanwhile
+    private void openHome() {
+        Navigator navigator = new Navigator(primaryStage);
+        navigator.show(Navigator.Screen.HOME);
+        navigator.prewarm();
+    }
+    
     public Scene getScene() {
         return scene;
     }
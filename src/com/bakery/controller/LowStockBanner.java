@@ -0,0 +1,152 @@
+package com.bakery.controller;
+
+import com.bakery.model.DataStore;
+import com.bakery.model.Product;
+import com.bakery.model.ProductChange;
+import com.bakery.model.ProductListener;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.util.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LowStockBanner is the strip on the home screen that names the products running low
+ * It lists the products below their reorder level and is hidden while there are none.
+ *
+ * Product changes only mark the list as out of date. It is read again from the store on a
+ * background thread at most a couple of times a second, so a busy till neither floods the
+ * FX thread nor the inventory server, and the screen never waits for it.
+ */
+class LowStockBanner implements ProductListener {
+    private static final Duration REFRESH_DELAY = Duration.millis(500);
+    // Products named in the banner; the rest are counted
+    private static final int NAMES_SHOWN = 3;
+    
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bakery-low-stock");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    private final DataStore dataStore;
+    private final HBox banner = new HBox(15);
+    private final Label message = new Label();
+    private final PauseTransition refreshDelay = new PauseTransition(REFRESH_DELAY);
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    // FX thread only: a refresh is running, and another is due when it returns
+    private boolean refreshing;
+    private boolean stale;
+    
+    // Starts hidden and fills in once the first refresh returns; call on the FX thread
+    LowStockBanner(DataStore dataStore, Runnable showProducts) {
+        this.dataStore = dataStore;
+        
+        message.getStyleClass().add("low-stock-message");
+        message.setWrapText(true);
+        message.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(message, Priority.ALWAYS);
+        
+        Button viewButton = new Button("View Products");
+        viewButton.getStyleClass().add("secondary-button");
+        viewButton.setOnAction(e -> showProducts.run());
+        
+        banner.getStyleClass().add("low-stock-banner");
+        banner.setAlignment(Pos.CENTER_LEFT);
+        banner.setPadding(new Insets(10, 20, 10, 20));
+        banner.getChildren().addAll(message, viewButton);
+        setShown(false);
+        
+        refreshDelay.setOnFinished(e -> refresh());
+        dataStore.addProductListener(this);
+        refresh();
+    }
+    
+    HBox getNode() {
+        return banner;
+    }
+    
+    @Override
+    public void productsChanged(List<ProductChange> changes) {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::refreshLater);
+        }
+    }
+    
+    // Refresh shortly; changes made meanwhile are covered by the same refresh
+    private void refreshLater() {
+        refreshScheduled.set(false);
+        if (refreshDelay.getStatus() != Animation.Status.RUNNING) {
+            refreshDelay.playFromStart();
+        }
+    }
+    
+    private void refresh() {
+        if (refreshing) {
+            stale = true;
+            return;
+        }
+        refreshing = true;
+        Task<List<Product>> task = new Task<>() {
+            @Override
+            protected List<Product> call() {
+                return dataStore.getLowStockProducts();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            refreshDone();
+            show(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            refreshDone();
+            System.err.println("Error loading low stock products: " + task.getException().getMessage());
+        });
+        REFRESH_EXECUTOR.execute(task);
+    }
+    
+    private void refreshDone() {
+        refreshing = false;
+        if (stale) {
+            stale = false;
+            refreshLater();
+        }
+    }
+    
+    private void show(List<Product> products) {
+        if (products.isEmpty()) {
+            setShown(false);
+            return;
+        }
+        StringBuilder text = new StringBuilder("⚠ ");
+        text.append(products.size() == 1 ? "1 product is" : products.size() + " products are")
+            .append(" running low: ");
+        int named = Math.min(NAMES_SHOWN, products.size());
+        for (int i = 0; i < named; i++) {
+            Product p = products.get(i);
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(p.getProductName()).append(" (").append(p.getQuantity()).append(" left)");
+        }
+        if (products.size() > named) {
+            text.append(" and ").append(products.size() - named).append(" more");
+        }
+        message.setText(text.toString());
+        setShown(true);
+    }
+    
+    private void setShown(boolean shown) {
+        banner.setVisible(shown);
+        banner.setManaged(shown);
+    }
+}
@@ -0,0 +1,125 @@
+package com.bakery.controller;
+
+import com.bakery.model.Metrics;
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Navigator switches the main window between the application screens
+ * Each screen is built once and its scene kept, so going back and forth only swaps scenes
+ *
+ * After login the screens the user is likely to open next are built ahead of time, one at a
+ * time so a click in between is not held up, while their product tables query the store on a
+ * background thread. All scenes use the same stylesheet URL, which JavaFX parses only once.
+ */
+final class Navigator {
+    enum Screen {
+        HOME, ORDER, PRODUCTS, SALES
+    }
+    
+    /**
+     * A built screen
+     */
+    interface Page {
+        Scene getScene();
+        
+        // Called each time the screen is about to be shown
+        default void showing() {
+        }
+    }
+    
+    private static final double WIDTH = 900;
+    private static final double HEIGHT = 650;
+    // Screens built ahead of time after login, most used first
+    private static final List<Screen> PREWARM = List.of(Screen.ORDER, Screen.PRODUCTS, Screen.SALES);
+    private static final String STYLESHEET = findStylesheet("/styles.css");
+    
+    private final Stage stage;
+    private final Map<Screen, Page> pages = new EnumMap<>(Screen.class);
+    
+    Navigator(Stage stage) {
+        this.stage = stage;
+    }
+    
+    Stage getStage() {
+        return stage;
+    }
+    
+    // Show a screen, building it first if it was not built ahead of time
+    void show(Screen screen) {
+        Page page = page(screen);
+        page.showing();
+        stage.setScene(page.getScene());
+    }
+    
+    // Queue the likely next screens to be built; their product tables load in the background
+    void prewarm() {
+        Queue<Screen> screens = new ArrayDeque<>(PREWARM);
+        Platform.runLater(() -> prewarmNext(screens));
+    }
+    
+    private void prewarmNext(Queue<Screen> screens) {
+        Screen screen = screens.poll();
+        if (screen == null) {
+            return;
+        }
+        page(screen);
+        Platform.runLater(() -> prewarmNext(screens));
+    }
+    
+    private Page page(Screen screen) {
+        Page page = pages.get(screen);
+        if (page == null) {
+            String name = screen.name().toLowerCase(Locale.ROOT);
+            ScreenEvents.SceneBuild event = new ScreenEvents.SceneBuild();
+            event.begin();
+            long start = System.nanoTime();
+            page = build(screen);
+            Metrics.latency("screen.build." + name).recordSince(start);
+            event.screen = name;
+            event.commit();
+            pages.put(screen, page);
+        }
+        return page;
+    }
+    
+    private Page build(Screen screen) {
+        switch (screen) {
+            case ORDER:
+                return new OrderController(this);
+            case PRODUCTS:
+                return new ProductController(this);
+            case SALES:
+                return new SalesController(this);
+            default:
+                return new HomeController(this);
+        }
+    }
+    
+    // A window-sized scene with the application stylesheet
+    static Scene createScene(Parent root) {
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
+        if (STYLESHEET != null) {
+            scene.getStylesheets().add(STYLESHEET);
+        }
+        return scene;
+    }
+    
+    private static String findStylesheet(String name) {
+        URL url = Navigator.class.getResource(name);
+        if (url == null) {
+            System.err.println("Warning: Could not load CSS file. Using default styling.");
+            return null;
+        }
+        return url.toExternalForm();
+    }
+}
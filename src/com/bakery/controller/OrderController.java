@@ -1,32 +1,40 @@
 package com.bakery.controller;
 
 import com.bakery.model.DataStore;
+import com.bakery.model.Order;
+import com.bakery.model.OrderLine;
 import com.bakery.model.Product;
+import com.bakery.model.ProductSort;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import javafx.stage.Stage;
 
 /**
  * OrderController handles the ordering/billing screen
- * Allows users to select products and create orders
+ * Allows users to select products into a cart and place the whole order at once
  */
-public class OrderController {
-    private Stage primaryStage;
+public class OrderController implements Navigator.Page {
+    private Navigator navigator;
     private Scene scene;
     private DataStore dataStore;
     private TableView<Product> productTable;
+    private ProductSearchField searchField;
+    private Order order;
+    private TableView<OrderLine> cartTable;
+    private ObservableList<OrderLine> cartItems;
+    private Label cartTotalLabel;
     
-    public OrderController(Stage primaryStage) {
-        this.primaryStage = primaryStage;
+    OrderController(Navigator navigator) {
+        this.navigator = navigator;
         this.dataStore = DataStore.getInstance();
+        this.order = new Order();
         createOrderScene();
     }
     
@@ -42,10 +50,7 @@ public class OrderController {
         
         Button backButton = new Button("← Back");
         backButton.getStyleClass().add("secondary-button");
-        backButton.setOnAction(e -> {
-            HomeController homeController = new HomeController(primaryStage);
-            primaryStage.setScene(homeController.getScene());
-        });
+        backButton.setOnAction(e -> navigator.show(Navigator.Screen.HOME));
         
         Label titleLabel = new Label("Order Now");
         titleLabel.setFont(Font.font("System", FontWeight.BOLD, 28));
@@ -69,33 +74,50 @@ public class OrderController {
         // Create product table
         productTable = new TableView<>();
         productTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        productTable.setFixedCellSize(PagedProductList.ROW_HEIGHT);
         
-        TableColumn<Product, Integer> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("productId"));
+        TableColumn<Product, Integer> idCol = PagedProductList.column("ID", ProductSort.ID, Product::getProductId);
         idCol.setPrefWidth(60);
         
-        TableColumn<Product, String> nameCol = new TableColumn<>("Product Name");
-        nameCol.setCellValueFactory(new PropertyValueFactory<>("productName"));
+        TableColumn<Product, String> nameCol = PagedProductList.column("Product Name", ProductSort.NAME, Product::getProductName);
         nameCol.setPrefWidth(200);
         
-        TableColumn<Product, String> categoryCol = new TableColumn<>("Category");
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        TableColumn<Product, String> categoryCol = PagedProductList.column("Category", ProductSort.CATEGORY, Product::getCategory);
         categoryCol.setPrefWidth(120);
         
-        TableColumn<Product, Double> priceCol = new TableColumn<>("Price ($)");
-        priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        TableColumn<Product, Double> priceCol = PagedProductList.column("Price ($)", ProductSort.PRICE, Product::getPrice);
         priceCol.setPrefWidth(100);
         
-        TableColumn<Product, Integer> stockCol = new TableColumn<>("Available Stock");
-        stockCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        TableColumn<Product, Integer> stockCol = PagedProductList.column("Available Stock", ProductSort.QUANTITY, Product::getQuantity);
         stockCol.setPrefWidth(120);
         
         productTable.getColumns().addAll(idCol, nameCol, categoryCol, priceCol, stockCol);
         
-        // Load products
-        loadProducts();
+        // Table pages through the catalog, searching and sorting in the store
+        // Rows are patched as products change, so actions below need not reload it
+        PagedProductList products = new PagedProductList(dataStore);
+        products.attach(productTable);
+        
+        searchField = new ProductSearchField(products);
+        
+        HBox tableHeader = new HBox(15);
+        tableHeader.setAlignment(Pos.CENTER_LEFT);
+        Region tableSpacer = new Region();
+        HBox.setHgrow(tableSpacer, Priority.ALWAYS);
+        tableHeader.getChildren().addAll(tableLabel, tableSpacer, searchField.getField());
+        
+        VBox productsBox = new VBox(15);
+        productsBox.getChildren().addAll(tableHeader, productTable);
+        HBox.setHgrow(productsBox, Priority.ALWAYS);
+        VBox.setVgrow(productTable, Priority.ALWAYS);
+        
+        // Cart beside the product table
+        VBox cartBox = createCartBox();
         
-        centerContent.getChildren().addAll(tableLabel, productTable);
+        HBox tables = new HBox(20);
+        tables.getChildren().addAll(productsBox, cartBox);
+        VBox.setVgrow(tables, Priority.ALWAYS);
+        centerContent.getChildren().add(tables);
         
         // Bottom section - Order form
         VBox orderForm = new VBox(15);
@@ -120,6 +142,10 @@ public class OrderController {
         quantityField.setPromptText("Enter Quantity");
         quantityField.setPrefWidth(150);
         
+        Button addButton = new Button("Add to Cart");
+        addButton.getStyleClass().add("secondary-button");
+        addButton.setPrefWidth(120);
+        
         Button orderButton = new Button("Place Order");
         orderButton.getStyleClass().add("primary-button");
         orderButton.setPrefWidth(150);
@@ -127,7 +153,7 @@ public class OrderController {
         inputRow.getChildren().addAll(
             productIdLabel, productIdField,
             quantityLabel, quantityField,
-            orderButton
+            addButton, orderButton
         );
         
         Label statusLabel = new Label();
@@ -135,8 +161,15 @@ public class OrderController {
         
         orderForm.getChildren().addAll(orderLabel, inputRow, statusLabel);
         
-        // Order button action
-        orderButton.setOnAction(e -> {
+        // Selecting a product fills in its ID
+        productTable.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) {
+                productIdField.setText(String.valueOf(newVal.getProductId()));
+            }
+        });
+        
+        // Add to cart button action
+        addButton.setOnAction(e -> {
             try {
                 int productId = Integer.parseInt(productIdField.getText());
                 int quantity = Integer.parseInt(quantityField.getText());
@@ -152,70 +185,157 @@ public class OrderController {
                     return;
                 }
                 
-                if (product.getQuantity() < quantity) {
-                    showError(statusLabel, "Insufficient stock! Available: " + product.getQuantity());
+                // Count what is already in the cart against the stock
+                OrderLine existing = order.findLine(productId);
+                int inCart = existing != null ? existing.getQuantity() : 0;
+                if (product.getQuantity() < inCart + quantity) {
+                    showError(statusLabel, "Insufficient stock! Available: " + (product.getQuantity() - inCart));
                     return;
                 }
                 
-                // Calculate total
-                double total = product.getPrice() * quantity;
-                
-                // Show bill confirmation
-                Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-                alert.setTitle("Order Summary");
-                alert.setHeaderText("Order Details");
-                alert.setContentText(
-                    "Product: " + product.getProductName() + "\n" +
-                    "Quantity: " + quantity + "\n" +
-                    "Price per item: $" + String.format("%.2f", product.getPrice()) + "\n" +
-                    "Total Amount: $" + String.format("%.2f", total) + "\n\n" +
-                    "Confirm order?"
-                );
-                
-                alert.showAndWait().ifPresent(response -> {
-                    if (response == ButtonType.OK) {
-                        // Update stock
-                        dataStore.updateStock(productId, quantity);
-                        // Add to sales
-                        dataStore.addSale(total, quantity);
-                        
-                        // Show success
-                        showSuccess(statusLabel, "Order placed successfully! Total: $" + String.format("%.2f", total));
-                        
-                        // Clear fields
-                        productIdField.clear();
-                        quantityField.clear();
-                        
-                        // Refresh table
-                        loadProducts();
-                    }
-                });
+                order.addLine(product, quantity);
+                refreshCart();
+                showSuccess(statusLabel, quantity + " x " + product.getProductName() + " added to cart");
                 
+                // Clear fields
+                productIdField.clear();
+                quantityField.clear();
+            
             } catch (NumberFormatException ex) {
                 showError(statusLabel, "Please enter valid numbers");
             }
         });
         
+        // Order button action
+        orderButton.setOnAction(e -> {
+            if (order.isEmpty()) {
+                showError(statusLabel, "Cart is empty! Add products first");
+                return;
+            }
+            
+            double total = order.getTotal();
+            
+            // Show bill confirmation
+            StringBuilder details = new StringBuilder();
+            for (OrderLine line : order.getLines()) {
+                details.append(line.getProductName())
+                       .append(" x ").append(line.getQuantity())
+                       .append(" @ $").append(String.format("%.2f", line.getUnitPrice()))
+                       .append(" = $").append(String.format("%.2f", line.getLineTotal()))
+                       .append("\n");
+            }
+            
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Order Summary");
+            alert.setHeaderText("Order Details");
+            alert.setContentText(
+                details +
+                "\nItems: " + order.getItemCount() + "\n" +
+                "Total Amount: $" + String.format("%.2f", total) + "\n\n" +
+                "Confirm order?"
+            );
+            
+            alert.showAndWait().ifPresent(response -> {
+                if (response == ButtonType.OK) {
+                    ScreenEvents.OrderConfirm event = new ScreenEvents.OrderConfirm();
+                    event.begin();
+                    int items = order.getItemCount();
+                    // Update stock and sales for the whole order at once
+                    boolean placed = dataStore.placeOrder(order);
+                    long orderId = order.getOrderId();
+                    if (placed) {
+                        showSuccess(statusLabel, "Order #" + order.getOrderId() + " placed successfully! Total: $" + String.format("%.2f", order.getTotal()));
+                        order.clear();
+                        refreshCart();
+                    } else {
+                        showError(statusLabel, "Some items are no longer available. Please review the cart");
+                    }
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.orderId = orderId;
+                        event.items = items;
+                        event.total = total;
+                        event.placed = placed;
+                        event.commit();
+                    }
+                }
+            });
+        });
+        
         // Set layout
         mainContainer.setTop(header);
         mainContainer.setCenter(centerContent);
         mainContainer.setBottom(orderForm);
         
         // Create scene
-        scene = new Scene(mainContainer, 900, 650);
-        try {
-            String cssPath = getClass().getResource("/styles.css").toExternalForm();
-            scene.getStylesheets().add(cssPath);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not load CSS file. Using default styling.");
-        }
+        scene = Navigator.createScene(mainContainer);
+    }
+    
+    private VBox createCartBox() {
+        VBox cartBox = new VBox(10);
+        cartBox.setPrefWidth(320);
+        cartBox.setMinWidth(280);
+        
+        Label cartLabel = new Label("Cart");
+        cartLabel.setFont(Font.font("System", FontWeight.BOLD, 18));
+        
+        cartTable = new TableView<>();
+        cartTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        cartTable.setPlaceholder(new Label("No items in cart"));
+        
+        TableColumn<OrderLine, String> nameCol = new TableColumn<>("Product");
+        nameCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getProductName()));
+        nameCol.setPrefWidth(140);
+        
+        TableColumn<OrderLine, Integer> quantityCol = new TableColumn<>("Qty");
+        quantityCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getQuantity()));
+        quantityCol.setPrefWidth(50);
+        
+        TableColumn<OrderLine, Double> totalCol = new TableColumn<>("Total ($)");
+        totalCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getLineTotal()));
+        totalCol.setPrefWidth(90);
+        
+        cartTable.getColumns().addAll(nameCol, quantityCol, totalCol);
+        cartItems = FXCollections.observableArrayList();
+        cartTable.setItems(cartItems);
+        VBox.setVgrow(cartTable, Priority.ALWAYS);
+        
+        cartTotalLabel = new Label();
+        cartTotalLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
+        
+        Button removeButton = new Button("Remove");
+        removeButton.getStyleClass().add("secondary-button");
+        removeButton.setOnAction(e -> {
+            OrderLine selected = cartTable.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                order.removeLine(selected.getProductId());
+                refreshCart();
+            }
+        });
+        
+        Button clearButton = new Button("Clear");
+        clearButton.getStyleClass().add("secondary-button");
+        clearButton.setOnAction(e -> {
+            order.clear();
+            refreshCart();
+        });
+        
+        HBox cartButtons = new HBox(10);
+        cartButtons.setAlignment(Pos.CENTER_LEFT);
+        cartButtons.getChildren().addAll(removeButton, clearButton);
+        
+        cartBox.getChildren().addAll(cartLabel, cartTable, cartTotalLabel, cartButtons);
+        refreshCart();
+        return cartBox;
     }
     
-    private void loadProducts() {
-        ObservableList<Product> products = FXCollections.observableArrayList(dataStore.getProducts());
-        productTable.setItems(products);
+    private void refreshCart() {
+        cartItems.setAll(order.getLines());
+        cartTable.refresh();
+        cartTotalLabel.setText(String.format("Total: $%.2f (%d items)", order.getTotal(), order.getItemCount()));
     }
     
+    
     private void showError(Label label, String message) {
         label.setText("❌ " + message);
         label.setStyle("-fx-text-fill: #d32f2f;");
@@ -226,6 +346,7 @@ public class OrderController {
         label.setStyle("-fx-text-fill: #388e3c;");
     }
     
+    @Override
     public Scene getScene() {
         return scene;
     }
@@ -0,0 +1,487 @@
+package com.bakery.controller;
+
+import com.bakery.model.DataStore;
+import com.bakery.model.IntIndex;
+import com.bakery.model.Product;
+import com.bakery.model.ProductChange;
+import com.bakery.model.ProductListener;
+import com.bakery.model.ProductSort;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.ObservableListBase;
+import javafx.concurrent.Task;
+import javafx.scene.Scene;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.util.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * PagedProductList is the rows of a product table, read from the DataStore a page at a time
+ * It holds the IDs of the matching products in table order, and only the pages shown lately
+ *
+ * Searching and sorting run in the store on a background thread, and the new IDs are swapped
+ * in when they arrive. Pages are read on a background thread too, the first time the table
+ * shows them; until a page arrives its rows are null and show as empty, so scrolling never
+ * waits for the store or the inventory server.
+ * Change events patch cached rows in place; a change that can move rows or change which
+ * rows match runs the query again, at most a few times a second.
+ *
+ * The table is handed at most WINDOW_ROWS rows at a time, as JavaFX's VirtualFlow does work in
+ * proportion to the row count on every scroll. Larger results are shown through a window that
+ * slides along as the table scrolls near either end of it, so its indexes are window positions.
+ */
+class PagedProductList extends ObservableListBase<Product> implements ProductListener {
+    private static final int PAGE_SIZE = 100;
+    // Pages kept, so memory use does not grow with the catalog
+    private static final int MAX_PAGES = 32;
+    private static final Duration REQUERY_DELAY = Duration.millis(300);
+    private static final int WINDOW_ROWS = 10_000;
+    // The window slides once the table shows a row this close to either end of it
+    private static final int WINDOW_MARGIN = 500;
+    // Height of a product row under styles.css; a table with fixed-height rows
+    // lays out without measuring every row it shows
+    static final double ROW_HEIGHT = 34;
+    
+    // One shared query thread; a newer query supersedes older ones
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bakery-product-query");
+        t.setDaemon(true);
+        return t;
+    });
+    // Page reads have their own thread, so they do not wait behind a long query
+    private static final ExecutorService PAGE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bakery-product-page");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    private final DataStore dataStore;
+    private int[] ids = new int[0];
+    // Product ID -> row, so the table finds its selection without scanning the IDs
+    private IntIndex rowsById = new IntIndex();
+    // Position in ids of the first row the table sees
+    private int windowStart;
+    private boolean slideScheduled;
+    // Page number -> rows, least recently shown first
+    private final Map<Integer, Product[]> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Product[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private String query = "";
+    private ProductSort sort = ProductSort.ID;
+    private boolean ascending = true;
+    private long generation;
+    // Pages being read, and the changes patched while any is, which the read may have missed
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private final List<ProductChange> changesWhileLoading = new ArrayList<>();
+    // Bumped when the IDs change, so a page read for the old IDs is dropped
+    private long idsVersion;
+    // True while a query is running, so an empty table can say it is loading
+    private final SimpleBooleanProperty querying = new SimpleBooleanProperty();
+    private final PauseTransition requeryDelay = new PauseTransition(REQUERY_DELAY);
+    private final ConcurrentLinkedQueue<ProductChange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    
+    // Starts empty and fills in once the first query returns; call on the FX thread
+    PagedProductList(DataStore dataStore) {
+        this.dataStore = dataStore;
+        requeryDelay.setOnFinished(e -> requery());
+        dataStore.addProductListener(this);
+        requery();
+    }
+    
+    /**
+     * A column showing one product value, sorted in the store by the given column
+     */
+    static <T> TableColumn<Product, T> column(String title, ProductSort sort, Function<Product, T> value) {
+        TableColumn<Product, T> column = new TableColumn<>(title);
+        column.setUserData(sort);
+        // Rows of a page that has not been read yet are null
+        column.setCellValueFactory(cell -> cell.getValue() != null
+                ? new ReadOnlyObjectWrapper<>(value.apply(cell.getValue()))
+                : null);
+        return column;
+    }
+    
+    // Show this list in a table; clicking a column header sorts in the store
+    void attach(TableView<Product> table) {
+        table.setItems(this);
+        table.placeholderProperty().bind(Bindings.when(querying)
+                .then(new Label("Loading products..."))
+                .otherwise(new Label("No products found")));
+        table.setSortPolicy(t -> {
+            ProductSort newSort = ProductSort.ID;
+            boolean newAscending = true;
+            if (!t.getSortOrder().isEmpty()) {
+                TableColumn<Product, ?> column = t.getSortOrder().get(0);
+                if (column.getUserData() instanceof ProductSort) {
+                    newSort = (ProductSort) column.getUserData();
+                    newAscending = column.getSortType() == TableColumn.SortType.ASCENDING;
+                }
+            }
+            setSort(newSort, newAscending);
+            return true;
+        });
+        table.skinProperty().addListener((obs, oldSkin, skin) -> {
+            if (table.lookup(".virtual-flow") instanceof VirtualFlow) {
+                VirtualFlow<?> flow = (VirtualFlow<?>) table.lookup(".virtual-flow");
+                flow.positionProperty().addListener((o, oldPosition, position) -> slideLater(flow));
+            }
+        });
+    }
+    
+    // Show only products matching a search query; blank shows every product
+    void setQuery(String query) {
+        String newQuery = query != null ? query.trim() : "";
+        if (!newQuery.equals(this.query)) {
+            this.query = newQuery;
+            requery();
+        }
+    }
+    
+    void setSort(ProductSort sort, boolean ascending) {
+        if (sort != this.sort || ascending != this.ascending) {
+            this.sort = sort;
+            this.ascending = ascending;
+            requery();
+        }
+    }
+    
+    @Override
+    public int size() {
+        return Math.min(ids.length, WINDOW_ROWS);
+    }
+    
+    // A row, or null while its page is being read
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, size());
+        int row = windowStart + index;
+        int page = row / PAGE_SIZE;
+        Product[] rows = pages.get(page);
+        if (rows == null) {
+            loadPage(page);
+            return null;
+        }
+        return rows[row % PAGE_SIZE];
+    }
+    
+    // Position of the same product in the window, found by ID so the table can look up
+    // its selection without reading every page
+    @Override
+    public int indexOf(Object o) {
+        int row = o instanceof Product ? rowsById.get(((Product) o).getProductId(), -1) : -1;
+        return row >= windowStart && row < windowStart + size() ? row - windowStart : -1;
+    }
+    
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+    
+    // Read a page in the background and fill in its rows when it arrives
+    private void loadPage(int page) {
+        if (!loadingPages.add(page)) {
+            return;
+        }
+        int from = page * PAGE_SIZE;
+        int[] pageIds = Arrays.copyOfRange(ids, from, Math.min(from + PAGE_SIZE, ids.length));
+        long version = idsVersion;
+        int firstChange = changesWhileLoading.size();
+        Task<Product[]> task = new Task<>() {
+            @Override
+            protected Product[] call() {
+                List<Product> products = dataStore.getProductsById(pageIds);
+                Product[] rows = new Product[pageIds.length];
+                for (int i = 0; i < rows.length; i++) {
+                    // Rows hold copies, which only change through events
+                    Product p = products.get(i);
+                    rows[i] = p != null ? copyOf(p) : null;
+                }
+                return rows;
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (version == idsVersion) {
+                Product[] rows = task.getValue();
+                for (ProductChange change : changesWhileLoading.subList(firstChange, changesWhileLoading.size())) {
+                    for (int i = 0; i < rows.length; i++) {
+                        if (rows[i] != null && rows[i].getProductId() == change.getProductId()) {
+                            rows[i] = patched(rows[i], change);
+                        }
+                    }
+                }
+                pageLoaded(page);
+                pages.put(page, rows);
+                // The window may have slid while the page was read
+                int first = Math.max(from, windowStart);
+                int end = Math.min(from + rows.length, windowStart + size());
+                if (first < end) {
+                    beginChange();
+                    for (int row = first; row < end; row++) {
+                        nextSet(row - windowStart, null);
+                    }
+                    endChange();
+                }
+            }
+        });
+        task.setOnFailed(e -> {
+            if (version == idsVersion) {
+                pageLoaded(page);
+            }
+            System.err.println("Error loading products: " + task.getException().getMessage());
+        });
+        PAGE_EXECUTOR.execute(task);
+    }
+    
+    private void pageLoaded(int page) {
+        loadingPages.remove(page);
+        if (loadingPages.isEmpty()) {
+            changesWhileLoading.clear();
+        }
+    }
+    
+    // Fetch the IDs for the current search and sort; a superseded result is dropped
+    private void requery() {
+        requeryDelay.stop();
+        long current = ++generation;
+        querying.set(true);
+        String currentQuery = query;
+        ProductSort currentSort = sort;
+        boolean currentAscending = ascending;
+        ScreenEvents.TableReload event = new ScreenEvents.TableReload();
+        event.begin();
+        Task<QueryResult> task = new Task<>() {
+            @Override
+            protected QueryResult call() {
+                return new QueryResult(dataStore.queryProductIds(currentQuery, currentSort, currentAscending));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (current == generation) {
+                querying.set(false);
+                setIds(task.getValue());
+                event.end();
+                if (event.shouldCommit()) {
+                    event.query = currentQuery;
+                    event.sort = currentSort + (currentAscending ? " ascending" : " descending");
+                    event.rows = ids.length;
+                    event.commit();
+                }
+            }
+        });
+        task.setOnFailed(e -> {
+            if (current == generation) {
+                querying.set(false);
+            }
+            System.err.println("Error loading products: " + task.getException().getMessage());
+        });
+        QUERY_EXECUTOR.execute(task);
+    }
+    
+    // Query again shortly; changes made meanwhile are covered by the same query
+    private void requeryLater() {
+        if (requeryDelay.getStatus() != Animation.Status.RUNNING) {
+            requeryDelay.playFromStart();
+        }
+    }
+    
+    private void setIds(QueryResult result) {
+        int[] newIds = result.ids;
+        if (Arrays.equals(ids, newIds)) {
+            // Same rows in the same order; the cached pages are kept current by events
+            return;
+        }
+        int oldStart = windowStart;
+        int oldSize = size();
+        Map<Integer, Product[]> oldPages = new HashMap<>(pages);
+        ids = newIds;
+        rowsById = result.rowsById;
+        // Stay about where the table was
+        windowStart = Math.min(windowStart, Math.max(0, ids.length - WINDOW_ROWS));
+        pages.clear();
+        idsVersion++;
+        loadingPages.clear();
+        changesWhileLoading.clear();
+        replaceAll(oldStart, oldSize, oldPages);
+    }
+    
+    // Slide the window after the next layout, once the table shows the rows it scrolled to,
+    // if they are near either end of it
+    private void slideLater(VirtualFlow<?> flow) {
+        Scene scene = flow.getScene();
+        if (ids.length > WINDOW_ROWS && !slideScheduled && scene != null) {
+            slideScheduled = true;
+            scene.addPostLayoutPulseListener(new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    slideScheduled = false;
+                    slide(flow);
+                }
+            });
+            Platform.requestNextPulse();
+        }
+    }
+    
+    // Centre the window on the rows shown, keeping them where they are on screen
+    private void slide(VirtualFlow<?> flow) {
+        IndexedCell<?> first = flow.getFirstVisibleCell();
+        IndexedCell<?> last = flow.getLastVisibleCell();
+        if (first == null || last == null || first.getIndex() < 0) {
+            return;
+        }
+        boolean nearStart = first.getIndex() < WINDOW_MARGIN && windowStart > 0;
+        boolean nearEnd = last.getIndex() >= size() - WINDOW_MARGIN && windowStart + size() < ids.length;
+        if (!nearStart && !nearEnd) {
+            return;
+        }
+        int firstRow = windowStart + first.getIndex();
+        double scrolledOut = -first.getLayoutY();
+        int oldStart = windowStart;
+        windowStart = Math.max(0, Math.min(firstRow - WINDOW_ROWS / 2, ids.length - WINDOW_ROWS));
+        replaceAll(oldStart, size(), new HashMap<>(pages));
+        flow.scrollToTop(firstRow - windowStart);
+        flow.scrollPixels(scrolledOut);
+    }
+    
+    // Tell the table every row it sees has changed
+    // The old rows are only described by the pages that were cached
+    private void replaceAll(int oldStart, int oldSize, Map<Integer, Product[]> oldPages) {
+        List<Product> removed = new AbstractList<>() {
+            @Override
+            public Product get(int index) {
+                int row = oldStart + index;
+                Product[] rows = oldPages.get(row / PAGE_SIZE);
+                return rows != null ? rows[row % PAGE_SIZE] : null;
+            }
+            
+            @Override
+            public int size() {
+                return oldSize;
+            }
+        };
+        beginChange();
+        nextReplace(0, size(), removed);
+        endChange();
+    }
+    
+    @Override
+    public void productsChanged(List<ProductChange> changes) {
+        pending.addAll(changes);
+        if (applyScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::applyPending);
+        }
+    }
+    
+    private void applyPending() {
+        applyScheduled.set(false);
+        boolean requery = false;
+        ProductChange change;
+        while ((change = pending.poll()) != null) {
+            switch (change.getType()) {
+                case STOCK_CHANGED:
+                    patch(change);
+                    requery |= sort == ProductSort.QUANTITY;
+                    break;
+                case UPDATED:
+                    patch(change);
+                    requery |= sort != ProductSort.ID || !query.isEmpty();
+                    break;
+                default:
+                    // Added and removed products, or a reload, change the rows themselves
+                    requery = true;
+                    break;
+            }
+        }
+        if (requery) {
+            requeryLater();
+        }
+    }
+    
+    // Replace a cached row; rows that are not cached are read fresh when shown
+    private void patch(ProductChange change) {
+        if (!loadingPages.isEmpty()) {
+            changesWhileLoading.add(change);
+        }
+        int index = -1;
+        Product old = null;
+        for (Map.Entry<Integer, Product[]> entry : pages.entrySet()) {
+            Product[] rows = entry.getValue();
+            for (int i = 0; i < rows.length && index < 0; i++) {
+                if (rows[i] != null && rows[i].getProductId() == change.getProductId()) {
+                    old = rows[i];
+                    rows[i] = patched(old, change);
+                    index = entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+            if (index >= 0) {
+                break;
+            }
+        }
+        // Listeners may read rows, which reorders the page cache, so fire after the loop
+        if (index >= windowStart && index < windowStart + size()) {
+            beginChange();
+            nextSet(index - windowStart, old);
+            endChange();
+        }
+    }
+    
+    // A row with a stock or product change applied
+    private static Product patched(Product row, ProductChange change) {
+        return change.getType() == ProductChange.Type.STOCK_CHANGED
+                ? new Product(row.getProductId(), row.getProductName(), row.getCategory(),
+                        row.getPrice(), change.getQuantity(), row.getReorderLevel())
+                : copyOf(change.getProduct());
+    }
+    
+    private static Product copyOf(Product p) {
+        return new Product(p.getProductId(), p.getProductName(), p.getCategory(), p.getPrice(), p.getQuantity(),
+                p.getReorderLevel());
+    }
+    
+    /**
+     * The IDs a query returned, indexed on the query thread so large results do not hold up the UI
+     */
+    private static final class QueryResult {
+        final int[] ids;
+        final IntIndex rowsById;
+        
+        QueryResult(int[] ids) {
+            this.ids = ids;
+            this.rowsById = new IntIndex(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                rowsById.put(ids[i], i);
+            }
+        }
+    }
+}
@@ -2,34 +2,41 @@ package com.bakery.controller;
 
 import com.bakery.model.DataStore;
 import com.bakery.model.Product;
+import com.bakery.model.ProductSort;
+import com.bakery.model.ProductImport;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import java.io.File;
+import java.nio.file.Path;
 import java.util.Optional;
 
 /**
  * ProductController handles product management
  * Allows adding, updating, and deleting products
  */
-public class ProductController {
+public class ProductController implements Navigator.Page {
+    private Navigator navigator;
     private Stage primaryStage;
     private Scene scene;
     private DataStore dataStore;
     private TableView<Product> productTable;
+    private ProductSearchField searchField;
     
-    private TextField idField, nameField, priceField, quantityField;
+    private TextField idField, nameField, priceField, quantityField, reorderField;
     private ComboBox<String> categoryCombo;
     
-    public ProductController(Stage primaryStage) {
-        this.primaryStage = primaryStage;
+    ProductController(Navigator navigator) {
+        this.navigator = navigator;
+        this.primaryStage = navigator.getStage();
         this.dataStore = DataStore.getInstance();
         createProductScene();
     }
@@ -46,10 +53,7 @@ public class ProductController {
         
         Button backButton = new Button("← Back");
         backButton.getStyleClass().add("secondary-button");
-        backButton.setOnAction(e -> {
-            HomeController homeController = new HomeController(primaryStage);
-            primaryStage.setScene(homeController.getScene());
-        });
+        backButton.setOnAction(e -> navigator.show(Navigator.Screen.HOME));
         
         Label titleLabel = new Label("Manage Products");
         titleLabel.setFont(Font.font("System", FontWeight.BOLD, 28));
@@ -73,27 +77,35 @@ public class ProductController {
         
         productTable = new TableView<>();
         productTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        productTable.setFixedCellSize(PagedProductList.ROW_HEIGHT);
         productTable.setPrefHeight(250);
         
-        TableColumn<Product, Integer> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(new PropertyValueFactory<>("productId"));
-        
-        TableColumn<Product, String> nameCol = new TableColumn<>("Product Name");
-        nameCol.setCellValueFactory(new PropertyValueFactory<>("productName"));
-        
-        TableColumn<Product, String> categoryCol = new TableColumn<>("Category");
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
-        
-        TableColumn<Product, Double> priceCol = new TableColumn<>("Price ($)");
-        priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
-        
-        TableColumn<Product, Integer> stockCol = new TableColumn<>("Stock");
-        stockCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        
-        productTable.getColumns().addAll(idCol, nameCol, categoryCol, priceCol, stockCol);
-        
-        // Load products
-        loadProducts();
+        TableColumn<Product, Integer> idCol = PagedProductList.column("ID", ProductSort.ID, Product::getProductId);
+        TableColumn<Product, String> nameCol = PagedProductList.column("Product Name", ProductSort.NAME, Product::getProductName);
+        TableColumn<Product, String> categoryCol = PagedProductList.column("Category", ProductSort.CATEGORY, Product::getCategory);
+        TableColumn<Product, Double> priceCol = PagedProductList.column("Price ($)", ProductSort.PRICE, Product::getPrice);
+        TableColumn<Product, Integer> stockCol = PagedProductList.column("Stock", ProductSort.QUANTITY, Product::getQuantity);
+        TableColumn<Product, Integer> reorderCol = PagedProductList.column("Reorder Level", null, Product::getReorderLevel);
+        reorderCol.setSortable(false);
+        
+        productTable.getColumns().addAll(idCol, nameCol, categoryCol, priceCol, stockCol, reorderCol);
+        
+        // Table pages through the catalog, searching and sorting in the store
+        // Rows are patched as products change, so actions below need not reload it
+        PagedProductList products = new PagedProductList(dataStore);
+        products.attach(productTable);
+        
+        searchField = new ProductSearchField(products);
+        
+        HBox tableHeader = new HBox(15);
+        tableHeader.setAlignment(Pos.CENTER_LEFT);
+        Region tableSpacer = new Region();
+        HBox.setHgrow(tableSpacer, Priority.ALWAYS);
+        Button importButton = new Button("Import CSV");
+        importButton.getStyleClass().add("secondary-button");
+        Button exportButton = new Button("Export CSV");
+        exportButton.getStyleClass().add("secondary-button");
+        tableHeader.getChildren().addAll(tableLabel, tableSpacer, searchField.getField(), importButton, exportButton);
         
         // Product form
         VBox formBox = new VBox(15);
@@ -136,6 +148,11 @@ public class ProductController {
         quantityField = new TextField();
         quantityField.setPromptText("Enter quantity");
         
+        // Reorder level
+        Label reorderLabel = new Label("Reorder Level:");
+        reorderField = new TextField();
+        reorderField.setPromptText("Warn when stock falls below (optional)");
+        
         formGrid.add(idLabel, 0, 0);
         formGrid.add(idField, 1, 0);
         formGrid.add(nameLabel, 0, 1);
@@ -146,6 +163,8 @@ public class ProductController {
         formGrid.add(priceField, 1, 3);
         formGrid.add(quantityLabel, 0, 4);
         formGrid.add(quantityField, 1, 4);
+        formGrid.add(reorderLabel, 0, 5);
+        formGrid.add(reorderField, 1, 5);
         
         // Buttons
         HBox buttonBox = new HBox(15);
@@ -174,17 +193,20 @@ public class ProductController {
         
         formBox.getChildren().addAll(formLabel, formGrid, buttonBox, statusLabel);
         
-        centerContent.getChildren().addAll(tableLabel, productTable, formBox);
+        centerContent.getChildren().addAll(tableHeader, productTable, formBox);
         
         // Button actions
         addButton.setOnAction(e -> addProduct(statusLabel));
         updateButton.setOnAction(e -> updateProduct(statusLabel));
         deleteButton.setOnAction(e -> deleteProduct(statusLabel));
         clearButton.setOnAction(e -> clearForm());
+        importButton.setOnAction(e -> importProducts(importButton, statusLabel));
+        exportButton.setOnAction(e -> exportProducts(exportButton, statusLabel));
         
         // Table selection - populate form
         productTable.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
-            if (newVal != null) {
+            // A patched row of the same product must not overwrite edits in progress
+            if (newVal != null && (oldVal == null || oldVal.getProductId() != newVal.getProductId())) {
                 populateForm(newVal);
             }
         });
@@ -194,19 +216,9 @@ public class ProductController {
         mainContainer.setCenter(new ScrollPane(centerContent));
         
         // Create scene
-        scene = new Scene(mainContainer, 900, 650);
-        try {
-            String cssPath = getClass().getResource("/styles.css").toExternalForm();
-            scene.getStylesheets().add(cssPath);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not load CSS file. Using default styling.");
-        }
+        scene = Navigator.createScene(mainContainer);
     }
     
-    private void loadProducts() {
-        ObservableList<Product> products = FXCollections.observableArrayList(dataStore.getProducts());
-        productTable.setItems(products);
-    }
     
     private void populateForm(Product product) {
         idField.setText(String.valueOf(product.getProductId()));
@@ -214,6 +226,7 @@ public class ProductController {
         categoryCombo.setValue(product.getCategory());
         priceField.setText(String.valueOf(product.getPrice()));
         quantityField.setText(String.valueOf(product.getQuantity()));
+        reorderField.setText(String.valueOf(product.getReorderLevel()));
     }
     
     private void clearForm() {
@@ -222,6 +235,7 @@ public class ProductController {
         categoryCombo.setValue(null);
         priceField.clear();
         quantityField.clear();
+        reorderField.clear();
         productTable.getSelectionModel().clearSelection();
     }
     
@@ -231,27 +245,23 @@ public class ProductController {
             String category = categoryCombo.getValue();
             double price = Double.parseDouble(priceField.getText());
             int quantity = Integer.parseInt(quantityField.getText());
+            int reorderLevel = parseReorderLevel();
             
-            if (name.isEmpty() || category == null) {
-                showError(statusLabel, "Please fill all fields");
-                return;
-            }
-            
-            if (price <= 0 || quantity < 0) {
-                showError(statusLabel, "Price must be positive and quantity cannot be negative");
+            String error = Product.validate(name, category, price, quantity, reorderLevel);
+            if (error != null) {
+                showError(statusLabel, error);
                 return;
             }
             
             int newId = dataStore.getNextProductId();
-            Product product = new Product(newId, name, category, price, quantity);
+            Product product = new Product(newId, name, category, price, quantity, reorderLevel);
             dataStore.addProduct(product);
             
             showSuccess(statusLabel, "Product added successfully!");
             clearForm();
-            loadProducts();
-            
+        
         } catch (NumberFormatException e) {
-            showError(statusLabel, "Please enter valid numbers for price and quantity");
+            showError(statusLabel, "Please enter valid numbers for price, quantity and reorder level");
         }
     }
     
@@ -267,29 +277,31 @@ public class ProductController {
             String category = categoryCombo.getValue();
             double price = Double.parseDouble(priceField.getText());
             int quantity = Integer.parseInt(quantityField.getText());
+            int reorderLevel = parseReorderLevel();
             
-            if (name.isEmpty() || category == null) {
-                showError(statusLabel, "Please fill all fields");
-                return;
-            }
-            
-            if (price <= 0 || quantity < 0) {
-                showError(statusLabel, "Price must be positive and quantity cannot be negative");
+            String error = Product.validate(name, category, price, quantity, reorderLevel);
+            if (error != null) {
+                showError(statusLabel, error);
                 return;
             }
             
-            Product product = new Product(id, name, category, price, quantity);
+            Product product = new Product(id, name, category, price, quantity, reorderLevel);
             dataStore.updateProduct(product);
             
             showSuccess(statusLabel, "Product updated successfully!");
             clearForm();
-            loadProducts();
-            
+        
         } catch (NumberFormatException e) {
-            showError(statusLabel, "Please enter valid numbers for price and quantity");
+            showError(statusLabel, "Please enter valid numbers for price, quantity and reorder level");
         }
     }
     
+    // An empty reorder level means the product is never reported as running low
+    private int parseReorderLevel() {
+        String text = reorderField.getText().trim();
+        return text.isEmpty() ? 0 : Integer.parseInt(text);
+    }
+    
     private void deleteProduct(Label statusLabel) {
         if (idField.getText().isEmpty()) {
             showError(statusLabel, "Please select a product to delete");
@@ -308,10 +320,113 @@ public class ProductController {
             
             showSuccess(statusLabel, "Product deleted successfully!");
             clearForm();
-            loadProducts();
         }
     }
     
+    // Import a CSV product list in the background; invalid rows are shown before anything changes
+    private void importProducts(Button importButton, Label statusLabel) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Products");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file != null) {
+            runImport(file.toPath(), false, importButton, statusLabel);
+        }
+    }
+    
+    private void runImport(Path file, boolean skipInvalidRows, Button importButton, Label statusLabel) {
+        Task<ProductImport> task = new Task<>() {
+            @Override
+            protected ProductImport call() throws Exception {
+                return dataStore.importProducts(file, skipInvalidRows);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            importButton.setDisable(false);
+            ProductImport result = task.getValue();
+            if (result.isApplied()) {
+                String message = "Imported " + result.getAddedCount() + " new and "
+                        + result.getUpdatedCount() + " updated products";
+                if (result.getErrorCount() > 0) {
+                    showError(statusLabel, message + ", skipped " + result.getErrorCount() + " invalid rows");
+                } else {
+                    showSuccess(statusLabel, message);
+                }
+            } else if (confirmSkipInvalidRows(result)) {
+                runImport(file, true, importButton, statusLabel);
+            } else {
+                showError(statusLabel, "Import cancelled: " + result.getErrorCount() + " invalid rows");
+            }
+        });
+        task.setOnFailed(e -> {
+            importButton.setDisable(false);
+            System.err.println("Error importing products: " + task.getException().getMessage());
+            showError(statusLabel, "Import failed: " + task.getException().getMessage());
+        });
+        importButton.setDisable(true);
+        statusLabel.setText("Importing " + file.getFileName() + "...");
+        statusLabel.setStyle("");
+        
+        Thread thread = new Thread(task, "bakery-product-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    // List the invalid rows and ask whether to import the valid ones anyway
+    private boolean confirmSkipInvalidRows(ProductImport result) {
+        int valid = result.getRowCount() - result.getErrorCount();
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Import Problems");
+        alert.setHeaderText(result.getErrorCount() + " of " + result.getRowCount() + " rows are invalid");
+        alert.setContentText("Import the " + valid + " valid rows and skip the rest?");
+        
+        StringBuilder details = new StringBuilder(String.join("\n", result.getErrors()));
+        if (result.getErrorCount() > result.getErrors().size()) {
+            details.append("\n... and ").append(result.getErrorCount() - result.getErrors().size()).append(" more");
+        }
+        TextArea errorList = new TextArea(details.toString());
+        errorList.setEditable(false);
+        errorList.setWrapText(true);
+        alert.getDialogPane().setExpandableContent(errorList);
+        alert.getDialogPane().setExpanded(true);
+        
+        Optional<ButtonType> answer = alert.showAndWait();
+        return valid > 0 && answer.isPresent() && answer.get() == ButtonType.OK;
+    }
+    
+    // Export the catalog in the format the import reads
+    private void exportProducts(Button exportButton, Label statusLabel) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Products");
+        chooser.setInitialFileName("products.csv");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showSaveDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        
+        Task<Integer> task = new Task<>() {
+            @Override
+            protected Integer call() throws Exception {
+                return dataStore.exportProducts(file.toPath());
+            }
+        };
+        task.setOnSucceeded(e -> {
+            exportButton.setDisable(false);
+            showSuccess(statusLabel, "Exported " + task.getValue() + " products to " + file.getName());
+        });
+        task.setOnFailed(e -> {
+            exportButton.setDisable(false);
+            System.err.println("Error exporting products: " + task.getException().getMessage());
+            showError(statusLabel, "Export failed: " + task.getException().getMessage());
+        });
+        exportButton.setDisable(true);
+        
+        Thread thread = new Thread(task, "bakery-product-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
     private void showError(Label label, String message) {
         label.setText("❌ " + message);
         label.setStyle("-fx-text-fill: #d32f2f;");
@@ -322,6 +437,7 @@ public class ProductController {
         label.setStyle("-fx-text-fill: #388e3c;");
     }
     
+    @Override
     public Scene getScene() {
         return scene;
     }
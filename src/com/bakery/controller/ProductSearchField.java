@@ -0,0 +1,33 @@
+package com.bakery.controller;
+
+import javafx.animation.PauseTransition;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+
+/**
+ * ProductSearchField is a typeahead box that filters a product table
+ * Matches product names, categories and IDs by word prefix
+ *
+ * Typing restarts a short pause; when it ends the query is handed to the table's
+ * PagedProductList, which runs it against the DataStore search index on a background
+ * thread. Rows added or renamed later are matched when the list queries again.
+ */
+class ProductSearchField {
+    private static final Duration DEBOUNCE = Duration.millis(150);
+    
+    private final TextField field;
+    
+    ProductSearchField(PagedProductList products) {
+        field = new TextField();
+        field.setPromptText("🔍 Search by name, category or ID");
+        field.setPrefWidth(300);
+        
+        PauseTransition pause = new PauseTransition(DEBOUNCE);
+        pause.setOnFinished(e -> products.setQuery(field.getText()));
+        field.textProperty().addListener((obs, oldVal, newVal) -> pause.playFromStart());
+    }
+    
+    public TextField getField() {
+        return field;
+    }
+}
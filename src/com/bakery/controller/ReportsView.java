@@ -0,0 +1,248 @@
+package com.bakery.controller;
+
+import com.bakery.model.DataStore;
+import com.bakery.model.PriceComparison;
+import com.bakery.model.SalesReport;
+import com.bakery.model.SalesTotal;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import java.time.LocalDate;
+import java.util.concurrent.CancellationException;
+
+/**
+ * ReportsView is the ad-hoc reports tab of the sales screen
+ * Runs a report over a chosen date range: top products, category share,
+ * basket sizes and price comparisons
+ *
+ * The report scans the sales ledger in parallel on a background Task; the
+ * progress bar follows the days scanned and Cancel stops the scan.
+ */
+class ReportsView {
+    private final DataStore dataStore;
+    private final VBox root;
+    private final DatePicker fromPicker;
+    private final DatePicker toPicker;
+    private final Spinner<Integer> topSpinner;
+    private final Button runButton;
+    private final Button cancelButton;
+    private final ProgressBar progressBar;
+    private final Label statusLabel;
+    private final Label summaryLabel;
+    private final TableView<SalesTotal> productTable;
+    private final TableView<SalesTotal> categoryTable;
+    private final TableColumn<SalesTotal, String> shareCol;
+    private final TableView<PriceComparison> priceTable;
+    private Task<SalesReport> running;
+    
+    ReportsView(DataStore dataStore) {
+        this.dataStore = dataStore;
+        
+        // Report parameters
+        fromPicker = new DatePicker(LocalDate.now().minusDays(29));
+        toPicker = new DatePicker(LocalDate.now());
+        topSpinner = new Spinner<>(1, 100, 10);
+        topSpinner.setPrefWidth(80);
+        
+        runButton = new Button("Run Report");
+        runButton.getStyleClass().add("primary-button");
+        runButton.setOnAction(e -> run());
+        
+        cancelButton = new Button("Cancel");
+        cancelButton.getStyleClass().add("secondary-button");
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> {
+            if (running != null) {
+                running.cancel();
+            }
+        });
+        
+        HBox parameters = new HBox(10);
+        parameters.setAlignment(Pos.CENTER_LEFT);
+        parameters.getChildren().addAll(
+            new Label("From:"), fromPicker,
+            new Label("To:"), toPicker,
+            new Label("Top:"), topSpinner,
+            runButton, cancelButton
+        );
+        
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(200);
+        progressBar.setVisible(false);
+        statusLabel = new Label();
+        
+        HBox progressRow = new HBox(10);
+        progressRow.setAlignment(Pos.CENTER_LEFT);
+        progressRow.getChildren().addAll(progressBar, statusLabel);
+        
+        summaryLabel = new Label("Choose a date range and run a report");
+        summaryLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        
+        // Results
+        productTable = createTotalsTable("Product");
+        categoryTable = createTotalsTable("Category");
+        shareCol = new TableColumn<>("Share");
+        shareCol.setPrefWidth(80);
+        categoryTable.getColumns().add(shareCol);
+        priceTable = createPriceTable();
+        
+        TabPane results = new TabPane();
+        results.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        results.getTabs().addAll(
+            new Tab("Top Products", productTable),
+            new Tab("Category Share", categoryTable),
+            new Tab("Price Comparison", priceTable)
+        );
+        VBox.setVgrow(results, Priority.ALWAYS);
+        
+        root = new VBox(10);
+        root.setPadding(new Insets(10));
+        root.getChildren().addAll(parameters, progressRow, summaryLabel, results);
+    }
+    
+    VBox getRoot() {
+        return root;
+    }
+    
+    private void run() {
+        LocalDate from = fromPicker.getValue();
+        LocalDate to = toPicker.getValue();
+        if (from == null || to == null || from.isAfter(to)) {
+            statusLabel.setText("❌ Choose a start date on or before the end date");
+            return;
+        }
+        int topN = topSpinner.getValue();
+        
+        Task<SalesReport> task = new Task<>() {
+            @Override
+            protected SalesReport call() throws Exception {
+                Task<SalesReport> self = this;
+                return dataStore.runSalesReport(from, to, topN, new SalesReport.Progress() {
+                    @Override
+                    public void update(int done, int total) {
+                        updateProgress(done, total);
+                        updateMessage("Scanned " + done + " of " + total + " days");
+                    }
+                    
+                    @Override
+                    public boolean isCancelled() {
+                        return self.isCancelled();
+                    }
+                });
+            }
+        };
+        task.setOnSucceeded(e -> {
+            show(task.getValue());
+            finish("✓ Report ready in " + task.getValue().getElapsedMillis() + " ms");
+        });
+        task.setOnCancelled(e -> finish("Report cancelled"));
+        task.setOnFailed(e -> {
+            Throwable error = task.getException();
+            if (error instanceof CancellationException) {
+                finish("Report cancelled");
+            } else {
+                System.err.println("Error running sales report: " + error.getMessage());
+                finish("❌ Report failed: " + error.getMessage());
+            }
+        });
+        
+        running = task;
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        progressBar.setVisible(true);
+        runButton.setDisable(true);
+        cancelButton.setDisable(false);
+        
+        Thread thread = new Thread(task, "bakery-report");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void finish(String status) {
+        running = null;
+        progressBar.progressProperty().unbind();
+        statusLabel.textProperty().unbind();
+        progressBar.setVisible(false);
+        statusLabel.setText(status);
+        runButton.setDisable(false);
+        cancelButton.setDisable(true);
+    }
+    
+    private void show(SalesReport report) {
+        summaryLabel.setText(String.format(
+            "Revenue: $%.2f   Items: %d   Orders: %d   Avg basket: %.2f items / $%.2f",
+            report.getTotalRevenue(), report.getTotalQuantity(), report.getOrderCount(),
+            report.getAverageBasketSize(), report.getAverageBasketValue()));
+        
+        productTable.setItems(FXCollections.observableArrayList(report.getTopProducts()));
+        
+        // Share depends on the report total, so the column is bound per report
+        shareCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                String.format("%.1f%%", report.getShare(cell.getValue()) * 100)));
+        categoryTable.setItems(FXCollections.observableArrayList(report.getCategories()));
+        
+        priceTable.setItems(FXCollections.observableArrayList(report.getPriceComparisons()));
+    }
+    
+    private TableView<SalesTotal> createTotalsTable(String labelHeader) {
+        TableView<SalesTotal> table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setPlaceholder(new Label("No sales in this range"));
+        
+        TableColumn<SalesTotal, String> labelCol = new TableColumn<>(labelHeader);
+        labelCol.setCellValueFactory(new PropertyValueFactory<>("label"));
+        labelCol.setPrefWidth(220);
+        
+        TableColumn<SalesTotal, Long> quantityCol = new TableColumn<>("Quantity Sold");
+        quantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        quantityCol.setPrefWidth(110);
+        
+        TableColumn<SalesTotal, Double> revenueCol = new TableColumn<>("Revenue ($)");
+        revenueCol.setCellValueFactory(new PropertyValueFactory<>("revenue"));
+        revenueCol.setPrefWidth(110);
+        
+        table.getColumns().addAll(labelCol, quantityCol, revenueCol);
+        return table;
+    }
+    
+    private TableView<PriceComparison> createPriceTable() {
+        TableView<PriceComparison> table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setPlaceholder(new Label("No product sold at more than one price in this range"));
+        
+        TableColumn<PriceComparison, String> labelCol = new TableColumn<>("Product");
+        labelCol.setCellValueFactory(new PropertyValueFactory<>("label"));
+        labelCol.setPrefWidth(180);
+        
+        TableColumn<PriceComparison, Double> lowPriceCol = new TableColumn<>("Low Price ($)");
+        lowPriceCol.setCellValueFactory(new PropertyValueFactory<>("lowPrice"));
+        
+        TableColumn<PriceComparison, String> lowQuantityCol = new TableColumn<>("Sold / Day");
+        lowQuantityCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                String.format("%.1f", cell.getValue().getLowDailyQuantity())));
+        
+        TableColumn<PriceComparison, Double> highPriceCol = new TableColumn<>("High Price ($)");
+        highPriceCol.setCellValueFactory(new PropertyValueFactory<>("highPrice"));
+        
+        TableColumn<PriceComparison, String> highQuantityCol = new TableColumn<>("Sold / Day");
+        highQuantityCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                String.format("%.1f", cell.getValue().getHighDailyQuantity())));
+        
+        TableColumn<PriceComparison, Double> elasticityCol = new TableColumn<>("Elasticity");
+        elasticityCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(
+                Math.round(cell.getValue().getElasticity() * 100) / 100.0));
+        
+        table.getColumns().addAll(labelCol, lowPriceCol, lowQuantityCol, highPriceCol, highQuantityCol, elasticityCol);
+        return table;
+    }
+}
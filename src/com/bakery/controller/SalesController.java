@@ -1,26 +1,42 @@
 package com.bakery.controller;
 
 import com.bakery.model.DataStore;
+import com.bakery.model.SalesTotal;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
+import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import javafx.stage.Stage;
+
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * SalesController handles the sales report screen
- * Displays total sales and products sold
+ * Displays total sales and products sold, plus hourly, daily, product and category breakdowns
+ * read from the store's sales rollups, and ad-hoc reports over any date range
  */
-public class SalesController {
-    private Stage primaryStage;
+public class SalesController implements Navigator.Page {
+    private Navigator navigator;
     private Scene scene;
     private DataStore dataStore;
+    private BarChart<String, Number> hourlyChart;
+    private BarChart<String, Number> dailyChart;
+    private TableView<SalesTotal> productTable;
+    private TableView<SalesTotal> categoryTable;
+    private Label totalSalesLabel, productsSoldLabel, averageSaleLabel;
     
-    public SalesController(Stage primaryStage) {
-        this.primaryStage = primaryStage;
+    SalesController(Navigator navigator) {
+        this.navigator = navigator;
         this.dataStore = DataStore.getInstance();
         createSalesScene();
     }
@@ -37,10 +53,7 @@ public class SalesController {
         
         Button backButton = new Button("← Back");
         backButton.getStyleClass().add("secondary-button");
-        backButton.setOnAction(e -> {
-            HomeController homeController = new HomeController(primaryStage);
-            primaryStage.setScene(homeController.getScene());
-        });
+        backButton.setOnAction(e -> navigator.show(Navigator.Screen.HOME));
         
         Label titleLabel = new Label("Sales Report");
         titleLabel.setFont(Font.font("System", FontWeight.BOLD, 28));
@@ -52,75 +65,158 @@ public class SalesController {
         Region spacer2 = new Region();
         HBox.setHgrow(spacer2, Priority.ALWAYS);
         
-        header.getChildren().addAll(backButton, spacer, titleLabel, spacer2, new Label(""));
+        Button rebuildButton = new Button("↻ Rebuild");
+        rebuildButton.getStyleClass().add("secondary-button");
+        rebuildButton.setTooltip(new Tooltip("Recalculate the reports from the full sales history"));
+        rebuildButton.setOnAction(e -> rebuildReports(rebuildButton));
+        
+        header.getChildren().addAll(backButton, spacer, titleLabel, spacer2, rebuildButton);
         
         // Center section - Sales statistics
-        VBox centerContent = new VBox(30);
-        centerContent.setAlignment(Pos.CENTER);
-        centerContent.setPadding(new Insets(40));
+        VBox centerContent = new VBox(20);
+        centerContent.setAlignment(Pos.TOP_CENTER);
+        centerContent.setPadding(new Insets(10, 20, 20, 20));
         
         // Sales summary container
-        VBox summaryBox = new VBox(25);
+        HBox summaryBox = new HBox(20);
         summaryBox.setAlignment(Pos.CENTER);
-        summaryBox.setMaxWidth(600);
-        summaryBox.getStyleClass().add("form-container");
-        summaryBox.setPadding(new Insets(40));
         
-        Label summaryTitle = new Label("📊 Sales Summary");
-        summaryTitle.setFont(Font.font("System", FontWeight.BOLD, 24));
-        summaryTitle.getStyleClass().add("title-label");
+        // Card values are filled by loadReports
+        totalSalesLabel = new Label();
+        productsSoldLabel = new Label();
+        averageSaleLabel = new Label();
         
         // Total Sales Card
-        VBox salesCard = createStatCard(
-            "Total Sales Revenue",
-            "$" + String.format("%.2f", dataStore.getTotalSales()),
-            "#4CAF50"
-        );
+        VBox salesCard = createStatCard("Total Sales Revenue", totalSalesLabel, "#4CAF50");
         
         // Total Products Sold Card
-        VBox productsCard = createStatCard(
-            "Total Products Sold",
-            String.valueOf(dataStore.getTotalProductsSold()),
-            "#2196F3"
-        );
+        VBox productsCard = createStatCard("Total Products Sold", productsSoldLabel, "#2196F3");
         
         // Average sale per product
-        double avgSale = 0;
-        if (dataStore.getTotalProductsSold() > 0) {
-            avgSale = dataStore.getTotalSales() / dataStore.getTotalProductsSold();
-        }
-        
-        VBox avgCard = createStatCard(
-            "Average Sale per Product",
-            "$" + String.format("%.2f", avgSale),
-            "#FF9800"
+        VBox avgCard = createStatCard("Average Sale per Product", averageSaleLabel, "#FF9800");
+        
+        summaryBox.getChildren().addAll(salesCard, productsCard, avgCard);
+        
+        // Breakdowns from the rollups
+        TabPane reportTabs = new TabPane();
+        reportTabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        VBox.setVgrow(reportTabs, Priority.ALWAYS);
+        
+        hourlyChart = createChart("Hour", "Revenue ($)");
+        dailyChart = createChart("Day", "Revenue ($)");
+        productTable = createTotalsTable("Product");
+        categoryTable = createTotalsTable("Category");
+        
+        reportTabs.getTabs().addAll(
+            new Tab("📊 Today by Hour", hourlyChart),
+            new Tab("📅 Last 7 Days", dailyChart),
+            new Tab("🥐 By Product", productTable),
+            new Tab("🏷 By Category", categoryTable),
+            new Tab("🔎 Reports", new ReportsView(dataStore).getRoot())
         );
         
-        summaryBox.getChildren().addAll(summaryTitle, salesCard, productsCard, avgCard);
+        loadReports();
         
-        centerContent.getChildren().add(summaryBox);
+        centerContent.getChildren().addAll(summaryBox, reportTabs);
         
         // Set layout
         mainContainer.setTop(header);
         mainContainer.setCenter(centerContent);
         
         // Create scene
-        scene = new Scene(mainContainer, 900, 650);
-        try {
-            String cssPath = getClass().getResource("/styles.css").toExternalForm();
-            scene.getStylesheets().add(cssPath);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not load CSS file. Using default styling.");
+        scene = Navigator.createScene(mainContainer);
+    }
+    
+    private BarChart<String, Number> createChart(String xLabel, String yLabel) {
+        CategoryAxis xAxis = new CategoryAxis();
+        xAxis.setLabel(xLabel);
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel(yLabel);
+        BarChart<String, Number> chart = new BarChart<>(xAxis, yAxis);
+        chart.setLegendVisible(false);
+        chart.setAnimated(false);
+        return chart;
+    }
+    
+    private TableView<SalesTotal> createTotalsTable(String labelHeader) {
+        TableView<SalesTotal> table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setPlaceholder(new Label("No sales yet"));
+        
+        TableColumn<SalesTotal, String> labelCol = new TableColumn<>(labelHeader);
+        labelCol.setCellValueFactory(new PropertyValueFactory<>("label"));
+        labelCol.setPrefWidth(250);
+        
+        TableColumn<SalesTotal, Long> quantityCol = new TableColumn<>("Quantity Sold");
+        quantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        quantityCol.setPrefWidth(120);
+        
+        TableColumn<SalesTotal, Double> revenueCol = new TableColumn<>("Revenue ($)");
+        revenueCol.setCellValueFactory(new PropertyValueFactory<>("revenue"));
+        revenueCol.setPrefWidth(120);
+        
+        table.getColumns().addAll(labelCol, quantityCol, revenueCol);
+        return table;
+    }
+    
+    // The screen is kept between visits, so show the current figures each time
+    @Override
+    public void showing() {
+        loadReports();
+    }
+    
+    // Fill the cards, charts and tables; each call reads only the rollup totals
+    private void loadReports() {
+        double totalSales = dataStore.getTotalSales();
+        int productsSold = dataStore.getTotalProductsSold();
+        totalSalesLabel.setText("$" + String.format("%.2f", totalSales));
+        productsSoldLabel.setText(String.valueOf(productsSold));
+        averageSaleLabel.setText("$" + String.format("%.2f", productsSold > 0 ? totalSales / productsSold : 0));
+        
+        LocalDate today = LocalDate.now();
+        setChartData(hourlyChart, dataStore.getSalesByHour(today));
+        setChartData(dailyChart, dataStore.getSalesByDay(today.minusDays(6), today));
+        productTable.setItems(FXCollections.observableArrayList(dataStore.getSalesByProduct()));
+        categoryTable.setItems(FXCollections.observableArrayList(dataStore.getSalesByCategory()));
+    }
+    
+    private void setChartData(BarChart<String, Number> chart, List<SalesTotal> rows) {
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        for (SalesTotal row : rows) {
+            series.getData().add(new XYChart.Data<>(row.getLabel(), row.getRevenue()));
         }
+        chart.getData().setAll(series);
+    }
+    
+    // Recalculate the rollups from the ledger in the background, then reload the reports
+    private void rebuildReports(Button rebuildButton) {
+        rebuildButton.setDisable(true);
+        Task<Boolean> task = new Task<>() {
+            @Override
+            protected Boolean call() throws Exception {
+                return dataStore.awaitDurable(dataStore.rebuildSalesRollups(), 60000);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            loadReports();
+            rebuildButton.setDisable(false);
+        });
+        task.setOnFailed(e -> {
+            System.err.println("Error rebuilding sales reports: " + task.getException().getMessage());
+            rebuildButton.setDisable(false);
+        });
+        Thread thread = new Thread(task, "bakery-rollup-rebuild");
+        thread.setDaemon(true);
+        thread.start();
     }
     
     /**
      * Create a styled statistics card
      */
-    private VBox createStatCard(String label, String value, String color) {
+    private VBox createStatCard(String label, Label valueLabel, String color) {
         VBox card = new VBox(10);
         card.setAlignment(Pos.CENTER);
-        card.setPadding(new Insets(20));
+        card.setPadding(new Insets(15));
         card.setStyle(
             "-fx-background-color: white;" +
             "-fx-background-radius: 10;" +
@@ -129,14 +225,13 @@ public class SalesController {
             "-fx-border-radius: 10;" +
             "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.1), 5, 0, 0, 2);"
         );
-        card.setPrefWidth(500);
+        card.setPrefWidth(260);
         
         Label titleLabel = new Label(label);
         titleLabel.setFont(Font.font("System", FontWeight.MEDIUM, 16));
         titleLabel.setStyle("-fx-text-fill: #6b5b4a;");
         
-        Label valueLabel = new Label(value);
-        valueLabel.setFont(Font.font("System", FontWeight.BOLD, 32));
+        valueLabel.setFont(Font.font("System", FontWeight.BOLD, 26));
         valueLabel.setStyle("-fx-text-fill: " + color + ";");
         
         card.getChildren().addAll(titleLabel, valueLabel);
@@ -144,6 +239,7 @@ public class SalesController {
         return card;
     }
     
+    @Override
     public Scene getScene() {
         return scene;
     }
@@ -0,0 +1,66 @@
+package com.bakery.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ScreenEvents are the Java Flight Recorder events of the screens
+ * They show up under Bakery / Screens in JDK Mission Control; most run on the JavaFX
+ * Application Thread, so a long one there is a time the window did not respond
+ */
+final class ScreenEvents {
+    private static final String CATEGORY = "Bakery";
+    private static final String SCREENS = "Screens";
+    
+    private ScreenEvents() {
+    }
+    
+    @Name("com.bakery.SceneBuild")
+    @Label("Scene Build")
+    @Description("Screen built with its controls and scene")
+    @Category({CATEGORY, SCREENS})
+    @StackTrace(false)
+    static final class SceneBuild extends Event {
+        @Label("Screen")
+        String screen;
+    }
+    
+    @Name("com.bakery.TableReload")
+    @Label("Product Table Reload")
+    @Description("Product table queried in the store and its rows replaced, from request to display")
+    @Category({CATEGORY, SCREENS})
+    @StackTrace(false)
+    static final class TableReload extends Event {
+        @Label("Query")
+        String query;
+        
+        @Label("Sort")
+        String sort;
+        
+        @Label("Rows")
+        int rows;
+    }
+    
+    @Name("com.bakery.OrderConfirm")
+    @Label("Order Confirm")
+    @Description("Confirmed order placed with the store and the cart cleared")
+    @Category({CATEGORY, SCREENS})
+    @StackTrace(false)
+    static final class OrderConfirm extends Event {
+        @Label("Order ID")
+        long orderId;
+        
+        @Label("Items")
+        int items;
+        
+        @Label("Total")
+        double total;
+        
+        @Label("Placed")
+        boolean placed;
+    }
+}
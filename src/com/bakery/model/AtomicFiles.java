@@ -0,0 +1,61 @@
+package com.bakery.model;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * AtomicFiles replaces data files so a crash never leaves a half-written one behind
+ * The new contents go to a temporary file that is synced and then renamed over the target
+ */
+final class AtomicFiles {
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    /**
+     * Writes the new contents of a file
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+    
+    private AtomicFiles() {
+    }
+    
+    // Replace target with the written content; the old file stays intact until the rename
+    static void write(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+    
+    // Make the rename itself durable; not possible on every platform (e.g. Windows)
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directory sync is best effort
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.bakery.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compactor folds a sealed mutation log into new snapshot files
+ * Runs on its own thread and works only from the files, so sales continue meanwhile
+ *
+ * Reads products.bin and sales.dat, replays the sealed log on top, writes both
+ * files back atomically and finally deletes the sealed log. A crash at any point
+ * leaves either the old snapshot plus the sealed log, or the new snapshot plus a
+ * sealed log whose absolute records are already part of it; both recover correctly.
+ * A snapshot with damaged records fails the compaction instead of being folded, as the
+ * products in those records would be lost from the files for good.
+ */
+class Compactor {
+    /**
+     * products.bin has records that cannot be read; the sealed log is kept
+     */
+    static final class DamagedSnapshotException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        DamagedSnapshotException(int damagedRecords) {
+            super(damagedRecords + " damaged product records in the snapshot");
+        }
+    }
+    
+    private final Path productsFile;
+    private final Path salesFile;
+    
+    Compactor(Path productsFile, Path salesFile) {
+        this.productsFile = productsFile;
+        this.salesFile = salesFile;
+    }
+    
+    // Fold the sealed log into the snapshot; returns the number of records folded
+    int compact(Path sealedLog) throws IOException {
+        ProductFile.Contents contents = Files.exists(productsFile) ? ProductFile.read(productsFile) : null;
+        if (contents != null && contents.damagedRecords > 0) {
+            throw new DamagedSnapshotException(contents.damagedRecords);
+        }
+        ProductCatalog products = contents != null ? contents.products : new ProductCatalog();
+        int[] nextProductId = {contents != null ? contents.nextProductId : 1};
+        double[] sales = {0.0};
+        int[] productsSold = {0};
+        if (Files.exists(salesFile)) {
+            SalesFile totals = SalesFile.read(salesFile);
+            sales[0] = totals.totalSales;
+            productsSold[0] = totals.totalProductsSold;
+        }
+        
+        int folded = MutationLog.replay(sealedLog, new MutationLog.Replayer() {
+            @Override
+            public void putProduct(Product product) {
+                products.put(product);
+                nextProductId[0] = Math.max(nextProductId[0], product.getProductId() + 1);
+            }
+            
+            @Override
+            public void deleteProduct(int productId) {
+                products.remove(productId);
+            }
+            
+            @Override
+            public void setStock(int productId, int quantity) {
+                int position = products.position(productId);
+                if (position >= 0) {
+                    products.setQuantity(position, quantity);
+                }
+            }
+            
+            @Override
+            public void setSales(double totalSales, int totalProductsSold) {
+                sales[0] = totalSales;
+                productsSold[0] = totalProductsSold;
+            }
+        });
+        
+        ProductFile.write(productsFile, products, nextProductId[0]);
+        SalesFile.write(salesFile, sales[0], productsSold[0]);
+        Files.delete(sealedLog);
+        return folded;
+    }
+}
@@ -1,185 +1,259 @@
 package com.bakery.model;
 
-import java.io.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * DataStore class handles file-based storage for products and sales data
- * Saves and loads data to persist between application restarts
+ * DataStore is the inventory and sales store shared by all screens
+ * Products, stock levels and sales are read and changed only through it
+ *
+ * By default the store is kept in files in the data directory (LocalDataStore).
+ * With -Dbakery.server=host:port the application is a till of an inventory server
+ * instead (RemoteDataStore), so several tills share one set of stock counts;
+ * see com.bakery.app.InventoryServer.
  */
-public class DataStore {
-    private static final String PRODUCTS_FILE = "products.dat";
-    private static final String SALES_FILE = "sales.dat";
+public abstract class DataStore {
+    // Singleton instance
+    private static volatile DataStore instance;
+    // Background creation started by load; guarded by its own lock, as getInstance holds
+    // the class lock for as long as the files take to load
+    private static final Object LOAD_LOCK = new Object();
+    private static CompletableFuture<DataStore> loading;
+    private static final Object SHUTDOWN_LOCK = new Object();
     
-    private List<Product> products;
-    private double totalSales;
-    private int totalProductsSold;
+    // Checkout calls as this process sees them: in the store itself, or a till's round trip to the server
+    static final LatencyHistogram PLACE_ORDER_LATENCY = Metrics.latency("store.placeOrder");
+    static final LatencyHistogram UPDATE_STOCK_LATENCY = Metrics.latency("store.updateStock");
+    static final LongAdder ORDERS_PLACED = Metrics.counter("store.ordersPlaced");
+    static final LongAdder ORDERS_REJECTED = Metrics.counter("store.ordersRejected");
     
-    // Singleton instance
-    private static DataStore instance;
-    
-    // Private constructor for singleton
-    private DataStore() {
-        products = new ArrayList<>();
-        totalSales = 0.0;
-        totalProductsSold = 0;
-        loadData();
-        initializeDefaultProducts();
+    private final List<ProductListener> productListeners = new CopyOnWriteArrayList<>();
+    
+    // Only this package provides implementations
+    DataStore() {
     }
     
     // Get singleton instance
     public static DataStore getInstance() {
-        if (instance == null) {
-            instance = new DataStore();
+        DataStore store = instance;
+        if (store == null) {
+            synchronized (DataStore.class) {
+                store = instance;
+                if (store == null) {
+                    String server = System.getProperty("bakery.server");
+                    store = server != null && !server.isBlank()
+                            ? new RemoteDataStore(server.trim())
+                            : new LocalDataStore();
+                    instance = store;
+                }
+            }
         }
-        return instance;
+        return store;
     }
     
-    // Initialize with some default products if empty
-    private void initializeDefaultProducts() {
-        if (products.isEmpty()) {
-            products.add(new Product(1, "Chocolate Cake", "Cake", 24.99, 20));
-            products.add(new Product(2, "Black Forest Cake", "Cake", 29.99, 15));
-            products.add(new Product(3, "Vanilla Cupcake", "Cake", 2.99, 50));
-            products.add(new Product(4, "Croissant", "Pastry", 3.99, 30));
-            products.add(new Product(5, "Danish Pastry", "Pastry", 4.99, 25));
-            products.add(new Product(6, "Wheat Bread", "Bread", 5.99, 20));
-            products.add(new Product(7, "Baguette", "Bread", 4.50, 18));
-            products.add(new Product(8, "Cinnamon Roll", "Others", 3.50, 35));
-            saveProducts();
+    /**
+     * Create the store on a background thread, so the window can show while the files load
+     * The future completes on that thread; after a failure the next call tries again
+     */
+    public static CompletableFuture<DataStore> load() {
+        DataStore current = instance;
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
         }
-    }
-    
-    // Get all products
-    public List<Product> getProducts() {
-        return new ArrayList<>(products);
-    }
-    
-    // Add a new product
-    public void addProduct(Product product) {
-        products.add(product);
-        saveProducts();
-    }
-    
-    // Update existing product
-    public void updateProduct(Product updatedProduct) {
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getProductId() == updatedProduct.getProductId()) {
-                products.set(i, updatedProduct);
-                saveProducts();
-                return;
+        synchronized (LOAD_LOCK) {
+            if (loading == null || loading.isCompletedExceptionally()) {
+                CompletableFuture<DataStore> future = new CompletableFuture<>();
+                Thread thread = new Thread(() -> {
+                    try {
+                        DataStore store = getInstance();
+                        StartupTimer.sinceLaunch("store ready");
+                        future.complete(store);
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }, "bakery-store-load");
+                thread.setDaemon(true);
+                thread.start();
+                loading = future;
             }
+            return loading;
         }
     }
     
-    // Delete product
-    public void deleteProduct(int productId) {
-        products.removeIf(p -> p.getProductId() == productId);
-        saveProducts();
-    }
-    
-    // Find product by ID
-    public Product findProductById(int productId) {
-        for (Product p : products) {
-            if (p.getProductId() == productId) {
-                return p;
+    // Flush pending writes or close the server connection, if the store was ever started
+    // Not under the class lock, which getInstance holds while the files load: closing the
+    // window during a long load must not wait for it, and a store still loading has no
+    // changes to flush
+    public static void shutdown() {
+        synchronized (SHUTDOWN_LOCK) {
+            DataStore store = instance;
+            if (store != null) {
+                store.close();
             }
         }
-        return null;
     }
     
-    // Update stock after order
-    public boolean updateStock(int productId, int quantity) {
-        Product product = findProductById(productId);
-        if (product != null && product.getQuantity() >= quantity) {
-            product.setQuantity(product.getQuantity() - quantity);
-            saveProducts();
-            return true;
-        }
-        return false;
-    }
+    // Release the store's files or connection
+    abstract void close();
     
-    // Add to sales
-    public void addSale(double amount, int quantity) {
-        totalSales += amount;
-        totalProductsSold += quantity;
-        saveSalesData();
+    // Be told about every product change from now on (see ProductListener)
+    public void addProductListener(ProductListener listener) {
+        productListeners.add(listener);
     }
     
-    // Get total sales
-    public double getTotalSales() {
-        return totalSales;
+    public void removeProductListener(ProductListener listener) {
+        productListeners.remove(listener);
     }
     
-    // Get total products sold
-    public int getTotalProductsSold() {
-        return totalProductsSold;
+    boolean hasProductListeners() {
+        return !productListeners.isEmpty();
     }
     
-    // Get next product ID
-    public int getNextProductId() {
-        int maxId = 0;
-        for (Product p : products) {
-            if (p.getProductId() > maxId) {
-                maxId = p.getProductId();
-            }
+    // Finish the flight recorder events of the checkout calls
+    static void commitStockUpdate(StoreEvents.StockUpdate event, int productId, int quantity, boolean updated) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.productId = productId;
+            event.quantity = quantity;
+            event.updated = updated;
+            event.commit();
         }
-        return maxId + 1;
     }
     
-    // Save products to file
-    @SuppressWarnings("unchecked")
-    private void saveProducts() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(PRODUCTS_FILE))) {
-            oos.writeObject(products);
-        } catch (IOException e) {
-            System.err.println("Error saving products: " + e.getMessage());
+    static void commitSale(StoreEvents.Sale event, Order order, boolean placed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.orderId = order.getOrderId();
+            event.lines = order.getLines().size();
+            event.items = order.getItemCount();
+            event.total = order.getTotal();
+            event.placed = placed;
+            event.commit();
         }
     }
     
-    // Load products from file
-    @SuppressWarnings("unchecked")
-    private void loadProducts() {
-        File file = new File(PRODUCTS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                products = (List<Product>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading products: " + e.getMessage());
-                products = new ArrayList<>();
+    // Deliver changes to every listener; a failing listener does not stop the others
+    void fireProductsChanged(List<ProductChange> changes) {
+        for (ProductListener listener : productListeners) {
+            try {
+                listener.productsChanged(changes);
+            } catch (RuntimeException e) {
+                System.err.println("Error in product listener: " + e.getMessage());
             }
         }
     }
     
-    // Save sales data to file
-    private void saveSalesData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(SALES_FILE))) {
-            oos.writeDouble(totalSales);
-            oos.writeInt(totalProductsSold);
-        } catch (IOException e) {
-            System.err.println("Error saving sales data: " + e.getMessage());
-        }
-    }
+    // Get all products
+    public abstract List<Product> getProducts();
     
-    // Load sales data from file
-    private void loadSalesData() {
-        File file = new File(SALES_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                totalSales = ois.readDouble();
-                totalProductsSold = ois.readInt();
-            } catch (IOException e) {
-                System.err.println("Error loading sales data: " + e.getMessage());
-                totalSales = 0.0;
-                totalProductsSold = 0;
-            }
-        }
-    }
+    // Add a new product
+    public abstract void addProduct(Product product);
     
-    // Load all data
-    private void loadData() {
-        loadProducts();
-        loadSalesData();
+    // Update existing product
+    public abstract void updateProduct(Product updatedProduct);
+    
+    // Delete product
+    public abstract void deleteProduct(int productId);
+    
+    // Find product by ID, or null
+    public abstract Product findProductById(int productId);
+    
+    // IDs of products whose name, category or ID start with every word of the query
+    // Safe to call from a background thread
+    public abstract BitSet searchProductIds(String query);
+    
+    /**
+     * IDs of the products matching a search query (every product when it is blank),
+     * ordered by the given column; a table pages through them with getProductsById
+     * Safe to call from a background thread
+     */
+    public abstract int[] queryProductIds(String query, ProductSort sort, boolean ascending);
+    
+    // The products with the given IDs, in the same order; null for IDs no longer in the catalog
+    public abstract List<Product> getProductsById(int[] productIds);
+    
+    /**
+     * The products whose stock is below their reorder level, furthest below first
+     * Answered from an index kept up to date by every stock change, without scanning the catalog
+     * Safe to call from a background thread
+     */
+    public abstract List<Product> getLowStockProducts();
+    
+    // Take quantity out of a product's stock; returns false if there is not enough
+    public abstract boolean updateStock(int productId, int quantity);
+    
+    /**
+     * Place a whole order: take every line's quantity out of stock and add
+     * the order total to sales, or change nothing if any line cannot be filled
+     * Returns false if a product is missing or short of stock
+     */
+    public abstract boolean placeOrder(Order order);
+    
+    // Add to sales
+    public abstract void addSale(double amount, int quantity);
+    
+    // Every sale made from (inclusive) to (exclusive), oldest first
+    public abstract List<SaleEntry> getSales(LocalDateTime from, LocalDateTime to);
+    
+    // Revenue and quantity per product, best selling first
+    public abstract List<SalesTotal> getSalesByProduct();
+    
+    // Revenue and quantity per category, best selling first
+    public abstract List<SalesTotal> getSalesByCategory();
+    
+    // Revenue and quantity for each hour of a day, 24 rows labelled "00:00" to "23:00"
+    public abstract List<SalesTotal> getSalesByHour(LocalDate day);
+    
+    // Revenue and quantity for each day from..to (inclusive), one row per day
+    public abstract List<SalesTotal> getSalesByDay(LocalDate from, LocalDate to);
+    
+    /**
+     * Ad-hoc report over the ledger days from..to (inclusive)
+     * Call from a background thread, as long ranges take a while
+     * Throws CancellationException if progress reports the report as cancelled
+     */
+    public abstract SalesReport runSalesReport(LocalDate from, LocalDate to, int topN, SalesReport.Progress progress)
+            throws IOException;
+    
+    // Recompute the sales rollups from the whole ledger
+    // Returns a mutation id to pass to awaitDurable
+    public abstract long rebuildSalesRollups();
+    
+    /**
+     * Add and update products from a CSV file as one batch (see ProductCsv for the format)
+     * Every row is checked first. If any is invalid nothing changes, unless skipInvalidRows
+     * is set, in which case the valid rows are applied and the others reported
+     * The changes are on disk when this returns
+     */
+    public abstract ProductImport importProducts(Path file, boolean skipInvalidRows) throws IOException;
+    
+    // Write the whole catalog to a CSV file that importProducts can read back
+    // The products are streamed a page at a time rather than copied all at once
+    // Returns the number of products written
+    public int exportProducts(Path file) throws IOException {
+        return ProductCsv.write(file, queryProductIds("", ProductSort.ID, true), this::getProductsById);
     }
+    
+    // Get total sales
+    public abstract double getTotalSales();
+    
+    // Get total products sold
+    public abstract int getTotalProductsSold();
+    
+    // Reserve the next product ID; each call returns a new one
+    public abstract int getNextProductId();
+    
+    // Id of the most recent change, for use with awaitDurable
+    public abstract long getLastMutationId();
+    
+    // Wait until the given change has been written to disk; returns false on timeout
+    // Throws IOException if writing it failed, or the server could not be asked
+    public abstract boolean awaitDurable(long mutationId, long timeoutMillis) throws InterruptedException, IOException;
 }
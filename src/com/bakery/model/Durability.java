@@ -0,0 +1,26 @@
+package com.bakery.model;
+
+/**
+ * Durability controls when mutation log writes are forced to disk
+ * Set with -Dbakery.durability=sync|group|buffered (default: group)
+ */
+public enum Durability {
+    // fsync after every record
+    SYNC,
+    // fsync at most once every group commit interval
+    GROUP,
+    // leave flushing to the operating system
+    BUFFERED;
+    
+    // Parse a durability name, falling back to GROUP for unknown values
+    public static Durability parse(String value) {
+        if (value != null) {
+            for (Durability d : values()) {
+                if (d.name().equalsIgnoreCase(value.trim())) {
+                    return d;
+                }
+            }
+        }
+        return GROUP;
+    }
+}
@@ -0,0 +1,155 @@
+package com.bakery.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * IntIndex is an open-addressing hash map from int keys to int values
+ * Used for primary-key lookups without boxing every product id into an Integer
+ *
+ * Linear probing with backward-shift deletion, so removals leave no tombstones.
+ * Integer.MIN_VALUE is reserved as the empty-slot marker and cannot be used as a key.
+ */
+public class IntIndex {
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+    
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    public IntIndex() {
+        this(16);
+    }
+    
+    public IntIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+        allocate(capacity);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+    
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+    
+    // Value stored for key, or missing if there is none
+    public int get(int key, int missing) {
+        if (key == EMPTY) {
+            return missing;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return missing;
+            }
+        }
+    }
+    
+    public boolean containsKey(int key) {
+        if (key == EMPTY) {
+            return false;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return true;
+            }
+            if (k == EMPTY) {
+                return false;
+            }
+        }
+    }
+    
+    // Insert or replace the value for key
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > resizeAt) {
+                    rehash(keys.length * 2);
+                }
+                return;
+            }
+        }
+    }
+    
+    // Remove key; returns false if it was not present
+    public boolean remove(int key) {
+        if (key == EMPTY) {
+            return false;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        
+        // Shift later entries of the same probe run back into the gap
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+    
+    // Visit every key, in no particular order
+    public void forEachKey(IntConsumer action) {
+        for (int key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+    
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
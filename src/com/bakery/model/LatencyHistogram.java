@@ -0,0 +1,149 @@
+package com.bakery.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts how long an operation takes, for percentiles such as p99
+ * Recording is one atomic increment, so it can sit on the checkout path
+ *
+ * Like HdrHistogram, buckets are exact below 64 ns and then split every power of two
+ * into 32, so any recorded value is reported within about 3%. Durations are recorded
+ * in nanoseconds and reported in microseconds.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT = 2 * SUB_BUCKETS;
+    // Enough buckets for any non-negative long
+    private static final int BUCKETS = EXACT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+    
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    
+    // Created through Metrics.latency
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        totalNanos.add(value);
+    }
+    
+    // Record the time since a System.nanoTime() reading
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    // The counts so far; values recorded meanwhile may or may not be included
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, totalNanos.sum());
+    }
+    
+    private static int bucket(long value) {
+        if (value < EXACT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return EXACT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    // Largest value that falls in a bucket
+    private static long highestValue(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int shift = (bucket - EXACT) / SUB_BUCKETS + 1;
+        long top = (bucket - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+    
+    /**
+     * Counts of a histogram at one moment, or between two moments (see since)
+     * The getters are the attributes shown over JMX
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long totalNanos;
+        private final long count;
+        
+        private Snapshot(long[] counts, long totalNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            long sum = 0;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.count = sum;
+        }
+        
+        // What was recorded after an earlier snapshot of the same histogram
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(delta, totalNanos - earlier.totalNanos);
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public double getMeanMicros() {
+            return count > 0 ? toMicros(totalNanos / (double) count) : 0;
+        }
+        
+        public double getP50Micros() {
+            return percentileMicros(50);
+        }
+        
+        public double getP90Micros() {
+            return percentileMicros(90);
+        }
+        
+        public double getP99Micros() {
+            return percentileMicros(99);
+        }
+        
+        public double getP999Micros() {
+            return percentileMicros(99.9);
+        }
+        
+        public double getMaxMicros() {
+            return percentileMicros(100);
+        }
+        
+        // The value at or below which the given percentage of the recorded values fall
+        public double percentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return toMicros(highestValue(i));
+                }
+            }
+            return toMicros(highestValue(BUCKETS - 1));
+        }
+        
+        private static double toMicros(double nanos) {
+            return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,1340 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * LocalDataStore handles file-based storage for products and sales data
+ * Saves and loads data to persist between application restarts
+ *
+ * Every change is appended to a mutation log that is replayed on startup.
+ * The log is folded into the snapshot files by background compaction, at least
+ * every bakery.compactionSeconds (default 60) while anything is logged, which
+ * bounds the work left for recovery. All disk writes happen on a background
+ * PersistenceWriter thread, and snapshot files are replaced atomically.
+ *
+ * Thread-safe: lookups and stock/sales updates share a read lock, so tills
+ * selling different products run in parallel; each product's stock is
+ * guarded by one of a fixed set of striped locks. Adding, updating and
+ * deleting products use the write lock.
+ */
+class LocalDataStore extends DataStore {
+    private static final String PRODUCTS_FILE = "products.bin";
+    private static final String LEGACY_PRODUCTS_FILE = "products.dat";
+    private static final String SALES_FILE = "sales.dat";
+    private static final String LOG_FILE = "mutations.log";
+    private static final String SALES_DIR = "sales";
+    private static final String ROLLUPS_FILE = "sales-rollups.bin";
+    
+    // Number of striped stock locks; a product's lock is picked by its id
+    private static final int STOCK_LOCK_STRIPES = 64;
+    private static final long IMPORT_DURABLE_TIMEOUT_MILLIS = 60000;
+    
+    private static final LatencyHistogram LOAD_LATENCY = Metrics.latency("persistence.load");
+    private static final LatencyHistogram REPLAY_LATENCY = Metrics.latency("persistence.replayLog");
+    
+    private final Path dataDir;
+    private final Durability durability;
+    private final long groupCommitMillis;
+    private final long compactionMillis;
+    private PersistenceWriter writer;
+    private boolean logAvailable;
+    // Changes not yet in a snapshot; only used when the log cannot be opened
+    private final AtomicInteger recordsSinceCheckpoint = new AtomicInteger();
+    // True when there were no data files to load, so the demo catalog may be created
+    private boolean freshStart;
+    // Why changes are refused, or null: set when the mutation log cannot be replayed, as
+    // records appended after the one that cannot be read would never be replayed either
+    private volatile String readOnlyReason;
+    
+    private final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stockLocks = new ReentrantLock[STOCK_LOCK_STRIPES];
+    
+    // Owned by the writer thread: the current snapshot opened for in-place stock updates,
+    // and the products with logged records that a patched stock level must not hide
+    private ProductFile mappedSnapshot;
+    private final Set<Integer> loggedSinceSnapshot = new HashSet<>();
+    // Owned by the writer thread: sales totals as of the last logged sale
+    private double loggedSales;
+    private long loggedProductsSold;
+    
+    // Primitive arrays of every product, indexed by id
+    private ProductCatalog catalog;
+    // Word prefix index used by searchProductIds
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    // Products with a reorder level, by how close they are to it; used by getLowStockProducts
+    private final LowStockIndex lowStock = new LowStockIndex();
+    // Next id to hand out; persisted so ids are never reused
+    private final AtomicInteger nextProductId = new AtomicInteger(1);
+    private final DoubleAdder totalSales = new DoubleAdder();
+    private final LongAdder totalProductsSold = new LongAdder();
+    // Per-sale history; appended to by the writer thread, null if it could not be opened
+    private SalesLedger ledger;
+    // Running report totals, kept in step with the ledger by the writer thread
+    private final SalesRollups rollups = new SalesRollups();
+    private final AtomicLong lastOrderId = new AtomicLong();
+    
+    // Created through DataStore.getInstance
+    LocalDataStore() {
+        dataDir = Paths.get(System.getProperty("bakery.data.dir", "."));
+        durability = Durability.parse(System.getProperty("bakery.durability"));
+        groupCommitMillis = Long.getLong("bakery.groupCommitMillis", 50L);
+        compactionMillis = TimeUnit.SECONDS.toMillis(Long.getLong("bakery.compactionSeconds", 60L));
+        catalog = new ProductCatalog();
+        for (int i = 0; i < stockLocks.length; i++) {
+            stockLocks[i] = new ReentrantLock();
+        }
+        try {
+            Files.createDirectories(dataDir);
+        } catch (IOException e) {
+            System.err.println("Error creating data directory: " + e.getMessage());
+        }
+        StartupTimer timer = new StartupTimer();
+        StoreEvents.Load loadEvent = new StoreEvents.Load();
+        loadEvent.begin();
+        long start = System.nanoTime();
+        loadData();
+        LOAD_LATENCY.recordSince(start);
+        timer.phase("read " + catalog.size() + " products and the sales totals");
+        start = System.nanoTime();
+        replayLog();
+        REPLAY_LATENCY.recordSince(start);
+        loadEvent.end();
+        if (loadEvent.shouldCommit()) {
+            loadEvent.catalogSize = catalog.size();
+            Path log = dataDir.resolve(LOG_FILE);
+            loadEvent.bytesRead = fileSize(dataDir.resolve(PRODUCTS_FILE)) + fileSize(dataDir.resolve(SALES_FILE))
+                    + fileSize(log) + fileSize(MutationLog.sealedPath(log));
+            loadEvent.commit();
+        }
+        initializeDefaultProducts();
+        timer.phase("replayed the mutation log");
+        openLedger();
+        timer.phase("opened the sales ledger and rollups");
+        startWriter();
+        timer.phase("started the writer");
+        Runtime.getRuntime().addShutdownHook(new Thread(DataStore::shutdown, "bakery-shutdown"));
+    }
+    
+    // Flush pending writes and stop the writer thread
+    @Override
+    void close() {
+        writer.shutdown();
+    }
+    
+    // Initialize with some default products on the very first start
+    // Never when data files exist but could not be read, so a damaged catalog is not overwritten
+    private void initializeDefaultProducts() {
+        if (freshStart && catalog.size() == 0) {
+            catalog.put(new Product(1, "Chocolate Cake", "Cake", 24.99, 20, 5));
+            catalog.put(new Product(2, "Black Forest Cake", "Cake", 29.99, 15, 5));
+            catalog.put(new Product(3, "Vanilla Cupcake", "Cake", 2.99, 50, 12));
+            catalog.put(new Product(4, "Croissant", "Pastry", 3.99, 30, 10));
+            catalog.put(new Product(5, "Danish Pastry", "Pastry", 4.99, 25, 8));
+            catalog.put(new Product(6, "Wheat Bread", "Bread", 5.99, 20, 6));
+            catalog.put(new Product(7, "Baguette", "Bread", 4.50, 18, 6));
+            catalog.put(new Product(8, "Cinnamon Roll", "Others", 3.50, 35, 10));
+            rebuildIndex();
+            saveProducts(catalog, nextProductId.get());
+        }
+    }
+    
+    // Get all products, as copies made from the catalog
+    @Override
+    public List<Product> getProducts() {
+        catalogLock.readLock().lock();
+        try {
+            return new ArrayList<>(catalog.asList());
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+    
+    // Add a new product
+    @Override
+    public void addProduct(Product product) {
+        checkWritable();
+        Product copy = copyOf(product);
+        catalogLock.writeLock().lock();
+        try {
+            putProduct(product);
+            submit(l -> writePut(l, copy));
+            if (hasProductListeners()) {
+                fireProductsChanged(List.of(ProductChange.added(copyOf(product))));
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        checkpointIfDue();
+    }
+    
+    // Update existing product
+    @Override
+    public void updateProduct(Product updatedProduct) {
+        checkWritable();
+        Product copy = copyOf(updatedProduct);
+        catalogLock.writeLock().lock();
+        try {
+            if (catalog.contains(updatedProduct.getProductId())) {
+                putProduct(updatedProduct);
+                submit(l -> writePut(l, copy));
+                if (hasProductListeners()) {
+                    fireProductsChanged(List.of(ProductChange.updated(copyOf(updatedProduct))));
+                }
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        checkpointIfDue();
+    }
+    
+    // Delete product
+    @Override
+    public void deleteProduct(int productId) {
+        checkWritable();
+        catalogLock.writeLock().lock();
+        try {
+            if (removeProduct(productId)) {
+                submit(l -> writeDelete(l, productId));
+                if (hasProductListeners()) {
+                    fireProductsChanged(List.of(ProductChange.removed(productId)));
+                }
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        checkpointIfDue();
+    }
+    
+    // Find product by ID
+    @Override
+    public Product findProductById(int productId) {
+        catalogLock.readLock().lock();
+        try {
+            return lookup(productId);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+    
+    // A copy of a product, or null if there is none (caller holds the catalog lock)
+    private Product lookup(int productId) {
+        return catalog.find(productId);
+    }
+    
+    private int stripe(int productId) {
+        return (productId * 0x9E3779B9 >>> 16) & (STOCK_LOCK_STRIPES - 1);
+    }
+    
+    // IDs of products whose name, category or ID start with every word of the query
+    // Safe to call from a background thread
+    @Override
+    public BitSet searchProductIds(String query) {
+        return searchIndex.search(query);
+    }
+    
+    // The sort keys are copied under the catalog lock and sorted after it is released,
+    // so a long sort does not hold up changes. Every key is turned into an int rank and
+    // packed with the id into one long, so the sort is a primitive one with no comparator.
+    @Override
+    public int[] queryProductIds(String query, ProductSort sort, boolean ascending) {
+        BitSet matches = query == null || query.isBlank() ? null : searchIndex.search(query);
+        int count = 0;
+        int[] ids;
+        int[] quantities = null;
+        double[] prices = null;
+        String[] names = null;
+        int[] categoryCodes = null;
+        String[] categoryNames = null;
+        catalogLock.readLock().lock();
+        try {
+            ids = new int[catalog.size()];
+            if (sort == ProductSort.QUANTITY) {
+                quantities = new int[ids.length];
+            } else if (sort == ProductSort.PRICE) {
+                prices = new double[ids.length];
+            } else if (sort == ProductSort.NAME) {
+                names = new String[ids.length];
+            } else if (sort == ProductSort.CATEGORY) {
+                categoryCodes = new int[ids.length];
+                categoryNames = catalog.categoryNames().toArray(new String[0]);
+            }
+            for (int position = 0; position < ids.length; position++) {
+                int id = catalog.id(position);
+                if (matches != null && !matches.get(id)) {
+                    continue;
+                }
+                ids[count] = id;
+                if (quantities != null) {
+                    quantities[count] = catalog.quantity(position);
+                } else if (prices != null) {
+                    prices[count] = catalog.price(position);
+                } else if (names != null) {
+                    names[count] = catalog.name(position);
+                } else if (categoryCodes != null) {
+                    categoryCodes[count] = catalog.categoryCode(position);
+                }
+                count++;
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        
+        int[] sorted = new int[count];
+        if (sort == ProductSort.ID) {
+            System.arraycopy(ids, 0, sorted, 0, count);
+            Arrays.sort(sorted);
+        } else {
+            int[] ranks;
+            if (quantities != null) {
+                ranks = quantities;
+            } else if (prices != null) {
+                ranks = ranks(prices, count);
+            } else if (names != null) {
+                ranks = ranks(names, count);
+            } else {
+                // Rank the few category names once, then look each product's up by its code
+                int[] categoryRanks = ranks(categoryNames, categoryNames.length);
+                ranks = new int[count];
+                for (int i = 0; i < count; i++) {
+                    ranks[i] = categoryRanks[categoryCodes[i]];
+                }
+            }
+            // Rank and id packed into one long, so equal keys are ordered by id
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (long) ranks[i] << 32 | ids[i];
+            }
+            Arrays.parallelSort(keys);
+            for (int i = 0; i < count; i++) {
+                sorted[i] = (int) keys[i];
+            }
+        }
+        if (!ascending) {
+            for (int i = 0, j = count - 1; i < j; i++, j--) {
+                int id = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = id;
+            }
+        }
+        return sorted;
+    }
+    
+    // Position of each price among the distinct prices
+    private static int[] ranks(double[] keys, int count) {
+        double[] distinct = Arrays.copyOf(keys, count);
+        Arrays.parallelSort(distinct);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || Double.compare(distinct[unique - 1], distinct[i]) != 0) {
+                distinct[unique++] = distinct[i];
+            }
+        }
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = Arrays.binarySearch(distinct, 0, unique, keys[i]);
+        }
+        return ranks;
+    }
+    
+    // Position of each text among the distinct texts, ignoring case
+    private static int[] ranks(String[] keys, int count) {
+        String[] distinct = Arrays.copyOf(keys, count);
+        Arrays.parallelSort(distinct, String.CASE_INSENSITIVE_ORDER);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || String.CASE_INSENSITIVE_ORDER.compare(distinct[unique - 1], distinct[i]) != 0) {
+                distinct[unique++] = distinct[i];
+            }
+        }
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = Arrays.binarySearch(distinct, 0, unique, keys[i], String.CASE_INSENSITIVE_ORDER);
+        }
+        return ranks;
+    }
+    
+    // Read from the low-stock index, so the cost grows with the products listed, not the catalog
+    @Override
+    public List<Product> getLowStockProducts() {
+        catalogLock.readLock().lock();
+        try {
+            int[] ids = lowStock.lowStockIds();
+            List<Product> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Product product = lookup(id);
+                // Restocked since the index was read
+                if (product != null && product.isLowStock()) {
+                    result.add(product);
+                }
+            }
+            return result;
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Product> getProductsById(int[] productIds) {
+        List<Product> result = new ArrayList<>(productIds.length);
+        catalogLock.readLock().lock();
+        try {
+            for (int id : productIds) {
+                result.add(lookup(id));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        return result;
+    }
+    
+    // Update stock after order
+    @Override
+    public boolean updateStock(int productId, int quantity) {
+        StoreEvents.StockUpdate event = new StoreEvents.StockUpdate();
+        event.begin();
+        long start = System.nanoTime();
+        boolean updated = false;
+        catalogLock.readLock().lock();
+        try {
+            int position = catalog.position(productId);
+            if (position >= 0 && readOnlyReason == null) {
+                // Check-then-act under the product's stripe; the record is queued
+                // inside the lock so the log sees this product's changes in order
+                ReentrantLock lock = stockLocks[stripe(productId)];
+                lock.lock();
+                try {
+                    if (catalog.quantity(position) >= quantity) {
+                        int remaining = catalog.quantity(position) - quantity;
+                        setStock(position, remaining);
+                        submit(l -> writeStock(l, productId, remaining));
+                        if (hasProductListeners()) {
+                            fireProductsChanged(List.of(ProductChange.stockChanged(productId, remaining)));
+                        }
+                        updated = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        checkpointIfDue();
+        UPDATE_STOCK_LATENCY.recordSince(start);
+        commitStockUpdate(event, productId, quantity, updated);
+        return updated;
+    }
+    
+    /**
+     * Place a whole order: take every line's quantity out of stock and add
+     * the order total to sales, or change nothing if any line cannot be filled
+     * The order is written to the log as a single record
+     * Returns false if a product is missing or short of stock, or the store does not accept changes
+     */
+    @Override
+    public boolean placeOrder(Order order) {
+        StoreEvents.Sale event = new StoreEvents.Sale();
+        event.begin();
+        long start = System.nanoTime();
+        boolean placed = takeOrder(order);
+        PLACE_ORDER_LATENCY.recordSince(start);
+        (placed ? ORDERS_PLACED : ORDERS_REJECTED).increment();
+        commitSale(event, order, placed);
+        return placed;
+    }
+    
+    private boolean takeOrder(Order order) {
+        List<OrderLine> lines = order.getLines();
+        if (lines.isEmpty() || readOnlyReason != null) {
+            return false;
+        }
+        int count = lines.size();
+        int[] productIds = new int[count];
+        int[] remaining = new int[count];
+        
+        boolean placed = false;
+        catalogLock.readLock().lock();
+        try {
+            // Slots stay put while the read lock is held
+            int[] positions = new int[count];
+            // Order keeps one line per product, so each line can be checked against stock on its own
+            for (int i = 0; i < count; i++) {
+                positions[i] = catalog.position(lines.get(i).getProductId());
+                if (positions[i] < 0 || lines.get(i).getQuantity() <= 0) {
+                    return false;
+                }
+            }
+            
+            // Take the stripes in ascending order so concurrent orders cannot deadlock
+            BitSet stripes = new BitSet(STOCK_LOCK_STRIPES);
+            for (OrderLine line : lines) {
+                stripes.set(stripe(line.getProductId()));
+            }
+            for (int s = stripes.nextSetBit(0); s >= 0; s = stripes.nextSetBit(s + 1)) {
+                stockLocks[s].lock();
+            }
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (catalog.quantity(positions[i]) < lines.get(i).getQuantity()) {
+                        return false;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    productIds[i] = catalog.id(positions[i]);
+                    remaining[i] = catalog.quantity(positions[i]) - lines.get(i).getQuantity();
+                    setStock(positions[i], remaining[i]);
+                    // Charge the store's price, not the one the cart or till was showing
+                    lines.get(i).reprice(catalog.name(positions[i]), catalog.price(positions[i]));
+                }
+                double amount = order.getTotal();
+                int itemCount = order.getItemCount();
+                long orderId = lastOrderId.incrementAndGet();
+                long timestamp = System.currentTimeMillis();
+                SaleEntry[] entries = new SaleEntry[count];
+                for (int i = 0; i < count; i++) {
+                    OrderLine line = lines.get(i);
+                    entries[i] = new SaleEntry(timestamp, orderId, line.getProductId(), line.getQuantity(),
+                            line.getUnitPrice(), line.getLineTotal());
+                }
+                totalSales.add(amount);
+                totalProductsSold.add(itemCount);
+                submit(sale(l -> writeOrder(l, productIds, remaining, amount, itemCount), entries));
+                if (hasProductListeners()) {
+                    List<ProductChange> changes = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        changes.add(ProductChange.stockChanged(productIds[i], remaining[i]));
+                    }
+                    fireProductsChanged(changes);
+                }
+                order.setOrderId(orderId);
+                placed = true;
+            } finally {
+                for (int s = stripes.nextSetBit(0); s >= 0; s = stripes.nextSetBit(s + 1)) {
+                    stockLocks[s].unlock();
+                }
+            }
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        checkpointIfDue();
+        return placed;
+    }
+    
+    // Add to sales
+    @Override
+    public void addSale(double amount, int quantity) {
+        checkWritable();
+        SaleEntry entry = new SaleEntry(System.currentTimeMillis(), lastOrderId.incrementAndGet(),
+                SaleEntry.NO_PRODUCT, quantity, quantity > 0 ? amount / quantity : amount, amount);
+        catalogLock.readLock().lock();
+        try {
+            totalSales.add(amount);
+            totalProductsSold.add(quantity);
+            submit(sale(l -> writeSales(l, amount, quantity), entry));
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        checkpointIfDue();
+    }
+    
+    /**
+     * Every sale made from (inclusive) to (exclusive), oldest first
+     * Only the ledger segments for the days in the range are read
+     * Sales still queued for the writer thread are not included yet
+     */
+    @Override
+    public List<SaleEntry> getSales(LocalDateTime from, LocalDateTime to) {
+        if (ledger == null) {
+            return new ArrayList<>();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            return ledger.query(from.atZone(zone).toInstant().toEpochMilli(),
+                    to.atZone(zone).toInstant().toEpochMilli());
+        } catch (IOException e) {
+            System.err.println("Error reading sales ledger: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    // Revenue and quantity per product, best selling first
+    // Read from the rollups, so the cost does not grow with the sales history
+    @Override
+    public List<SalesTotal> getSalesByProduct() {
+        Map<Integer, SalesRollups.Totals> totals = rollups.productTotals();
+        List<SalesTotal> rows = new ArrayList<>(totals.size());
+        catalogLock.readLock().lock();
+        try {
+            totals.forEach((id, t) -> {
+                int position = catalog.position(id);
+                String label = position >= 0 ? catalog.name(position)
+                        : id == SaleEntry.NO_PRODUCT ? "Other sales" : "Product #" + id + " (deleted)";
+                rows.add(new SalesTotal(label, t.revenue, t.quantity));
+            });
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        rows.sort(Comparator.comparingDouble(SalesTotal::getRevenue).reversed());
+        return rows;
+    }
+    
+    // Revenue and quantity per category, best selling first
+    // Products are grouped by their current category
+    @Override
+    public List<SalesTotal> getSalesByCategory() {
+        Map<String, SalesRollups.Totals> byCategory = new HashMap<>();
+        Map<Integer, SalesRollups.Totals> totals = rollups.productTotals();
+        catalogLock.readLock().lock();
+        try {
+            totals.forEach((id, t) -> {
+                int position = catalog.position(id);
+                String category = position >= 0 ? catalog.category(position)
+                        : id == SaleEntry.NO_PRODUCT ? "Other sales" : "Unknown";
+                byCategory.computeIfAbsent(category, k -> new SalesRollups.Totals()).add(t.revenue, t.quantity);
+            });
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        List<SalesTotal> rows = new ArrayList<>(byCategory.size());
+        byCategory.forEach((category, t) -> rows.add(new SalesTotal(category, t.revenue, t.quantity)));
+        rows.sort(Comparator.comparingDouble(SalesTotal::getRevenue).reversed());
+        return rows;
+    }
+    
+    // Revenue and quantity for each hour of a day, 24 rows labelled "00:00" to "23:00"
+    @Override
+    public List<SalesTotal> getSalesByHour(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        Map<Long, SalesRollups.Totals> totals = rollups.hourTotals(epochDay);
+        List<SalesTotal> rows = new ArrayList<>(24);
+        for (int hour = 0; hour < 24; hour++) {
+            SalesRollups.Totals t = totals.get(epochDay * 24 + hour);
+            rows.add(new SalesTotal(String.format("%02d:00", hour),
+                    t != null ? t.revenue : 0, t != null ? t.quantity : 0));
+        }
+        return rows;
+    }
+    
+    // Revenue and quantity for each day from..to (inclusive), one row per day
+    @Override
+    public List<SalesTotal> getSalesByDay(LocalDate from, LocalDate to) {
+        Map<Long, SalesRollups.Totals> totals = rollups.dayTotals(from.toEpochDay(), to.toEpochDay());
+        List<SalesTotal> rows = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            SalesRollups.Totals t = totals.get(day.toEpochDay());
+            rows.add(new SalesTotal(day.toString(), t != null ? t.revenue : 0, t != null ? t.quantity : 0));
+        }
+        return rows;
+    }
+    
+    /**
+     * Ad-hoc report over the ledger days from..to (inclusive): top products, category share,
+     * basket sizes and price comparisons
+     * Days are scanned in parallel; call from a background thread, as long ranges take a while
+     * Throws CancellationException if progress reports the report as cancelled
+     */
+    @Override
+    public SalesReport runSalesReport(LocalDate from, LocalDate to, int topN, SalesReport.Progress progress)
+            throws IOException {
+        long start = System.nanoTime();
+        SalesReportEngine.Partial totals = ledger != null
+                ? new SalesReportEngine(ledger).scan(from, to, progress)
+                : new SalesReportEngine.Partial();
+        
+        List<SalesTotal> productRows = new ArrayList<>();
+        Map<String, SalesRollups.Totals> byCategory = new HashMap<>();
+        List<PriceComparison> comparisons = new ArrayList<>();
+        catalogLock.readLock().lock();
+        try {
+            totals.byProduct.forEach((id, t) -> {
+                int position = catalog.position(id);
+                String label = position >= 0 ? catalog.name(position)
+                        : id == SaleEntry.NO_PRODUCT ? "Other sales" : "Product #" + id + " (deleted)";
+                String category = position >= 0 ? catalog.category(position)
+                        : id == SaleEntry.NO_PRODUCT ? "Other sales" : "Unknown";
+                productRows.add(new SalesTotal(label, t.revenue, t.quantity));
+                byCategory.computeIfAbsent(category, k -> new SalesRollups.Totals()).add(t.revenue, t.quantity);
+                
+                // Demand at the lowest and the highest price the product sold for
+                Map<Double, SalesReportEngine.PricePoint> prices = totals.pricePoints.get(id);
+                if (id != SaleEntry.NO_PRODUCT && prices != null && prices.size() > 1) {
+                    double low = Collections.min(prices.keySet());
+                    double high = Collections.max(prices.keySet());
+                    SalesReportEngine.PricePoint lowPoint = prices.get(low);
+                    SalesReportEngine.PricePoint highPoint = prices.get(high);
+                    comparisons.add(new PriceComparison(label,
+                            low, (double) lowPoint.quantity / lowPoint.days,
+                            high, (double) highPoint.quantity / highPoint.days));
+                }
+            });
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        
+        productRows.sort(Comparator.comparingDouble(SalesTotal::getRevenue).reversed());
+        List<SalesTotal> categoryRows = new ArrayList<>(byCategory.size());
+        byCategory.forEach((category, t) -> categoryRows.add(new SalesTotal(category, t.revenue, t.quantity)));
+        categoryRows.sort(Comparator.comparingDouble(SalesTotal::getRevenue).reversed());
+        comparisons.sort(Comparator.comparing(PriceComparison::getLabel));
+        
+        return new SalesReport(from, to, totals.revenue, totals.quantity, totals.orders,
+                new ArrayList<>(productRows.subList(0, Math.min(topN, productRows.size()))),
+                categoryRows, comparisons, totals.entries,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    
+    // Recompute the rollups from the whole ledger on the writer thread
+    // Returns a mutation id to pass to awaitDurable
+    @Override
+    public long rebuildSalesRollups() {
+        return writer.submit(new PersistenceWriter.Record() {
+            @Override
+            public void writeTo(MutationLog log) {
+                // Nothing to log
+            }
+            
+            @Override
+            public void writeOutsideLog() throws IOException {
+                if (ledger != null) {
+                    rollups.clear();
+                    ledger.scanFrom(Long.MIN_VALUE, 0, rollups::add);
+                    saveRollups();
+                }
+            }
+        });
+    }
+    
+    @Override
+    public ProductImport importProducts(Path file, boolean skipInvalidRows) throws IOException {
+        checkWritable();
+        // Read the whole file before taking the write lock, so the tills only wait for the lookups
+        List<ProductCsv.Fields> rows = new ArrayList<>();
+        int largestId = 0;
+        try (ProductCsv.Reader reader = new ProductCsv.Reader(file)) {
+            ProductCsv.Fields fields;
+            while ((fields = reader.next()) != null) {
+                rows.add(fields);
+                largestId = Math.max(largestId, fields.id);
+            }
+        }
+        
+        // Check and apply the rows under the write lock, so nobody sees half an import
+        ProductImport result = new ProductImport();
+        List<Product> products = new ArrayList<>(rows.size());
+        BitSet added = new BitSet();
+        List<ProductChange> changes = hasProductListeners() ? new ArrayList<>() : null;
+        catalogLock.writeLock().lock();
+        try {
+            // Products from earlier rows, so a product listed twice gets both rows
+            Map<Integer, Product> imported = new HashMap<>();
+            for (ProductCsv.Fields fields : rows) {
+                Product current = imported.get(fields.id);
+                if (current == null && fields.id > 0) {
+                    current = lookup(fields.id);
+                }
+                ProductCsv.Row row = fields.resolve(current);
+                result.count(row);
+                if (row.product != null) {
+                    if (row.product.getProductId() > 0) {
+                        imported.put(row.product.getProductId(), row.product);
+                    }
+                    products.add(row.product);
+                    added.set(products.size() - 1, row.added);
+                }
+            }
+            if (result.getErrorCount() > 0 && !skipInvalidRows) {
+                return result;
+            }
+            
+            // New products without an id are numbered after every id in the file
+            nextProductId.accumulateAndGet(largestId + 1, Math::max);
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                if (product.getProductId() == 0) {
+                    product.setProductId(nextProductId.getAndIncrement());
+                }
+                putProduct(product);
+                if (changes != null) {
+                    changes.add(added.get(i) ? ProductChange.added(copyOf(product))
+                            : ProductChange.updated(copyOf(product)));
+                }
+            }
+            // One record for the whole import, so a crash keeps all of it or none
+            if (!products.isEmpty()) {
+                submit(l -> writePuts(l, products));
+            }
+            result.setApplied(true);
+            if (changes != null && !changes.isEmpty()) {
+                fireProductsChanged(changes);
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        checkpointIfDue();
+        
+        // A single durability wait covers the whole batch; a failed write is thrown to the caller
+        try {
+            if (!awaitDurable(getLastMutationId(), IMPORT_DURABLE_TIMEOUT_MILLIS)) {
+                System.err.println("Warning: imported products are not on disk yet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+    
+    // Get total sales
+    @Override
+    public double getTotalSales() {
+        return totalSales.sum();
+    }
+    
+    // Get total products sold
+    @Override
+    public int getTotalProductsSold() {
+        return (int) totalProductsSold.sum();
+    }
+    
+    // Reserve the next product ID; each call returns a new one
+    @Override
+    public int getNextProductId() {
+        return nextProductId.getAndIncrement();
+    }
+    
+    // Insert a product, or replace the one with the same id
+    private void putProduct(Product product) {
+        int id = product.getProductId();
+        int position = catalog.position(id);
+        if (position >= 0) {
+            searchIndex.remove(id, catalog.name(position), catalog.category(position));
+        }
+        catalog.put(product);
+        searchIndex.add(product);
+        lowStock.update(id, product.getQuantity(), product.getReorderLevel());
+        nextProductId.accumulateAndGet(id + 1, Math::max);
+    }
+    
+    // Set a product's stock level and move it in the low-stock index
+    // (caller holds the product's stock lock, or the write lock)
+    private void setStock(int position, int quantity) {
+        catalog.setQuantity(position, quantity);
+        int reorderLevel = catalog.reorderLevel(position);
+        if (reorderLevel > 0) {
+            lowStock.update(catalog.id(position), quantity, reorderLevel);
+        }
+    }
+    
+    // Remove a product; the catalog shifts the products after it (deletes are rare)
+    private boolean removeProduct(int productId) {
+        int position = catalog.position(productId);
+        if (position < 0) {
+            return false;
+        }
+        searchIndex.remove(productId, catalog.name(position), catalog.category(position));
+        lowStock.remove(productId);
+        return catalog.remove(productId);
+    }
+    
+    // Index every product's words and stock level and move the id sequence past the largest id
+    private void rebuildIndex() {
+        searchIndex.clear();
+        lowStock.clear();
+        for (int i = 0; i < catalog.size(); i++) {
+            int id = catalog.id(i);
+            searchIndex.add(id, catalog.name(i), catalog.category(i));
+            lowStock.update(id, catalog.quantity(i), catalog.reorderLevel(i));
+            nextProductId.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+    
+    // Id of the most recent change, for use with awaitDurable
+    @Override
+    public long getLastMutationId() {
+        return writer == null ? 0 : writer.getLastSubmitted();
+    }
+    
+    // Wait until the given change has been written to disk; returns false on timeout
+    @Override
+    public boolean awaitDurable(long mutationId, long timeoutMillis) throws InterruptedException, IOException {
+        return writer == null || writer.awaitDurable(mutationId, timeoutMillis);
+    }
+    
+    private void checkWritable() {
+        if (readOnlyReason != null) {
+            throw new IllegalStateException("The store does not accept changes: " + readOnlyReason);
+        }
+    }
+    
+    // Queue a change for the writer thread (caller holds the catalog lock)
+    // Without a log, the writer skips the record and the next checkpoint saves the change
+    private void submit(PersistenceWriter.Record record) {
+        writer.submit(record);
+        if (!logAvailable) {
+            recordsSinceCheckpoint.incrementAndGet();
+        }
+    }
+    
+    // A sale's log record, which also appends its entries to the ledger
+    private PersistenceWriter.Record sale(PersistenceWriter.Record logRecord, SaleEntry... entries) {
+        return new PersistenceWriter.Record() {
+            @Override
+            public void writeTo(MutationLog log) throws IOException {
+                logRecord.writeTo(log);
+            }
+            
+            @Override
+            public void writeOutsideLog() throws IOException {
+                if (ledger != null) {
+                    for (SaleEntry entry : entries) {
+                        ledger.append(entry);
+                        rollups.add(entry);
+                    }
+                }
+            }
+        };
+    }
+    
+    // Without a log, queue a snapshot after every change
+    private void checkpointIfDue() {
+        // With a log, compaction folds changes into the snapshot in the background
+        if (logAvailable) {
+            return;
+        }
+        catalogLock.writeLock().lock();
+        try {
+            if (recordsSinceCheckpoint.get() > 0) {
+                // The write lock keeps every queued change either inside this snapshot or after it
+                writer.submitSnapshot(takeSnapshot());
+                recordsSinceCheckpoint.set(0);
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+    
+    // Copy the current state so the writer can save it while the UI keeps changing it
+    // (caller holds the write lock)
+    private PersistenceWriter.Snapshot takeSnapshot() {
+        return new PersistenceWriter.Snapshot(catalog.copy(), nextProductId.get(),
+                totalSales.sum(), (int) totalProductsSold.sum());
+    }
+    
+    private static Product copyOf(Product p) {
+        return new Product(p.getProductId(), p.getProductName(), p.getCategory(), p.getPrice(), p.getQuantity(),
+                p.getReorderLevel());
+    }
+    
+    // The methods below run on the writer thread
+    
+    private void writePut(MutationLog log, Product product) throws IOException {
+        loggedSinceSnapshot.add(product.getProductId());
+        log.appendPut(product);
+    }
+    
+    private void writePuts(MutationLog log, List<Product> products) throws IOException {
+        for (Product product : products) {
+            loggedSinceSnapshot.add(product.getProductId());
+        }
+        log.appendPuts(products);
+    }
+    
+    private void writeDelete(MutationLog log, int productId) throws IOException {
+        loggedSinceSnapshot.add(productId);
+        log.appendDelete(productId);
+    }
+    
+    // Sales are queued as amounts and logged as running totals, so concurrent
+    // sales can never log their totals out of order
+    private void writeSales(MutationLog log, double amount, int quantity) throws IOException {
+        loggedSales += amount;
+        loggedProductsSold += quantity;
+        log.appendSales(loggedSales, (int) loggedProductsSold);
+    }
+    
+    // Log an order as one record with all its stock levels; patching some of them into the
+    // snapshot instead could leave them changed by a crash before the record is on disk
+    private void writeOrder(MutationLog log, int[] productIds, int[] quantities, double amount, int itemCount)
+            throws IOException {
+        for (int productId : productIds) {
+            loggedSinceSnapshot.add(productId);
+        }
+        loggedSales += amount;
+        loggedProductsSold += itemCount;
+        log.appendOrder(productIds, quantities, productIds.length, loggedSales, (int) loggedProductsSold);
+    }
+    
+    // Patch the stock level in the snapshot file in place when no logged record
+    // for the product would override it on replay; otherwise log it
+    // A stock change on its own is one value in one record, so the patch is all or nothing
+    private void writeStock(MutationLog log, int productId, int quantity) throws IOException {
+        if (mappedSnapshot != null && !loggedSinceSnapshot.contains(productId)
+                && mappedSnapshot.setQuantity(productId, quantity)) {
+            return;
+        }
+        loggedSinceSnapshot.add(productId);
+        log.appendStock(productId, quantity);
+    }
+    
+    // Snapshot files as seen by the writer thread
+    private class SnapshotFiles implements PersistenceWriter.SnapshotStore {
+        @Override
+        public boolean write(PersistenceWriter.Snapshot snapshot) {
+            StoreEvents.Save event = new StoreEvents.Save();
+            event.begin();
+            closeMappedSnapshot();
+            boolean saved = saveProducts(snapshot.products, snapshot.nextProductId)
+                    && saveSalesData(snapshot.totalSales, snapshot.totalProductsSold);
+            event.end();
+            if (event.shouldCommit()) {
+                event.catalogSize = snapshot.products.size();
+                event.bytesWritten = saved
+                        ? fileSize(dataDir.resolve(PRODUCTS_FILE)) + fileSize(dataDir.resolve(SALES_FILE))
+                        : 0;
+                event.succeeded = saved;
+                event.commit();
+            }
+            if (saved) {
+                loggedSinceSnapshot.clear();
+                loggedSales = snapshot.totalSales;
+                loggedProductsSold = snapshot.totalProductsSold;
+            }
+            if (ledger != null) {
+                saveRollups();
+            }
+            openMappedSnapshot();
+            return saved;
+        }
+        
+        @Override
+        public void sync() throws IOException {
+            if (mappedSnapshot != null) {
+                mappedSnapshot.sync();
+            }
+            if (ledger != null) {
+                ledger.sync();
+            }
+        }
+        
+        @Override
+        public void compactionStarting(boolean logRotated) {
+            // The compactor rewrites products.bin, so no more in-place updates to the old one
+            closeMappedSnapshot();
+            if (logRotated) {
+                // From now on only the new log replays on top of the compacted snapshot
+                loggedSinceSnapshot.clear();
+            }
+        }
+        
+        @Override
+        public void compact(Path sealedLog) throws IOException {
+            try {
+                new Compactor(dataDir.resolve(PRODUCTS_FILE), dataDir.resolve(SALES_FILE)).compact(sealedLog);
+            } catch (Compactor.DamagedSnapshotException e) {
+                // The catalog in memory still has every product; save it whole instead, which
+                // also replaces the sealed log
+                System.err.println("Error compacting mutation log: " + e.getMessage()
+                        + ", saving the products from memory instead");
+                catalogLock.writeLock().lock();
+                try {
+                    writer.submitSnapshot(takeSnapshot());
+                } finally {
+                    catalogLock.writeLock().unlock();
+                }
+                throw e;
+            }
+        }
+        
+        @Override
+        public void compactionFinished(boolean succeeded) {
+            // After a failure the sealed log still replays over the old snapshot,
+            // so stock stays logged until a compaction succeeds
+            if (succeeded) {
+                openMappedSnapshot();
+            }
+            if (ledger != null) {
+                saveRollups();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            closeMappedSnapshot();
+            if (ledger != null) {
+                saveRollups();
+                ledger.close();
+            }
+        }
+    }
+    
+    private void openMappedSnapshot() {
+        try {
+            mappedSnapshot = ProductFile.openForUpdate(dataDir.resolve(PRODUCTS_FILE));
+        } catch (IOException e) {
+            // Stock updates are logged instead
+            mappedSnapshot = null;
+        }
+    }
+    
+    private void closeMappedSnapshot() {
+        if (mappedSnapshot != null) {
+            try {
+                mappedSnapshot.close();
+            } catch (IOException e) {
+                System.err.println("Error closing product file: " + e.getMessage());
+            }
+            mappedSnapshot = null;
+        }
+    }
+    
+    // Open the sales ledger, continue its order ids and bring the rollups up to date
+    private void openLedger() {
+        try {
+            ledger = new SalesLedger(dataDir.resolve(SALES_DIR));
+            lastOrderId.set(ledger.getLastOrderId());
+        } catch (IOException e) {
+            System.err.println("Error opening sales ledger, sales history will not be recorded: " + e.getMessage());
+            ledger = null;
+            return;
+        }
+        
+        rollups.read(dataDir.resolve(ROLLUPS_FILE));
+        long day = rollups.getLedgerDay();
+        long index = rollups.getLedgerIndex();
+        if (day > ledger.getEndDay() || (day == ledger.getEndDay() && index > ledger.getEndIndex())) {
+            // Saved for a longer ledger than the one on disk
+            rollups.clear();
+        }
+        if (rollups.getLedgerDay() != ledger.getEndDay() || rollups.getLedgerIndex() != ledger.getEndIndex()) {
+            try {
+                ledger.scanFrom(rollups.getLedgerDay(), rollups.getLedgerIndex(), rollups::add);
+                saveRollups();
+            } catch (IOException e) {
+                System.err.println("Error reading sales ledger: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Save the rollups with the ledger position they cover (writer thread once started)
+    private void saveRollups() {
+        try {
+            // The ledger must hold every entry the saved rollups count
+            ledger.sync();
+            rollups.setLedgerPosition(ledger.getEndDay(), ledger.getEndIndex());
+            rollups.write(dataDir.resolve(ROLLUPS_FILE));
+        } catch (IOException e) {
+            System.err.println("Error saving sales rollups: " + e.getMessage());
+        }
+    }
+    
+    // Open the mutation log and start the background writer
+    private void startWriter() {
+        MutationLog log = null;
+        try {
+            // A log that could not be replayed is left as it is, for repair
+            if (readOnlyReason == null) {
+                log = new MutationLog(dataDir.resolve(LOG_FILE));
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening mutation log, falling back to full saves: " + e.getMessage());
+        }
+        logAvailable = log != null;
+        if (logAvailable) {
+            openMappedSnapshot();
+        }
+        loggedSales = totalSales.sum();
+        loggedProductsSold = totalProductsSold.sum();
+        writer = new PersistenceWriter(log, new SnapshotFiles(), durability, groupCommitMillis, compactionMillis);
+    }
+    
+    // Apply log records written since the last snapshot: a log sealed for an unfinished
+    // compaction first, then the current one
+    private void replayLog() {
+        Path log = dataDir.resolve(LOG_FILE);
+        Path sealedLog = MutationLog.sealedPath(log);
+        try {
+            MutationLog.Replayer replayer = new MutationLog.Replayer() {
+                @Override
+                public void putProduct(Product product) {
+                    LocalDataStore.this.putProduct(product);
+                }
+                
+                @Override
+                public void deleteProduct(int productId) {
+                    removeProduct(productId);
+                }
+                
+                @Override
+                public void setStock(int productId, int quantity) {
+                    int position = catalog.position(productId);
+                    if (position >= 0) {
+                        LocalDataStore.this.setStock(position, quantity);
+                    }
+                }
+                
+                @Override
+                public void setSales(double sales, int productsSold) {
+                    setSalesTotals(sales, productsSold);
+                }
+            };
+            int applied = MutationLog.replay(sealedLog, replayer) + MutationLog.replay(log, replayer);
+            if (applied > 0) {
+                System.out.println("Recovered " + applied + " changes from the mutation log");
+            }
+            // Persist the replayed state so the log can start empty
+            if ((applied > 0 || Files.exists(sealedLog)) && saveProducts(catalog, nextProductId.get())
+                    && saveSalesData(totalSales.sum(), (int) totalProductsSold.sum())) {
+                Files.deleteIfExists(sealedLog);
+                Files.deleteIfExists(log);
+            }
+        } catch (IOException e) {
+            readOnlyReason = "the mutation log could not be replayed (" + e.getMessage() + ")";
+            System.err.println("Error replaying mutation log: " + e.getMessage()
+                    + "; no changes are accepted until the log is repaired");
+        }
+    }
+    
+    // Save products to file
+    private boolean saveProducts(ProductCatalog products, int nextProductId) {
+        try {
+            ProductFile.write(dataDir.resolve(PRODUCTS_FILE), products, nextProductId);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving products: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Load products from file, migrating an old serialized products.dat on first start
+    private void loadProducts() {
+        Path file = dataDir.resolve(PRODUCTS_FILE);
+        Path legacyFile = dataDir.resolve(LEGACY_PRODUCTS_FILE);
+        freshStart = !Files.exists(file) && !Files.exists(legacyFile)
+                && !Files.exists(dataDir.resolve(LOG_FILE));
+        try {
+            if (Files.exists(file)) {
+                ProductFile.Contents contents = ProductFile.read(file);
+                catalog = contents.products;
+                nextProductId.set(contents.nextProductId);
+                if (contents.damagedRecords > 0) {
+                    System.err.println("Warning: Skipped " + contents.damagedRecords
+                            + " damaged product records in " + PRODUCTS_FILE);
+                    // The next snapshot leaves them out, so keep the file as it is for repair
+                    preserveDamagedFile(file, false);
+                }
+            } else if (Files.exists(legacyFile)) {
+                migrateLegacyProducts(legacyFile, file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading products: " + e.getMessage());
+            catalog = new ProductCatalog();
+            preserveDamagedFile(file, true);
+        }
+        rebuildIndex();
+    }
+    
+    // Move (or copy) a damaged products file aside so the next snapshot cannot replace it
+    private void preserveDamagedFile(Path file, boolean move) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Path aside = file.resolveSibling(file.getFileName() + ".damaged-" + System.currentTimeMillis());
+        try {
+            if (move) {
+                Files.move(file, aside);
+            } else {
+                Files.copy(file, aside);
+            }
+            System.err.println("Kept the unreadable product file as " + aside.getFileName());
+        } catch (IOException e) {
+            System.err.println("Error preserving damaged product file: " + e.getMessage());
+        }
+    }
+    
+    // One-shot conversion of a Java-serialized products.dat into products.bin
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyProducts(Path legacyFile, Path file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacyFile)))) {
+            catalog = ProductCatalog.of((List<Product>) ois.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable " + LEGACY_PRODUCTS_FILE + ": " + e.getMessage(), e);
+        }
+        rebuildIndex();
+        ProductFile.write(file, catalog, nextProductId.get());
+        // Keep the old file as a backup; products.bin takes precedence from now on
+        Files.move(legacyFile, legacyFile.resolveSibling(LEGACY_PRODUCTS_FILE + ".bak"),
+                StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Migrated " + catalog.size() + " products to " + PRODUCTS_FILE);
+    }
+    
+    // Save sales data to file
+    private boolean saveSalesData(double totalSales, int totalProductsSold) {
+        try {
+            SalesFile.write(dataDir.resolve(SALES_FILE), totalSales, totalProductsSold);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving sales data: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Load sales data from file
+    private void loadSalesData() {
+        Path file = dataDir.resolve(SALES_FILE);
+        if (Files.exists(file)) {
+            try {
+                SalesFile totals = SalesFile.read(file);
+                setSalesTotals(totals.totalSales, totals.totalProductsSold);
+            } catch (IOException e) {
+                System.err.println("Error loading sales data: " + e.getMessage());
+                setSalesTotals(0.0, 0);
+            }
+        }
+    }
+    
+    // Only used while loading, before the store is shared
+    private void setSalesTotals(double sales, int productsSold) {
+        totalSales.reset();
+        totalSales.add(sales);
+        totalProductsSold.reset();
+        totalProductsSold.add(productsSold);
+    }
+    
+    // Size of a file, 0 if it is missing
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    // Load all data
+    private void loadData() {
+        loadProducts();
+        loadSalesData();
+    }
+}
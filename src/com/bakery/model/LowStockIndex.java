@@ -0,0 +1,162 @@
+package com.bakery.model;
+
+import java.util.Arrays;
+
+/**
+ * LowStockIndex answers "which products are below their reorder level" without a scan
+ * Products with a reorder level sit in a min-heap ordered by their margin, the stock
+ * left above the level, so the ones running low are always at the top of the heap.
+ *
+ * A stock or product change moves one entry, in O(log n). The products below their level
+ * are collected by walking down from the top and stopping at the first entry of each branch
+ * that is not, so a query costs about the number of low products, not the catalog size.
+ * Products without a reorder level are not kept at all.
+ *
+ * Thread-safe: tills selling different products update it at the same time. The caller
+ * keeps the changes to one product in order, as the store does with its stock locks.
+ */
+final class LowStockIndex {
+    private static final int MIN_CAPACITY = 16;
+    
+    // Heap of (margin, product id) pairs; margin = quantity - reorder level
+    private int[] margins = new int[MIN_CAPACITY];
+    private int[] ids = new int[MIN_CAPACITY];
+    private int size;
+    // Product id -> heap slot
+    private final IntIndex slots = new IntIndex(MIN_CAPACITY);
+    // Entries with a negative margin
+    private int lowCount;
+    
+    // Record a product's stock level; a reorder level of 0 leaves the product out
+    synchronized void update(int productId, int quantity, int reorderLevel) {
+        if (reorderLevel <= 0) {
+            remove(productId);
+            return;
+        }
+        int margin = quantity - reorderLevel;
+        int slot = slots.get(productId, -1);
+        if (slot < 0) {
+            if (size == ids.length) {
+                margins = Arrays.copyOf(margins, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            slot = size++;
+            ids[slot] = productId;
+            margins[slot] = margin;
+            slots.put(productId, slot);
+            if (margin < 0) {
+                lowCount++;
+            }
+            siftUp(slot);
+            return;
+        }
+        int old = margins[slot];
+        if (old == margin) {
+            return;
+        }
+        lowCount += (margin < 0 ? 1 : 0) - (old < 0 ? 1 : 0);
+        margins[slot] = margin;
+        if (margin < old) {
+            siftUp(slot);
+        } else {
+            siftDown(slot);
+        }
+    }
+    
+    synchronized void remove(int productId) {
+        int slot = slots.get(productId, -1);
+        if (slot < 0) {
+            return;
+        }
+        if (margins[slot] < 0) {
+            lowCount--;
+        }
+        slots.remove(productId);
+        size--;
+        if (slot < size) {
+            // Fill the gap with the last entry, which may belong above or below it
+            set(slot, margins[size], ids[size]);
+            siftDown(slot);
+            siftUp(slot);
+        }
+    }
+    
+    synchronized void clear() {
+        size = 0;
+        lowCount = 0;
+        slots.clear();
+    }
+    
+    // Ids of the products below their reorder level, furthest below first
+    synchronized int[] lowStockIds() {
+        // Margin and id packed into one long, so sorting orders by margin, then id
+        long[] found = new long[lowCount];
+        int count = 0;
+        // Every slot visited is the root or a child of a low entry
+        int[] pending = new int[2 * lowCount + 1];
+        int top = 0;
+        if (size > 0) {
+            pending[top++] = 0;
+        }
+        while (top > 0) {
+            int slot = pending[--top];
+            if (margins[slot] >= 0) {
+                continue;
+            }
+            found[count++] = (long) margins[slot] << 32 | (ids[slot] & 0xFFFFFFFFL);
+            int child = 2 * slot + 1;
+            if (child < size) {
+                pending[top++] = child;
+            }
+            if (child + 1 < size) {
+                pending[top++] = child + 1;
+            }
+        }
+        Arrays.sort(found, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (int) found[i];
+        }
+        return result;
+    }
+    
+    private void siftUp(int slot) {
+        int margin = margins[slot];
+        int id = ids[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (margins[parent] <= margin) {
+                break;
+            }
+            set(slot, margins[parent], ids[parent]);
+            slot = parent;
+        }
+        set(slot, margin, id);
+    }
+    
+    private void siftDown(int slot) {
+        int margin = margins[slot];
+        int id = ids[slot];
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && margins[child + 1] < margins[child]) {
+                child++;
+            }
+            if (margins[child] >= margin) {
+                break;
+            }
+            set(slot, margins[child], ids[child]);
+            slot = child;
+        }
+        set(slot, margin, id);
+    }
+    
+    private void set(int slot, int margin, int id) {
+        margins[slot] = margin;
+        ids[slot] = id;
+        slots.put(id, slot);
+    }
+}
@@ -0,0 +1,157 @@
+package com.bakery.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is the application's registry of counters and latency histograms
+ * Code that wants to be measured keeps its own from Metrics.counter / Metrics.latency
+ * in a static field; the same name always returns the same one
+ *
+ * Everything is published as the JMX MBean com.bakery:type=Metrics. With
+ * -Dbakery.metricsFile=<path> the values of each interval (bakery.metricsSeconds,
+ * default 60) are also appended to that file as tab-separated lines:
+ * time, name, count, then mean, p50, p90, p99, p99.9 and max in microseconds
+ * (empty for counters); names with nothing counted in the interval are left out.
+ * Each till writes its own file, so latency can be compared per till.
+ */
+public final class Metrics {
+    private static final String OBJECT_NAME = "com.bakery:type=Metrics";
+    private static final String FILE_HEADER = "time\tname\tcount\tmean_us\tp50_us\tp90_us\tp99_us\tp999_us\tmax_us";
+    
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> LATENCIES = new ConcurrentHashMap<>();
+    
+    // Registers the MBean and writes the file, off the thread that first touched Metrics;
+    // starting the platform MBean server would otherwise add to startup
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bakery-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    static {
+        EXECUTOR.execute(Metrics::register);
+        String file = System.getProperty("bakery.metricsFile");
+        if (file != null && !file.isBlank()) {
+            new FileDump(Paths.get(file.trim())).start(Long.getLong("bakery.metricsSeconds", 60L));
+        }
+    }
+    
+    private Metrics() {
+    }
+    
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+    
+    public static LatencyHistogram latency(String name) {
+        return LATENCIES.computeIfAbsent(name, LatencyHistogram::new);
+    }
+    
+    private static Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+    
+    private static Map<String, LatencyHistogram.Snapshot> latencySnapshots() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        LATENCIES.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+    
+    private static void register() {
+        try {
+            MetricsMXBean bean = new MetricsMXBean() {
+                @Override
+                public Map<String, Long> getCounters() {
+                    return counterValues();
+                }
+                
+                @Override
+                public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+                    return latencySnapshots();
+                }
+            };
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Appends what was counted in each interval to the metrics file
+     */
+    private static final class FileDump {
+        private final Path file;
+        private Map<String, Long> lastCounters = new HashMap<>();
+        private Map<String, LatencyHistogram.Snapshot> lastLatencies = new HashMap<>();
+        
+        FileDump(Path file) {
+            this.file = file;
+        }
+        
+        void start(long intervalSeconds) {
+            long interval = Math.max(1, intervalSeconds);
+            EXECUTOR.scheduleAtFixedRate(this::dump, interval, interval, TimeUnit.SECONDS);
+            // The last, partial interval
+            Runtime.getRuntime().addShutdownHook(new Thread(this::dump, "bakery-metrics-dump"));
+        }
+        
+        private synchronized void dump() {
+            String time = Instant.now().toString();
+            Map<String, Long> counters = counterValues();
+            Map<String, LatencyHistogram.Snapshot> latencies = latencySnapshots();
+            boolean header = !Files.exists(file);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (header) {
+                    out.write(FILE_HEADER);
+                    out.newLine();
+                }
+                for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                    long delta = counter.getValue() - lastCounters.getOrDefault(counter.getKey(), 0L);
+                    if (delta == 0) {
+                        continue;
+                    }
+                    out.write(time + "\t" + counter.getKey() + "\t" + delta + "\t\t\t\t\t\t");
+                    out.newLine();
+                }
+                for (Map.Entry<String, LatencyHistogram.Snapshot> latency : latencies.entrySet()) {
+                    LatencyHistogram.Snapshot last = lastLatencies.get(latency.getKey());
+                    LatencyHistogram.Snapshot s = last != null ? latency.getValue().since(last) : latency.getValue();
+                    if (s.getCount() == 0) {
+                        continue;
+                    }
+                    out.write(String.format(Locale.ROOT, "%s\t%s\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f",
+                            time, latency.getKey(), s.getCount(), s.getMeanMicros(), s.getP50Micros(),
+                            s.getP90Micros(), s.getP99Micros(), s.getP999Micros(), s.getMaxMicros()));
+                    out.newLine();
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing metrics file: " + e.getMessage());
+            }
+            lastCounters = counters;
+            lastLatencies = latencies;
+        }
+    }
+}
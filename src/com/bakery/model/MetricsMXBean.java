@@ -0,0 +1,15 @@
+package com.bakery.model;
+
+import java.util.Map;
+
+/**
+ * MetricsMXBean is the view of Metrics that JMX clients such as JConsole show
+ * Registered as com.bakery:type=Metrics; all values count from when the application started
+ */
+public interface MetricsMXBean {
+    // Counter name -> total
+    Map<String, Long> getCounters();
+    
+    // Latency name -> count, mean and percentiles in microseconds
+    Map<String, LatencyHistogram.Snapshot> getLatencies();
+}
@@ -0,0 +1,295 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * MutationLog is an append-only, checksummed log of DataStore changes
+ * Each record is replayed on top of the last snapshot when the store starts
+ *
+ * Record layout: payload length (int), type (byte), payload, CRC32 of type + payload (long)
+ * Every record carries absolute values, so replaying a record twice is harmless
+ * Appends are made by the PersistenceWriter thread, which also decides when to sync
+ *
+ * For compaction the log is rotated: the current file is renamed to mutations.log.sealed
+ * and appends continue in a fresh file while the sealed one is folded into the snapshot.
+ * Recovery replays the sealed log (if any) and then the current one.
+ */
+class MutationLog implements Closeable {
+    // Record types
+    static final byte PUT_PRODUCT = 1;
+    static final byte DELETE_PRODUCT = 2;
+    static final byte SET_STOCK = 3;
+    static final byte SET_SALES = 4;
+    static final byte PLACE_ORDER = 5;
+    static final byte PUT_PRODUCTS = 6;
+    
+    private static final int HEADER_SIZE = 5;
+    private static final int CRC_SIZE = 8;
+    // Large enough for a whole product import in one record
+    private static final int MAX_PAYLOAD = 1 << 30;
+    private static final String SEALED_SUFFIX = ".sealed";
+    
+    private final Path path;
+    private FileChannel channel;
+    private boolean dirty;
+    
+    /**
+     * Callback used while replaying the log
+     */
+    interface Replayer {
+        void putProduct(Product product);
+        void deleteProduct(int productId);
+        void setStock(int productId, int quantity);
+        void setSales(double totalSales, int totalProductsSold);
+    }
+    
+    // Open the log for appending
+    MutationLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = open(path);
+    }
+    
+    private static FileChannel open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    // Name of the log while it is being compacted
+    static Path sealedPath(Path path) {
+        return path.resolveSibling(path.getFileName() + SEALED_SUFFIX);
+    }
+    
+    // Append a product insert or replacement
+    void appendPut(Product product) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeProduct(new DataOutputStream(bytes), product);
+        append(PUT_PRODUCT, bytes.toByteArray());
+    }
+    
+    // Append several product inserts or replacements as one record, so replay applies all or none
+    void appendPuts(List<Product> products) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + products.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(products.size());
+        for (Product product : products) {
+            writeProduct(out, product);
+        }
+        append(PUT_PRODUCTS, bytes.toByteArray());
+    }
+    
+    private static void writeProduct(DataOutputStream out, Product product) throws IOException {
+        out.writeInt(product.getProductId());
+        out.writeUTF(product.getProductName());
+        out.writeUTF(product.getCategory());
+        out.writeDouble(product.getPrice());
+        out.writeInt(product.getQuantity());
+        out.writeInt(product.getReorderLevel());
+    }
+    
+    // Append a product removal
+    void appendDelete(int productId) throws IOException {
+        append(DELETE_PRODUCT, ByteBuffer.allocate(4).putInt(productId).array());
+    }
+    
+    // Append the new stock level of a product
+    void appendStock(int productId, int quantity) throws IOException {
+        append(SET_STOCK, ByteBuffer.allocate(8).putInt(productId).putInt(quantity).array());
+    }
+    
+    // Append the new sales totals
+    void appendSales(double totalSales, int totalProductsSold) throws IOException {
+        append(SET_SALES, ByteBuffer.allocate(12).putDouble(totalSales).putInt(totalProductsSold).array());
+    }
+    
+    // Append the new stock levels of an order's products together with the new sales totals
+    void appendOrder(int[] productIds, int[] quantities, int count, double totalSales, int totalProductsSold)
+            throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(4 + count * 8 + 12);
+        payload.putInt(count);
+        for (int i = 0; i < count; i++) {
+            payload.putInt(productIds[i]).putInt(quantities[i]);
+        }
+        payload.putDouble(totalSales).putInt(totalProductsSold);
+        append(PLACE_ORDER, payload.array());
+    }
+    
+    // Frame, checksum and write a single record
+    private synchronized void append(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length + CRC_SIZE);
+        frame.putInt(payload.length).put(type).put(payload).putLong(crc.getValue());
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        dirty = true;
+    }
+    
+    // Discard all records once they are covered by a snapshot
+    synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        dirty = false;
+    }
+    
+    // Bytes in the current log file
+    synchronized long size() throws IOException {
+        return channel.position();
+    }
+    
+    // Seal the current file for compaction and continue in a new, empty one
+    synchronized Path rotate() throws IOException {
+        Path sealed = sealedPath(path);
+        if (Files.exists(sealed)) {
+            throw new IOException("Previous sealed log has not been compacted yet");
+        }
+        channel.force(true);
+        channel.close();
+        Files.move(path, sealed, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(path);
+        dirty = false;
+        return sealed;
+    }
+    
+    // Force buffered records to disk
+    synchronized void sync() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+    
+    /**
+     * Replay every intact record in the log
+     * Stops at the first short or corrupt record, which can only be a torn write at the tail,
+     * and truncates the file there so later appends are not hidden behind it
+     * Returns the number of records applied
+     */
+    static int replay(Path path, Replayer replayer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        
+        int applied = 0;
+        long offset = 0;
+        long fileSize = Files.size(path);
+        boolean torn = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                byte type;
+                byte[] payload;
+                long expectedCrc;
+                try {
+                    length = in.readInt();
+                    if (length < 0 || length > MAX_PAYLOAD) {
+                        reportTornTail(path, "invalid record length", offset, fileSize);
+                        torn = true;
+                        break;
+                    }
+                    // Do not allocate a payload that cannot all be in the file
+                    if (length > fileSize - offset - HEADER_SIZE) {
+                        throw new EOFException();
+                    }
+                    type = in.readByte();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    expectedCrc = in.readLong();
+                } catch (EOFException e) {
+                    if (offset < fileSize) {
+                        reportTornTail(path, "incomplete record", offset, fileSize);
+                        torn = true;
+                    }
+                    break;
+                }
+                
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(payload);
+                if (crc.getValue() != expectedCrc) {
+                    reportTornTail(path, "checksum mismatch", offset, fileSize);
+                    torn = true;
+                    break;
+                }
+                
+                apply(type, new DataInputStream(new ByteArrayInputStream(payload)), replayer);
+                applied++;
+                offset += HEADER_SIZE + length + CRC_SIZE;
+            }
+        }
+        
+        if (torn) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+                channel.force(true);
+            }
+        }
+        return applied;
+    }
+    
+    private static void reportTornTail(Path path, String reason, long offset, long fileSize) {
+        System.err.println("Mutation log " + path.getFileName() + ": " + reason + " at byte " + offset
+                + ", recovered up to the last good record and discarding " + (fileSize - offset) + " bytes");
+    }
+    
+    private static void apply(byte type, DataInputStream in, Replayer replayer) throws IOException {
+        switch (type) {
+            case PUT_PRODUCT:
+                Product product = new Product(in.readInt(), in.readUTF(), in.readUTF(),
+                        in.readDouble(), in.readInt());
+                // Records written before reorder levels end after the quantity
+                if (in.available() >= 4) {
+                    product.setReorderLevel(in.readInt());
+                }
+                replayer.putProduct(product);
+                break;
+            case DELETE_PRODUCT:
+                replayer.deleteProduct(in.readInt());
+                break;
+            case SET_STOCK:
+                replayer.setStock(in.readInt(), in.readInt());
+                break;
+            case SET_SALES:
+                replayer.setSales(in.readDouble(), in.readInt());
+                break;
+            case PUT_PRODUCTS:
+                int products = in.readInt();
+                for (int i = 0; i < products; i++) {
+                    replayer.putProduct(new Product(in.readInt(), in.readUTF(), in.readUTF(),
+                            in.readDouble(), in.readInt(), in.readInt()));
+                }
+                break;
+            case PLACE_ORDER:
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    replayer.setStock(in.readInt(), in.readInt());
+                }
+                replayer.setSales(in.readDouble(), in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown mutation log record type: " + type);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.bakery.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Order is a customer's cart: one line per product
+ * Placed as a whole with DataStore.placeOrder
+ */
+public class Order {
+    private final List<OrderLine> lines = new ArrayList<>();
+    // Assigned when the order is placed
+    private long orderId;
+    
+    public long getOrderId() {
+        return orderId;
+    }
+    
+    void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+    
+    // Add a product to the order, merging with an existing line for the same product
+    public void addLine(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        OrderLine line = findLine(product.getProductId());
+        if (line != null) {
+            line.addQuantity(quantity);
+        } else {
+            lines.add(new OrderLine(product.getProductId(), product.getProductName(), product.getPrice(), quantity));
+        }
+    }
+    
+    // Add a line as it was priced elsewhere, e.g. by a till sending the order to the server;
+    // checked and merged like a product added here, and priced again when the order is placed
+    void addLine(int productId, String productName, double unitPrice, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        OrderLine line = findLine(productId);
+        if (line != null) {
+            line.addQuantity(quantity);
+        } else {
+            lines.add(new OrderLine(productId, productName, unitPrice, quantity));
+        }
+    }
+    
+    // Remove the line for a product; returns false if it is not in the order
+    public boolean removeLine(int productId) {
+        return lines.removeIf(line -> line.getProductId() == productId);
+    }
+    
+    // Find the line for a product, or null
+    public OrderLine findLine(int productId) {
+        for (OrderLine line : lines) {
+            if (line.getProductId() == productId) {
+                return line;
+            }
+        }
+        return null;
+    }
+    
+    public List<OrderLine> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+    
+    // Total amount of all lines
+    public double getTotal() {
+        double total = 0;
+        for (OrderLine line : lines) {
+            total += line.getLineTotal();
+        }
+        return total;
+    }
+    
+    // Total number of items across all lines
+    public int getItemCount() {
+        int count = 0;
+        for (OrderLine line : lines) {
+            count += line.getQuantity();
+        }
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+    
+    public void clear() {
+        lines.clear();
+    }
+}
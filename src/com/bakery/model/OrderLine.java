@@ -0,0 +1,61 @@
+package com.bakery.model;
+
+/**
+ * OrderLine is one product in a customer's order
+ * The unit price is captured when the product is added to the cart,
+ * and set to the store's current price when the order is placed
+ */
+public class OrderLine {
+    private final int productId;
+    private String productName;
+    private double unitPrice;
+    private int quantity;
+    
+    OrderLine(int productId, String productName, double unitPrice, int quantity) {
+        this.productId = productId;
+        this.productName = productName;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+    }
+    
+    // Getters
+    public int getProductId() {
+        return productId;
+    }
+    
+    public String getProductName() {
+        return productName;
+    }
+    
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+    
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    public double getLineTotal() {
+        return unitPrice * quantity;
+    }
+    
+    void addQuantity(int amount) {
+        quantity += amount;
+    }
+    
+    // Charge the product's name and price as the store has them
+    void reprice(String productName, double unitPrice) {
+        this.productName = productName;
+        this.unitPrice = unitPrice;
+    }
+    
+    @Override
+    public String toString() {
+        return "OrderLine{" +
+                "productId=" + productId +
+                ", productName='" + productName + '\'' +
+                ", unitPrice=" + unitPrice +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,483 @@
+package com.bakery.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PersistenceWriter moves DataStore disk writes off the calling (JavaFX) thread
+ * Mutations are queued and written in batches by a single background thread
+ *
+ * The queue is bounded: when the writer falls behind, submit() blocks until
+ * there is room again. Every submitted mutation gets an increasing id that can
+ * be passed to awaitDurable() to wait until it has reached the disk. Once a
+ * write or sync fails nothing after it counts as durable any more, and
+ * awaitDurable() reports the failure until the store is opened again.
+ * The parts of a change kept outside the log, such as ledger entries, are written
+ * only once its log record is synced, so after a crash they never show a change
+ * that the log lost.
+ *
+ * The writer also schedules compaction: once the log grows past a size limit, or the
+ * compaction interval has passed with anything logged, the log is rotated and the sealed
+ * part is folded into the snapshot on a separate compactor thread. Appends carry on
+ * meanwhile, and the log to replay after a crash stays small.
+ */
+class PersistenceWriter {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_POLL_MILLIS = 100;
+    // Compact as soon as the log reaches this size, whatever the interval
+    private static final long COMPACTION_LOG_BYTES = 8L * 1024 * 1024;
+    
+    private static final LatencyHistogram BATCH_LATENCY = Metrics.latency("persistence.writeBatch");
+    private static final LatencyHistogram SYNC_LATENCY = Metrics.latency("persistence.sync");
+    private static final LatencyHistogram SNAPSHOT_LATENCY = Metrics.latency("persistence.snapshot");
+    private static final LatencyHistogram COMPACTION_LATENCY = Metrics.latency("persistence.compaction");
+    private static final LongAdder RECORDS_WRITTEN = Metrics.counter("persistence.records");
+    
+    /**
+     * A single log record to append
+     */
+    interface Record {
+        void writeTo(MutationLog log) throws IOException;
+        
+        // Write the part of the change that snapshots do not cover (e.g. ledger entries)
+        // Runs for every record once its log record is synced, or a later snapshot is written;
+        // with BUFFERED durability or no log, straight after the log write
+        default void writeOutsideLog() throws IOException {
+        }
+    }
+    
+    /**
+     * Snapshot files of the store, written and synced on the writer thread
+     */
+    interface SnapshotStore {
+        // Write a full snapshot, returning true on success
+        boolean write(Snapshot snapshot);
+        
+        // Force any in-place updates to disk
+        void sync() throws IOException;
+        
+        void close() throws IOException;
+        
+        // Called on the writer thread before a compaction; logRotated is false when a
+        // sealed log left by a failed compaction is being retried
+        void compactionStarting(boolean logRotated);
+        
+        // Fold the sealed log into the snapshot files; called on the compactor thread
+        void compact(Path sealedLog) throws IOException;
+        
+        // Called on the writer thread once the compaction has finished
+        void compactionFinished(boolean succeeded);
+    }
+    
+    /**
+     * Detached copy of the store contents, safe to write from another thread
+     */
+    static final class Snapshot {
+        final ProductCatalog products;
+        final int nextProductId;
+        final double totalSales;
+        final int totalProductsSold;
+        
+        Snapshot(ProductCatalog products, int nextProductId, double totalSales, int totalProductsSold) {
+            this.products = products;
+            this.nextProductId = nextProductId;
+            this.totalSales = totalSales;
+            this.totalProductsSold = totalProductsSold;
+        }
+    }
+    
+    private static final class Pending {
+        final long id;
+        final Record record;
+        final Snapshot snapshot;
+        
+        Pending(long id, Record record, Snapshot snapshot) {
+            this.id = id;
+            this.record = record;
+            this.snapshot = snapshot;
+        }
+    }
+    
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final MutationLog log;
+    private final SnapshotStore snapshots;
+    private final Durability durability;
+    private final long groupCommitMillis;
+    private final long compactionIntervalMillis;
+    private final Thread thread;
+    
+    // Owned by the writer thread
+    private final ExecutorService compactor;
+    private Future<?> compaction;
+    private long lastCompaction = System.nanoTime();
+    // Records written to the log but not yet synced, whose writeOutsideLog() waits for the sync
+    private final List<Record> awaitingSync = new ArrayList<>();
+    
+    private final Object submitLock = new Object();
+    private long lastSubmitted;
+    
+    private final Object durableLock = new Object();
+    private long durableId;
+    // First failed write or sync; durableId stops advancing once it is set
+    private IOException failure;
+    
+    private volatile boolean running = true;
+    
+    // Create and start the writer; log may be null if only snapshots can be written
+    PersistenceWriter(MutationLog log, SnapshotStore snapshots, Durability durability, long groupCommitMillis,
+                      long compactionIntervalMillis) {
+        this.log = log;
+        this.snapshots = snapshots;
+        this.durability = durability;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+        this.compactionIntervalMillis = Math.max(1, compactionIntervalMillis);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "bakery-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.thread = new Thread(this::run, "bakery-persistence-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    // Queue a log record, blocking while the queue is full
+    long submit(Record record) {
+        return enqueue(record, null);
+    }
+    
+    // Queue a full snapshot; earlier queued work is folded into it
+    long submitSnapshot(Snapshot snapshot) {
+        return enqueue(null, snapshot);
+    }
+    
+    private long enqueue(Record record, Snapshot snapshot) {
+        synchronized (submitLock) {
+            if (!running) {
+                throw new IllegalStateException("Persistence writer has been shut down");
+            }
+            long id = lastSubmitted + 1;
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(new Pending(id, record, snapshot));
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            lastSubmitted = id;
+            return id;
+        }
+    }
+    
+    // Id of the most recently submitted mutation
+    long getLastSubmitted() {
+        synchronized (submitLock) {
+            return lastSubmitted;
+        }
+    }
+    
+    // Wait until the given mutation is durable; returns false on timeout, and
+    // throws if a write failed before the mutation could reach the disk
+    boolean awaitDurable(long id, long timeoutMillis) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (durableLock) {
+            while (durableId < id) {
+                if (failure != null) {
+                    throw new IOException("Changes could not be written to disk: " + failure.getMessage(), failure);
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                durableLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+    
+    // Write everything still queued, sync and stop the thread
+    void shutdown() {
+        synchronized (submitLock) {
+            running = false;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        long writtenId = 0;
+        long lastSync = System.nanoTime();
+        long pollMillis = durability == Durability.GROUP ? groupCommitMillis : IDLE_POLL_MILLIS;
+        
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    writtenId = batch.get(batch.size() - 1).id;
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // Only shutdown() stops the writer
+            }
+            
+            if (writtenId > durableId()) {
+                boolean due = durability == Durability.SYNC
+                        || (durability == Durability.GROUP
+                            && System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(groupCommitMillis));
+                if (due) {
+                    sync();
+                    lastSync = System.nanoTime();
+                }
+                if (due || durability == Durability.BUFFERED) {
+                    markDurable(writtenId);
+                }
+            }
+            
+            if (log != null) {
+                compactIfDue();
+            }
+        }
+        
+        if (!awaitingSync.isEmpty()) {
+            sync();
+        }
+        // Let a running compaction finish; its sealed log is recovered on the next start otherwise
+        if (compaction != null) {
+            finishCompaction();
+        }
+        compactor.shutdown();
+        try {
+            snapshots.close();
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing data files: " + e.getMessage());
+        }
+        markDurable(writtenId);
+    }
+    
+    // Write one batch, letting the newest snapshot in it replace everything queued before it
+    private void writeBatch(List<Pending> batch) {
+        StoreEvents.LogWrite event = new StoreEvents.LogWrite();
+        event.begin();
+        long logSizeBefore = event.isEnabled() ? logSize() : 0;
+        long start = System.nanoTime();
+        int lastSnapshot = -1;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).snapshot != null) {
+                lastSnapshot = i;
+            }
+        }
+        
+        int firstRecord = 0;
+        if (lastSnapshot >= 0) {
+            // The snapshot replaces the files a compaction writes, so let it finish first
+            if (compaction != null) {
+                finishCompaction();
+            }
+            if (writeSnapshot(batch.get(lastSnapshot).snapshot)) {
+                firstRecord = lastSnapshot + 1;
+                // The snapshot covers every record before it, logged or not
+                for (int i = 0; i < lastSnapshot; i++) {
+                    if (batch.get(i).record != null) {
+                        awaitingSync.add(batch.get(i).record);
+                    }
+                }
+                writeOutsideLog();
+            } else if (log == null) {
+                // Without a log the snapshot was the only copy of the changes before it
+                fail(new IOException("snapshot not written"));
+            }
+        }
+        
+        for (int i = firstRecord; i < batch.size(); i++) {
+            Record record = batch.get(i).record;
+            if (record == null) {
+                continue;
+            }
+            if (log != null) {
+                try {
+                    record.writeTo(log);
+                } catch (IOException e) {
+                    System.err.println("Error writing mutation log: " + e.getMessage());
+                    fail(e);
+                    continue;
+                }
+            }
+            awaitingSync.add(record);
+        }
+        // Nothing waits for a sync without a log, or with BUFFERED durability
+        if (log == null || durability == Durability.BUFFERED) {
+            writeOutsideLog();
+        }
+        RECORDS_WRITTEN.add(batch.size());
+        BATCH_LATENCY.recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.records = batch.size();
+            // A snapshot in the batch truncates the log, leaving only what came after it
+            event.bytesWritten = Math.max(0, logSize() - logSizeBefore);
+            event.commit();
+        }
+    }
+    
+    // Write the outside-log parts of the records whose log records are on disk
+    private void writeOutsideLog() {
+        for (Record record : awaitingSync) {
+            try {
+                record.writeOutsideLog();
+            } catch (IOException e) {
+                System.err.println("Error writing sales ledger: " + e.getMessage());
+                fail(e);
+            }
+        }
+        awaitingSync.clear();
+    }
+    
+    private long logSize() {
+        try {
+            return log != null ? log.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private boolean writeSnapshot(Snapshot snapshot) {
+        long start = System.nanoTime();
+        boolean written = snapshots.write(snapshot);
+        SNAPSHOT_LATENCY.recordSince(start);
+        if (!written) {
+            return false;
+        }
+        if (log != null) {
+            try {
+                log.truncate();
+                // A log sealed by a failed compaction is older than the snapshot too
+                Files.deleteIfExists(MutationLog.sealedPath(log.getPath()));
+            } catch (IOException e) {
+                System.err.println("Error truncating mutation log: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+    
+    // Start a compaction when the log is large or the interval has passed, or collect a finished one
+    private void compactIfDue() {
+        if (compaction != null) {
+            if (compaction.isDone()) {
+                finishCompaction();
+            }
+            return;
+        }
+        
+        try {
+            Path sealed = MutationLog.sealedPath(log.getPath());
+            boolean retry = Files.exists(sealed);
+            long size = log.size();
+            boolean intervalPassed = System.nanoTime() - lastCompaction
+                    >= TimeUnit.MILLISECONDS.toNanos(compactionIntervalMillis);
+            if (!(size >= COMPACTION_LOG_BYTES || (intervalPassed && (size > 0 || retry)))) {
+                return;
+            }
+            
+            snapshots.compactionStarting(!retry);
+            if (!retry) {
+                sealed = log.rotate();
+            }
+            Path sealedLog = sealed;
+            compaction = compactor.submit(() -> {
+                long start = System.nanoTime();
+                snapshots.compact(sealedLog);
+                COMPACTION_LATENCY.recordSince(start);
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Error starting compaction: " + e.getMessage());
+            lastCompaction = System.nanoTime();
+        }
+    }
+    
+    private void finishCompaction() {
+        boolean succeeded = false;
+        try {
+            compaction.get();
+            succeeded = true;
+        } catch (ExecutionException e) {
+            System.err.println("Error compacting mutation log: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            // Only shutdown() stops the writer; the compaction is retried on the next start
+        }
+        compaction = null;
+        lastCompaction = System.nanoTime();
+        snapshots.compactionFinished(succeeded);
+    }
+    
+    private void sync() {
+        StoreEvents.Sync event = new StoreEvents.Sync();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            // The log first, as the records waiting for it are only then written outside it
+            if (log != null) {
+                log.sync();
+            }
+            writeOutsideLog();
+            snapshots.sync();
+        } catch (IOException e) {
+            System.err.println("Error syncing data files: " + e.getMessage());
+            fail(e);
+        }
+        SYNC_LATENCY.recordSince(start);
+        event.commit();
+    }
+    
+    private long durableId() {
+        synchronized (durableLock) {
+            return durableId;
+        }
+    }
+    
+    private void markDurable(long id) {
+        synchronized (durableLock) {
+            if (id > durableId && failure == null) {
+                durableId = id;
+                durableLock.notifyAll();
+            }
+        }
+    }
+    
+    // Stop counting anything as durable and wake the waiters to report it
+    private void fail(IOException e) {
+        synchronized (durableLock) {
+            if (failure == null) {
+                failure = e;
+                durableLock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bakery.model;
+
+/**
+ * PriceComparison compares a product's demand at its lowest and highest selling price
+ * Demand is the average quantity sold per day on which the product sold at that price
+ */
+public class PriceComparison {
+    private final String label;
+    private final double lowPrice;
+    private final double lowDailyQuantity;
+    private final double highPrice;
+    private final double highDailyQuantity;
+    
+    public PriceComparison(String label, double lowPrice, double lowDailyQuantity,
+                           double highPrice, double highDailyQuantity) {
+        this.label = label;
+        this.lowPrice = lowPrice;
+        this.lowDailyQuantity = lowDailyQuantity;
+        this.highPrice = highPrice;
+        this.highDailyQuantity = highDailyQuantity;
+    }
+    
+    // Getters
+    public String getLabel() {
+        return label;
+    }
+    
+    public double getLowPrice() {
+        return lowPrice;
+    }
+    
+    public double getLowDailyQuantity() {
+        return lowDailyQuantity;
+    }
+    
+    public double getHighPrice() {
+        return highPrice;
+    }
+    
+    public double getHighDailyQuantity() {
+        return highDailyQuantity;
+    }
+    
+    /**
+     * Arc price elasticity of demand between the two prices
+     * Below -1 demand is elastic (raising the price loses revenue), between -1 and 0 it is inelastic
+     */
+    public double getElasticity() {
+        double quantityChange = (highDailyQuantity - lowDailyQuantity) / ((highDailyQuantity + lowDailyQuantity) / 2);
+        double priceChange = (highPrice - lowPrice) / ((highPrice + lowPrice) / 2);
+        return priceChange != 0 ? quantityChange / priceChange : Double.NaN;
+    }
+    
+    @Override
+    public String toString() {
+        return "PriceComparison{" +
+                "label='" + label + '\'' +
+                ", lowPrice=" + lowPrice +
+                ", lowDailyQuantity=" + lowDailyQuantity +
+                ", highPrice=" + highPrice +
+                ", highDailyQuantity=" + highDailyQuantity +
+                '}';
+    }
+}
@@ -8,20 +8,31 @@ import java.io.Serializable;
  */
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Longest name or category the data files can hold comfortably
+    public static final int MAX_TEXT_LENGTH = 200;
     
     private int productId;
     private String productName;
     private String category;
     private double price;
-    private int quantity;
+    // Volatile: stock is updated by whichever till thread sells the product
+    private volatile int quantity;
+    // Stock below this level is reported as running low; 0 never is
+    private int reorderLevel;
     
     // Constructor
     public Product(int productId, String productName, String category, double price, int quantity) {
+        this(productId, productName, category, price, quantity, 0);
+    }
+    
+    public Product(int productId, String productName, String category, double price, int quantity,
+                   int reorderLevel) {
         this.productId = productId;
         this.productName = productName;
         this.category = category;
         this.price = price;
         this.quantity = quantity;
+        this.reorderLevel = reorderLevel;
     }
     
     // Getters and Setters
@@ -65,6 +76,37 @@ public class Product implements Serializable {
         this.quantity = quantity;
     }
     
+    public int getReorderLevel() {
+        return reorderLevel;
+    }
+    
+    public void setReorderLevel(int reorderLevel) {
+        this.reorderLevel = reorderLevel;
+    }
+    
+    // True when the stock has fallen below the reorder level
+    public boolean isLowStock() {
+        return quantity < reorderLevel;
+    }
+    
+    // Check the fields of a new or changed product; returns an error message, or null if they are valid
+    // Shared by the product form and the CSV import
+    public static String validate(String name, String category, double price, int quantity, int reorderLevel) {
+        if (name == null || name.trim().isEmpty() || category == null || category.trim().isEmpty()) {
+            return "Please fill all fields";
+        }
+        if (!(price > 0) || Double.isInfinite(price) || quantity < 0) {
+            return "Price must be positive and quantity cannot be negative";
+        }
+        if (reorderLevel < 0) {
+            return "Reorder level cannot be negative";
+        }
+        if (name.length() > MAX_TEXT_LENGTH || category.length() > MAX_TEXT_LENGTH) {
+            return "Name and category can be at most " + MAX_TEXT_LENGTH + " characters";
+        }
+        return null;
+    }
+    
     @Override
     public String toString() {
         return "Product{" +
@@ -73,6 +115,7 @@ public class Product implements Serializable {
                 ", category='" + category + '\'' +
                 ", price=" + price +
                 ", quantity=" + quantity +
+                ", reorderLevel=" + reorderLevel +
                 '}';
     }
 }
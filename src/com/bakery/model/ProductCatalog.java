@@ -0,0 +1,315 @@
+package com.bakery.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * ProductCatalog holds the products of the store as parallel primitive arrays
+ * One slot per product, in insertion order: id, price, quantity and reorder level are
+ * stored as primitives, the category as a code into a small dictionary, and the name as UTF-8
+ * bytes in one shared pool. A product costs a few dozen bytes and no objects of its
+ * own, so a catalog of a million products is a handful of arrays for the GC to trace.
+ *
+ * Product objects are made on demand by get and find, as detached copies of a slot;
+ * changing one does not change the catalog. Quantities are read and written with
+ * volatile semantics, so the stock level of a product can be updated under a stock
+ * lock while other threads read the catalog. Everything else is guarded by the owner.
+ */
+final class ProductCatalog {
+    private static final VarHandle QUANTITY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int MIN_CAPACITY = 16;
+    // The name pool is compacted once this many bytes, and at least half of it, are unused
+    private static final int MIN_POOL_GARBAGE = 1 << 16;
+    // Longest name the pool and the product file can hold, in UTF-8 bytes
+    static final int MAX_NAME_BYTES = 0xFFFF;
+    
+    private int size;
+    private int[] ids;
+    private double[] prices;
+    private int[] quantities;
+    private int[] reorderLevels;
+    private int[] categoryCodes;
+    private int[] nameOffsets;
+    private char[] nameLengths;
+    
+    // Pool bytes below poolSize are never changed, so copies can share the array
+    private byte[] namePool;
+    private int poolSize;
+    private int poolGarbage;
+    
+    private final List<String> categories;
+    private final Map<String, Integer> categoryIndex;
+    // Product id -> slot; built on first use in copies
+    private IntIndex index;
+    
+    ProductCatalog() {
+        this(MIN_CAPACITY);
+    }
+    
+    ProductCatalog(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        ids = new int[capacity];
+        prices = new double[capacity];
+        quantities = new int[capacity];
+        reorderLevels = new int[capacity];
+        categoryCodes = new int[capacity];
+        nameOffsets = new int[capacity];
+        nameLengths = new char[capacity];
+        namePool = new byte[capacity * 16];
+        categories = new ArrayList<>();
+        categoryIndex = new HashMap<>();
+        index = new IntIndex(capacity);
+    }
+    
+    private ProductCatalog(ProductCatalog source) {
+        size = source.size;
+        ids = Arrays.copyOf(source.ids, size);
+        prices = Arrays.copyOf(source.prices, size);
+        quantities = Arrays.copyOf(source.quantities, size);
+        reorderLevels = Arrays.copyOf(source.reorderLevels, size);
+        categoryCodes = Arrays.copyOf(source.categoryCodes, size);
+        nameOffsets = Arrays.copyOf(source.nameOffsets, size);
+        nameLengths = Arrays.copyOf(source.nameLengths, size);
+        namePool = source.namePool;
+        poolSize = source.poolSize;
+        poolGarbage = source.poolGarbage;
+        categories = new ArrayList<>(source.categories);
+        categoryIndex = new HashMap<>(source.categoryIndex);
+    }
+    
+    // A catalog of the given products; a later product replaces an earlier one with the same id
+    static ProductCatalog of(Collection<Product> products) {
+        ProductCatalog catalog = new ProductCatalog(products.size());
+        for (Product p : products) {
+            catalog.put(p);
+        }
+        return catalog;
+    }
+    
+    // Detached copy for a snapshot, which can be read on another thread while this one changes
+    ProductCatalog copy() {
+        return new ProductCatalog(this);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Slot of a product, or -1 if there is none
+    int position(int productId) {
+        return index().get(productId, -1);
+    }
+    
+    boolean contains(int productId) {
+        return position(productId) >= 0;
+    }
+    
+    int id(int position) {
+        return ids[position];
+    }
+    
+    double price(int position) {
+        return prices[position];
+    }
+    
+    int quantity(int position) {
+        return (int) QUANTITY.getVolatile(quantities, position);
+    }
+    
+    void setQuantity(int position, int quantity) {
+        QUANTITY.setVolatile(quantities, position, quantity);
+    }
+    
+    int reorderLevel(int position) {
+        return reorderLevels[position];
+    }
+    
+    String name(int position) {
+        return new String(namePool, nameOffsets[position], nameLengths[position], StandardCharsets.UTF_8);
+    }
+    
+    String category(int position) {
+        return categories.get(categoryCodes[position]);
+    }
+    
+    // Dictionary code of a product's category, an index into categoryNames
+    int categoryCode(int position) {
+        return categoryCodes[position];
+    }
+    
+    // Every category seen so far, by code; may include some no product uses any more
+    List<String> categoryNames() {
+        return categories;
+    }
+    
+    // Copy a product's name as UTF-8 into a buffer
+    void putName(int position, ByteBuffer out) {
+        out.put(namePool, nameOffsets[position], nameLengths[position]);
+    }
+    
+    int nameLength(int position) {
+        return nameLengths[position];
+    }
+    
+    // A new Product with the values of a slot
+    Product get(int position) {
+        return new Product(ids[position], name(position), category(position), prices[position], quantity(position),
+                reorderLevels[position]);
+    }
+    
+    // A new Product with the values of a product, or null if there is none
+    Product find(int productId) {
+        int position = position(productId);
+        return position >= 0 ? get(position) : null;
+    }
+    
+    // Read-only list of the products, made one at a time as they are read
+    List<Product> asList() {
+        return new Rows();
+    }
+    
+    // Insert a product, or replace the one with the same id in its slot
+    void put(Product product) {
+        byte[] name = product.getProductName().getBytes(StandardCharsets.UTF_8);
+        put(product.getProductId(), ByteBuffer.wrap(name), 0, name.length, product.getCategory(),
+                product.getPrice(), product.getQuantity(), product.getReorderLevel());
+    }
+    
+    /**
+     * Insert or replace a product whose name is UTF-8 bytes in a buffer
+     * Lets the product file be loaded without decoding every name into a String
+     */
+    void put(int productId, ByteBuffer nameSource, int nameOffset, int nameLength,
+             String category, double price, int quantity, int reorderLevel) {
+        if (nameLength > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Product name too long: " + nameLength + " bytes");
+        }
+        int position = position(productId);
+        if (position < 0) {
+            if (size == ids.length) {
+                grow();
+            }
+            position = size++;
+            ids[position] = productId;
+            index.put(productId, position);
+        } else {
+            poolGarbage += nameLengths[position];
+        }
+        prices[position] = price;
+        setQuantity(position, quantity);
+        reorderLevels[position] = reorderLevel;
+        categoryCodes[position] = categoryCode(category);
+        nameOffsets[position] = appendName(nameSource, nameOffset, nameLength);
+        nameLengths[position] = (char) nameLength;
+        compactNamesIfWasteful();
+    }
+    
+    // Remove a product, shifting the slots after it down (deletes are rare)
+    boolean remove(int productId) {
+        int position = position(productId);
+        if (position < 0) {
+            return false;
+        }
+        poolGarbage += nameLengths[position];
+        int moved = size - position - 1;
+        System.arraycopy(ids, position + 1, ids, position, moved);
+        System.arraycopy(prices, position + 1, prices, position, moved);
+        System.arraycopy(quantities, position + 1, quantities, position, moved);
+        System.arraycopy(reorderLevels, position + 1, reorderLevels, position, moved);
+        System.arraycopy(categoryCodes, position + 1, categoryCodes, position, moved);
+        System.arraycopy(nameOffsets, position + 1, nameOffsets, position, moved);
+        System.arraycopy(nameLengths, position + 1, nameLengths, position, moved);
+        size--;
+        index.remove(productId);
+        for (int i = position; i < size; i++) {
+            index.put(ids[i], i);
+        }
+        compactNamesIfWasteful();
+        return true;
+    }
+    
+    private IntIndex index() {
+        if (index == null) {
+            IntIndex built = new IntIndex(size);
+            for (int i = 0; i < size; i++) {
+                built.put(ids[i], i);
+            }
+            index = built;
+        }
+        return index;
+    }
+    
+    private int categoryCode(String category) {
+        Integer code = categoryIndex.get(category);
+        if (code == null) {
+            code = categories.size();
+            categories.add(category);
+            categoryIndex.put(category, code);
+        }
+        return code;
+    }
+    
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        reorderLevels = Arrays.copyOf(reorderLevels, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+    }
+    
+    private int appendName(ByteBuffer source, int offset, int length) {
+        if (poolSize + length > namePool.length) {
+            // A new array, since copies may still be reading the old one
+            namePool = Arrays.copyOf(namePool, Math.max(poolSize + length, namePool.length + (namePool.length >> 1)));
+        }
+        source.get(offset, namePool, poolSize, length);
+        int start = poolSize;
+        poolSize += length;
+        return start;
+    }
+    
+    // Rewrite the pool without the names of replaced and removed products
+    private void compactNamesIfWasteful() {
+        if (poolGarbage < MIN_POOL_GARBAGE || poolGarbage < poolSize / 2) {
+            return;
+        }
+        byte[] pool = new byte[Math.max(MIN_CAPACITY, poolSize - poolGarbage)];
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(namePool, nameOffsets[i], pool, used, nameLengths[i]);
+            nameOffsets[i] = used;
+            used += nameLengths[i];
+        }
+        namePool = pool;
+        poolSize = used;
+        poolGarbage = 0;
+    }
+    
+    private final class Rows extends AbstractList<Product> implements RandomAccess {
+        @Override
+        public Product get(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("Position " + position + " of " + size);
+            }
+            return ProductCatalog.this.get(position);
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
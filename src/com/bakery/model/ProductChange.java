@@ -0,0 +1,81 @@
+package com.bakery.model;
+
+/**
+ * ProductChange describes one change to the product catalog
+ * Published by DataStore to its ProductListeners
+ */
+public class ProductChange {
+    public enum Type {
+        // A new product; getProduct() has its details
+        ADDED,
+        // A product was edited or replaced; getProduct() has its new details
+        UPDATED,
+        // The product was deleted
+        REMOVED,
+        // Only the stock level changed, e.g. by a sale; getQuantity() has the new level
+        STOCK_CHANGED,
+        // Changes may have been missed, e.g. after a reconnect; reload the whole catalog
+        RELOAD
+    }
+    
+    private final Type type;
+    private final int productId;
+    private final Product product;
+    private final int quantity;
+    
+    private ProductChange(Type type, int productId, Product product, int quantity) {
+        this.type = type;
+        this.productId = productId;
+        this.product = product;
+        this.quantity = quantity;
+    }
+    
+    // product should be a copy that the store will not change later
+    static ProductChange added(Product product) {
+        return new ProductChange(Type.ADDED, product.getProductId(), product, product.getQuantity());
+    }
+    
+    static ProductChange updated(Product product) {
+        return new ProductChange(Type.UPDATED, product.getProductId(), product, product.getQuantity());
+    }
+    
+    static ProductChange removed(int productId) {
+        return new ProductChange(Type.REMOVED, productId, null, 0);
+    }
+    
+    static ProductChange stockChanged(int productId, int quantity) {
+        return new ProductChange(Type.STOCK_CHANGED, productId, null, quantity);
+    }
+    
+    static ProductChange reload() {
+        return new ProductChange(Type.RELOAD, 0, null, 0);
+    }
+    
+    // Getters
+    public Type getType() {
+        return type;
+    }
+    
+    public int getProductId() {
+        return productId;
+    }
+    
+    // Details of an added or updated product, null for other changes
+    public Product getProduct() {
+        return product;
+    }
+    
+    // New stock level
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductChange{" +
+                "type=" + type +
+                ", productId=" + productId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,335 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * ProductCsv reads and writes the product catalog as CSV
+ * The first line names the columns: any of id, name, category, price, quantity and reorder
+ *
+ * Files are streamed through a buffered channel one row at a time, so memory use does not
+ * depend on the file size. Fields may be quoted ("" inside quotes is a quote), but a field
+ * cannot span lines. Rows with the id of a product update it and keep its current value for any
+ * missing or empty column, so a price list can be just "id,price". Other rows add a new product,
+ * under their id if they have one, and need every other column but reorder, the reorder level,
+ * which defaults to 0.
+ */
+class ProductCsv {
+    private static final String[] COLUMNS = {"id", "name", "category", "price", "quantity", "reorder"};
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int CATEGORY = 2;
+    private static final int PRICE = 3;
+    private static final int QUANTITY = 4;
+    private static final int REORDER = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_PAGE_SIZE = 1000;
+    
+    /**
+     * One data row as read from the file: the values of its columns, or why it cannot be read
+     * Parsed without looking at the catalog, so a whole file can be read before taking any lock
+     */
+    static final class Fields {
+        final int line;
+        // 0 and null for missing or empty columns
+        final int id;
+        final String name;
+        final String category;
+        final Double price;
+        final Integer quantity;
+        final Integer reorderLevel;
+        final String error;
+        
+        Fields(int line, int id, String name, String category, Double price, Integer quantity,
+               Integer reorderLevel) {
+            this.line = line;
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.price = price;
+            this.quantity = quantity;
+            this.reorderLevel = reorderLevel;
+            this.error = null;
+        }
+        
+        Fields(int line, String error) {
+            this.line = line;
+            this.id = 0;
+            this.name = null;
+            this.category = null;
+            this.price = null;
+            this.quantity = null;
+            this.reorderLevel = null;
+            this.error = error;
+        }
+        
+        /**
+         * The row applied to the current product with its id, or to a new one if current is null
+         * A new product keeps the row's id, or has id 0 if the row has none
+         */
+        Row resolve(Product current) {
+            if (error != null) {
+                return new Row(line, null, false, error);
+            }
+            if (current == null && (name == null || category == null || price == null || quantity == null)) {
+                return new Row(line, null, false, "New products need a name, category, price and quantity");
+            }
+            String newName = name != null ? name : current.getProductName();
+            String newCategory = category != null ? category : current.getCategory();
+            double newPrice = price != null ? price : current.getPrice();
+            int newQuantity = quantity != null ? quantity : current.getQuantity();
+            int newReorderLevel = reorderLevel != null ? reorderLevel
+                    : current != null ? current.getReorderLevel() : 0;
+            String invalid = Product.validate(newName, newCategory, newPrice, newQuantity, newReorderLevel);
+            if (invalid != null) {
+                return new Row(line, null, false, invalid);
+            }
+            int productId = current != null ? current.getProductId() : id;
+            return new Row(line, new Product(productId, newName, newCategory, newPrice, newQuantity,
+                    newReorderLevel), current == null, null);
+        }
+    }
+    
+    /**
+     * One data row resolved against the catalog: the product it leaves, or why it is invalid
+     */
+    static final class Row {
+        final int line;
+        // Its id is 0 for a new product the file gives no id
+        final Product product;
+        // Whether the product is new to the catalog
+        final boolean added;
+        final String error;
+        
+        Row(int line, Product product, boolean added, String error) {
+            this.line = line;
+            this.product = product;
+            this.added = added;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * Streaming reader of an import file
+     */
+    static final class Reader implements Closeable {
+        private final BufferedReader in;
+        // Field position of each column, or -1 if the file does not have it
+        private final int[] positions = new int[COLUMNS.length];
+        private int fieldCount;
+        private int line;
+        
+        Reader(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT), BUFFER_SIZE), BUFFER_SIZE);
+            try {
+                readHeader();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        
+        private void readHeader() throws IOException {
+            String header = in.readLine();
+            line = 1;
+            if (header == null) {
+                throw new IOException("The file is empty");
+            }
+            // Byte order mark written by spreadsheet programs
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            Arrays.fill(positions, -1);
+            List<String> names = split(header);
+            fieldCount = names.size();
+            for (int i = 0; i < names.size(); i++) {
+                int column = columnOf(names.get(i));
+                if (column < 0) {
+                    throw new IOException("Unknown column \"" + names.get(i) + "\" in the header; expected "
+                            + String.join(",", COLUMNS));
+                }
+                if (positions[column] >= 0) {
+                    throw new IOException("Column \"" + COLUMNS[column] + "\" appears twice in the header");
+                }
+                positions[column] = i;
+            }
+            if (positions[ID] < 0 && positions[NAME] < 0) {
+                throw new IOException("The header must have an id or a name column");
+            }
+        }
+        
+        /**
+         * Next data row, or null at the end of the file
+         */
+        Fields next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.isBlank());
+            
+            List<String> fields;
+            try {
+                fields = split(text);
+            } catch (IllegalArgumentException e) {
+                return new Fields(line, e.getMessage());
+            }
+            if (fields.size() != fieldCount) {
+                return new Fields(line, "Expected " + fieldCount + " fields but found " + fields.size());
+            }
+            
+            int id = 0;
+            String idText = field(fields, ID);
+            if (idText != null) {
+                try {
+                    id = Integer.parseInt(idText);
+                } catch (NumberFormatException e) {
+                    return new Fields(line, "Invalid ID: " + idText);
+                }
+                if (id <= 0) {
+                    return new Fields(line, "Invalid ID: " + idText);
+                }
+            }
+            
+            String priceText = field(fields, PRICE);
+            String quantityText = field(fields, QUANTITY);
+            String reorderText = field(fields, REORDER);
+            Double price;
+            Integer quantity;
+            Integer reorderLevel;
+            try {
+                price = priceText != null ? Double.parseDouble(priceText) : null;
+            } catch (NumberFormatException e) {
+                return new Fields(line, "Invalid price: " + priceText);
+            }
+            try {
+                quantity = quantityText != null ? Integer.parseInt(quantityText) : null;
+            } catch (NumberFormatException e) {
+                return new Fields(line, "Invalid quantity: " + quantityText);
+            }
+            try {
+                reorderLevel = reorderText != null ? Integer.parseInt(reorderText) : null;
+            } catch (NumberFormatException e) {
+                return new Fields(line, "Invalid reorder level: " + reorderText);
+            }
+            return new Fields(line, id, field(fields, NAME), field(fields, CATEGORY), price, quantity, reorderLevel);
+        }
+        
+        // Trimmed value of a column, or null if it is missing or empty
+        private String field(List<String> fields, int column) {
+            if (positions[column] < 0) {
+                return null;
+            }
+            String value = fields.get(positions[column]).trim();
+            return value.isEmpty() ? null : value;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    private ProductCsv() {
+    }
+    
+    private static int columnOf(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // Split one line into fields, removing quotes
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    // Write the given products with all columns, replacing the file atomically
+    // The products are fetched a page at a time; ids whose product is gone are skipped
+    // Returns the number of products written
+    static int write(Path path, int[] productIds, Function<int[], List<Product>> fetch) throws IOException {
+        int[] written = {0};
+        AtomicFiles.write(path, stream -> {
+            Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+            for (int start = 0; start < productIds.length; start += WRITE_PAGE_SIZE) {
+                int end = Math.min(productIds.length, start + WRITE_PAGE_SIZE);
+                for (Product p : fetch.apply(Arrays.copyOfRange(productIds, start, end))) {
+                    if (p == null) {
+                        continue;
+                    }
+                    out.write(Integer.toString(p.getProductId()));
+                    out.write(',');
+                    out.write(quote(p.getProductName()));
+                    out.write(',');
+                    out.write(quote(p.getCategory()));
+                    out.write(',');
+                    out.write(Double.toString(p.getPrice()));
+                    out.write(',');
+                    out.write(Integer.toString(p.getQuantity()));
+                    out.write(',');
+                    out.write(Integer.toString(p.getReorderLevel()));
+                    out.write('\n');
+                    written[0]++;
+                }
+            }
+            out.flush();
+        });
+        return written[0];
+    }
+    
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.trim().length() == value.length()) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,332 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * ProductFile reads and writes the binary product snapshot (products.bin)
+ *
+ * Layout (big-endian):
+ *   header   - magic, version, product count, string count, records offset,
+ *              next product id (version 2+), string table CRC32 (version 3+) (32 bytes)
+ *   strings  - string table of product names and categories, each a u16 length plus UTF-8 bytes,
+ *              padded to a multiple of 4 bytes (version 3+)
+ *   records  - one fixed-width record per product: id, name index, category index, quantity, price,
+ *              reorder level (version 4+), CRC32 of the record without its quantity (version 3+)
+ *
+ * Because records are fixed width, a product's stock level sits at a known offset
+ * and can be rewritten in place without touching the rest of the file. The quantity is
+ * left out of the record checksum so that in-place update stays a single aligned 4-byte
+ * write, which cannot be torn. Files are replaced as a whole through AtomicFiles.
+ */
+class ProductFile implements Closeable {
+    static final int MAGIC = 0x424B5046; // "BKPF"
+    static final int VERSION = 4;
+    // Version 1 files have no id sequence; it is derived from the largest id instead
+    // Versions 1 and 2 have no checksums, and versions before 4 no reorder levels
+    private static final int MIN_VERSION = 1;
+    private static final int CHECKSUM_VERSION = 3;
+    private static final int REORDER_VERSION = 4;
+    
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+    private static final int VERSION_3_RECORD_SIZE = 28;
+    private static final int UNCHECKED_RECORD_SIZE = 24;
+    private static final int QUANTITY_OFFSET = 12;
+    private static final int PRICE_OFFSET = 16;
+    private static final int REORDER_OFFSET = 24;
+    
+    private final FileChannel channel;
+    private final long recordsOffset;
+    private final int recordSize;
+    private final IntIndex recordIndex;
+    private final ByteBuffer quantityBuffer = ByteBuffer.allocate(4);
+    private boolean dirty;
+    
+    /**
+     * Products and id sequence read from a file
+     */
+    static final class Contents {
+        final ProductCatalog products;
+        final int nextProductId;
+        // Records dropped because their checksum did not match
+        final int damagedRecords;
+        
+        Contents(ProductCatalog products, int nextProductId, int damagedRecords) {
+            this.products = products;
+            this.nextProductId = nextProductId;
+            this.damagedRecords = damagedRecords;
+        }
+    }
+    
+    private ProductFile(FileChannel channel, long recordsOffset, int recordSize, IntIndex recordIndex) {
+        this.channel = channel;
+        this.recordsOffset = recordsOffset;
+        this.recordSize = recordSize;
+        this.recordIndex = recordIndex;
+    }
+    
+    // Read all products through a memory-mapped view of the file
+    static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return parse(buffer);
+            } finally {
+                unmap(buffer);
+            }
+        }
+    }
+    
+    private static Contents parse(ByteBuffer buffer) throws IOException {
+        int version = checkHeader(buffer);
+        int recordSize = recordSize(version);
+        int productCount = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        long recordsOffset = buffer.getLong(16);
+        if (productCount < 0 || stringCount < 0 || recordsOffset < HEADER_SIZE
+                || recordsOffset + (long) productCount * recordSize > buffer.limit()) {
+            throw new IOException("Product file is truncated");
+        }
+        
+        if (version >= CHECKSUM_VERSION) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(HEADER_SIZE).limit((int) recordsOffset));
+            if ((int) crc.getValue() != buffer.getInt(28)) {
+                throw new IOException("Product file string table is corrupt");
+            }
+        }
+        
+        // Only the string offsets are read here; names are copied into the catalog as UTF-8
+        // and only the strings used as categories are decoded
+        int[] stringOffsets = new int[stringCount];
+        int[] stringLengths = new int[stringCount];
+        int position = HEADER_SIZE;
+        for (int i = 0; i < stringCount; i++) {
+            if (position + 2 > recordsOffset) {
+                throw new IOException("Product file string table is truncated");
+            }
+            stringLengths[i] = Short.toUnsignedInt(buffer.getShort(position));
+            stringOffsets[i] = position + 2;
+            position += 2 + stringLengths[i];
+        }
+        if (position > recordsOffset) {
+            throw new IOException("Product file string table is truncated");
+        }
+        String[] categories = new String[stringCount];
+        
+        ProductCatalog products = new ProductCatalog(productCount);
+        int base = (int) recordsOffset;
+        int maxId = 0;
+        int damaged = 0;
+        for (int i = 0; i < productCount; i++) {
+            int offset = base + i * recordSize;
+            int nameIndex = buffer.getInt(offset + 4);
+            int categoryIndex = buffer.getInt(offset + 8);
+            if ((version >= CHECKSUM_VERSION
+                        && recordChecksum(buffer, offset, recordSize) != buffer.getInt(offset + recordSize - 4))
+                    || nameIndex < 0 || nameIndex >= stringCount
+                    || categoryIndex < 0 || categoryIndex >= stringCount) {
+                damaged++;
+                continue;
+            }
+            String category = categories[categoryIndex];
+            if (category == null) {
+                category = string(buffer, stringOffsets[categoryIndex], stringLengths[categoryIndex]);
+                categories[categoryIndex] = category;
+            }
+            int id = buffer.getInt(offset);
+            products.put(id, buffer, stringOffsets[nameIndex], stringLengths[nameIndex], category,
+                    buffer.getDouble(offset + PRICE_OFFSET), buffer.getInt(offset + QUANTITY_OFFSET),
+                    version >= REORDER_VERSION ? buffer.getInt(offset + REORDER_OFFSET) : 0);
+            maxId = Math.max(maxId, id);
+        }
+        
+        int nextProductId = version >= 2 ? buffer.getInt(24) : 0;
+        return new Contents(products, Math.max(nextProductId, maxId + 1), damaged);
+    }
+    
+    private static String string(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Returns the file version
+    private static int checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a product file");
+        }
+        int version = buffer.getInt(4);
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported product file version: " + version);
+        }
+        return version;
+    }
+    
+    private static int recordSize(int version) {
+        if (version >= REORDER_VERSION) {
+            return RECORD_SIZE;
+        }
+        return version >= CHECKSUM_VERSION ? VERSION_3_RECORD_SIZE : UNCHECKED_RECORD_SIZE;
+    }
+    
+    // CRC32 of every field of a record but its quantity, which changes in place, and the checksum itself
+    private static int recordChecksum(ByteBuffer buffer, int offset, int recordSize) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(offset).limit(offset + QUANTITY_OFFSET));
+        crc.update(buffer.duplicate().position(offset + PRICE_OFFSET).limit(offset + recordSize - 4));
+        return (int) crc.getValue();
+    }
+    
+    // Write a complete snapshot of the given products
+    static void write(Path path, List<Product> products, int nextProductId) throws IOException {
+        write(path, ProductCatalog.of(products), nextProductId);
+    }
+    
+    /**
+     * Write a complete snapshot of a catalog
+     * The string table holds the category dictionary followed by every name, copied from
+     * the catalog's name pool as it is, so no product or String is made along the way
+     */
+    static void write(Path path, ProductCatalog products, int nextProductId) throws IOException {
+        List<String> categories = products.categoryNames();
+        int stringCount = categories.size() + products.size();
+        
+        // Encode the string table up front; its checksum goes in the header
+        long tableSize = 0;
+        byte[][] categoryBytes = new byte[categories.size()][];
+        for (int i = 0; i < categoryBytes.length; i++) {
+            categoryBytes[i] = categories.get(i).getBytes(StandardCharsets.UTF_8);
+            if (categoryBytes[i].length > 0xFFFF) {
+                throw new IOException("String too long for product file: " + categories.get(i).substring(0, 40) + "...");
+            }
+            tableSize += 2 + categoryBytes[i].length;
+        }
+        for (int i = 0; i < products.size(); i++) {
+            tableSize += 2 + products.nameLength(i);
+        }
+        // Align records so quantities sit on 4-byte boundaries
+        tableSize = (tableSize + 3) & ~3L;
+        if (HEADER_SIZE + tableSize + (long) products.size() * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Too many products for one product file");
+        }
+        ByteBuffer table = ByteBuffer.allocate((int) tableSize);
+        for (byte[] bytes : categoryBytes) {
+            table.putShort((short) bytes.length).put(bytes);
+        }
+        for (int i = 0; i < products.size(); i++) {
+            table.putShort((short) products.nameLength(i));
+            products.putName(i, table);
+        }
+        long recordsOffset = HEADER_SIZE + tableSize;
+        CRC32 tableCrc = new CRC32();
+        tableCrc.update(table.array());
+        
+        AtomicFiles.write(path, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(products.size());
+            out.writeInt(stringCount);
+            out.writeLong(recordsOffset);
+            out.writeInt(nextProductId);
+            out.writeInt((int) tableCrc.getValue());
+            out.write(table.array());
+            
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            for (int i = 0; i < products.size(); i++) {
+                record.clear();
+                record.putInt(products.id(i))
+                      .putInt(categoryBytes.length + i)
+                      .putInt(products.categoryCode(i))
+                      .putInt(products.quantity(i))
+                      .putDouble(products.price(i))
+                      .putInt(products.reorderLevel(i))
+                      .putInt(RECORD_SIZE - 4, recordChecksum(record, 0, RECORD_SIZE));
+                out.write(record.array());
+            }
+            out.flush();
+        });
+    }
+    
+    // Open an existing file for in-place stock updates
+    static ProductFile openForUpdate(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                int recordSize = recordSize(checkHeader(buffer));
+                int productCount = buffer.getInt(8);
+                long recordsOffset = buffer.getLong(16);
+                if (productCount < 0 || recordsOffset + (long) productCount * recordSize > buffer.limit()) {
+                    throw new IOException("Product file is truncated");
+                }
+                
+                // Map product id to record number
+                IntIndex index = new IntIndex(productCount);
+                for (int i = 0; i < productCount; i++) {
+                    index.put(buffer.getInt((int) recordsOffset + i * recordSize), i);
+                }
+                return new ProductFile(channel, recordsOffset, recordSize, index);
+            } finally {
+                unmap(buffer);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Overwrite the stock level of a product; returns false if the product is not in this file
+    boolean setQuantity(int productId, int quantity) throws IOException {
+        int record = recordIndex.get(productId, -1);
+        if (record < 0) {
+            return false;
+        }
+        quantityBuffer.clear();
+        quantityBuffer.putInt(0, quantity);
+        channel.write(quantityBuffer, recordsOffset + (long) record * recordSize + QUANTITY_OFFSET);
+        dirty = true;
+        return true;
+    }
+    
+    // Force in-place updates to disk
+    void sync() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+    
+    /**
+     * Release a mapping right away instead of waiting for GC
+     * Windows refuses to replace a file while a mapping of it is still open
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available; the mapping is released when the buffer is collected
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.bakery.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ProductImport is the outcome of importing a product CSV file
+ * Built by DataStore.importProducts
+ */
+public class ProductImport {
+    // Only the first errors are kept; getErrorCount counts them all
+    static final int MAX_ERRORS = 100;
+    
+    private int rowCount;
+    private int addedCount;
+    private int updatedCount;
+    private int errorCount;
+    private boolean applied;
+    private final List<String> errors = new ArrayList<>();
+    
+    ProductImport() {
+    }
+    
+    ProductImport(int rowCount, int addedCount, int updatedCount, int errorCount, boolean applied,
+                  List<String> errors) {
+        this.rowCount = rowCount;
+        this.addedCount = addedCount;
+        this.updatedCount = updatedCount;
+        this.errorCount = errorCount;
+        this.applied = applied;
+        this.errors.addAll(errors);
+    }
+    
+    // Count a row read from the file
+    void count(ProductCsv.Row row) {
+        rowCount++;
+        if (row.error != null) {
+            errorCount++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("Line " + row.line + ": " + row.error);
+            }
+        } else if (row.added) {
+            addedCount++;
+        } else {
+            updatedCount++;
+        }
+    }
+    
+    void setApplied(boolean applied) {
+        this.applied = applied;
+    }
+    
+    // Getters
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    // Products added, or that would be added if the import was not applied
+    public int getAddedCount() {
+        return addedCount;
+    }
+    
+    // Products updated, or that would be updated if the import was not applied
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+    
+    public int getErrorCount() {
+        return errorCount;
+    }
+    
+    // False when invalid rows stopped the import and nothing was changed
+    public boolean isApplied() {
+        return applied;
+    }
+    
+    // "Line n: reason" for the first invalid rows
+    public List<String> getErrors() {
+        return errors;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductImport{" +
+                "rowCount=" + rowCount +
+                ", addedCount=" + addedCount +
+                ", updatedCount=" + updatedCount +
+                ", errorCount=" + errorCount +
+                ", applied=" + applied +
+                '}';
+    }
+}
@@ -0,0 +1,16 @@
+package com.bakery.model;
+
+import java.util.List;
+
+/**
+ * ProductListener is told about every change to the product catalog
+ * Registered with DataStore.addProductListener
+ *
+ * Called on the thread that made the change while the store still holds its locks, so the
+ * changes to a product always arrive in the order they were made. Implementations must
+ * return quickly and must not call back into the DataStore; hand the work to another thread.
+ */
+public interface ProductListener {
+    // One or more changes, oldest first; an order or an import arrives as one batch
+    void productsChanged(List<ProductChange> changes);
+}
@@ -0,0 +1,159 @@
+package com.bakery.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * ProductSearchIndex is a prefix index over product names, categories and IDs
+ * DataStore keeps it up to date as products are added, updated and deleted
+ *
+ * Indexed words are kept in a sorted dictionary, so every word starting with a
+ * given prefix sits in one contiguous range. Each word maps to the IDs of the
+ * products containing it. A query matches the products that have, for every
+ * query word, some indexed word starting with it.
+ *
+ * Rare words keep their IDs in a small hash set; once a word is common enough
+ * its IDs switch to a bitmap, so broad prefixes are answered by OR-ing bitmaps.
+ */
+class ProductSearchIndex {
+    private static final int BITMAP_THRESHOLD = 256;
+    
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    
+    /**
+     * IDs of the products containing one word
+     */
+    private static final class Posting {
+        private IntIndex ids = new IntIndex(1);
+        private BitSet bitmap;
+        private int size;
+        
+        void add(int id) {
+            if (bitmap != null) {
+                if (!bitmap.get(id)) {
+                    bitmap.set(id);
+                    size++;
+                }
+                return;
+            }
+            if (!ids.containsKey(id)) {
+                ids.put(id, id);
+                size++;
+                if (size >= BITMAP_THRESHOLD) {
+                    bitmap = new BitSet();
+                    ids.forEachKey(bitmap::set);
+                    ids = null;
+                }
+            }
+        }
+        
+        boolean remove(int id) {
+            boolean removed;
+            if (bitmap != null) {
+                removed = bitmap.get(id);
+                bitmap.clear(id);
+            } else {
+                removed = ids.remove(id);
+            }
+            if (removed) {
+                size--;
+            }
+            return removed;
+        }
+        
+        void addTo(BitSet matches) {
+            if (bitmap != null) {
+                matches.or(bitmap);
+            } else {
+                ids.forEachKey(matches::set);
+            }
+        }
+    }
+    
+    // Index a product's words (products with negative IDs are not searchable)
+    void add(Product product) {
+        add(product.getProductId(), product.getProductName(), product.getCategory());
+    }
+    
+    synchronized void add(int id, String name, String category) {
+        if (id < 0) {
+            return;
+        }
+        for (String word : words(id, name, category)) {
+            postings.computeIfAbsent(word, w -> new Posting()).add(id);
+        }
+    }
+    
+    // Drop a product's words
+    void remove(Product product) {
+        remove(product.getProductId(), product.getProductName(), product.getCategory());
+    }
+    
+    synchronized void remove(int id, String name, String category) {
+        if (id < 0) {
+            return;
+        }
+        for (String word : words(id, name, category)) {
+            Posting posting = postings.get(word);
+            if (posting != null && posting.remove(id) && posting.size == 0) {
+                postings.remove(word);
+            }
+        }
+    }
+    
+    synchronized void clear() {
+        postings.clear();
+    }
+    
+    // IDs of the products matching every word of the query (empty query matches nothing)
+    synchronized BitSet search(String query) {
+        BitSet result = null;
+        for (String term : tokenize(query)) {
+            BitSet matches = new BitSet();
+            for (Posting posting : postings.subMap(term, true, term + Character.MAX_VALUE, true).values()) {
+                posting.addTo(matches);
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+    
+    private static Set<String> words(int id, String name, String category) {
+        Set<String> words = new LinkedHashSet<>(tokenize(name));
+        words.addAll(tokenize(category));
+        words.add(String.valueOf(id));
+        return words;
+    }
+    
+    // Split text into lower-case words of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,9 @@
+package com.bakery.model;
+
+/**
+ * ProductSort is the column a product query is ordered by
+ * Products that tie are ordered by ID
+ */
+public enum ProductSort {
+    ID, NAME, CATEGORY, PRICE, QUANTITY
+}
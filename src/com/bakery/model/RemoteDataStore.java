@@ -0,0 +1,500 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RemoteDataStore is a till's view of a DataStore hosted by a StoreServer
+ * Every call is a request over one shared TCP connection (see StoreProtocol)
+ *
+ * Calls from different threads are pipelined: each request is sent as soon as it is
+ * made and a reader thread hands every response to the thread waiting for it, so a
+ * running report does not hold up stock updates. When the server cannot be reached,
+ * a call prints an error and returns an empty result, and the next call reconnects.
+ * Products returned are copies; changes to them only reach the server through updateProduct.
+ * Once a ProductListener is added the server pushes every product change to this till.
+ */
+class RemoteDataStore extends DataStore {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long REQUEST_TIMEOUT_MILLIS = 30000;
+    private static final long CANCEL_POLL_MILLIS = 100;
+    private static final long IMPORT_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int UPLOAD_CHUNK_SIZE = 256 * 1024;
+    
+    private final InetSocketAddress address;
+    // Latest server mutation id seen in any response
+    private final AtomicLong lastMutationId = new AtomicLong();
+    
+    private final Object connectLock = new Object();
+    private Connection connection;
+    private boolean closed;
+    
+    /**
+     * Writes the arguments of a request
+     */
+    private interface Arguments {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+    
+    /**
+     * Reads the result of a response
+     */
+    private interface Result<T> {
+        T readFrom(DataInputStream in) throws IOException;
+    }
+    
+    // server is "host" or "host:port"
+    RemoteDataStore(String server) {
+        int colon = server.lastIndexOf(':');
+        String host = colon >= 0 ? server.substring(0, colon) : server;
+        int port = colon >= 0 ? Integer.parseInt(server.substring(colon + 1)) : StoreProtocol.DEFAULT_PORT;
+        address = InetSocketAddress.createUnresolved(host, port);
+    }
+    
+    @Override
+    void close() {
+        synchronized (connectLock) {
+            closed = true;
+            if (connection != null) {
+                connection.close(new IOException("Store has been shut down"));
+                connection = null;
+            }
+        }
+    }
+    
+    // The server starts pushing changes once the first listener is added
+    @Override
+    public void addProductListener(ProductListener listener) {
+        super.addProductListener(listener);
+        try {
+            connection().subscribe();
+        } catch (IOException e) {
+            // The next call reconnects and subscribes
+            System.err.println("Error contacting inventory server: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public List<Product> getProducts() {
+        return call(StoreProtocol.GET_PRODUCTS, out -> { }, StoreProtocol::readProducts, new ArrayList<>());
+    }
+    
+    @Override
+    public void addProduct(Product product) {
+        call(StoreProtocol.ADD_PRODUCT, out -> StoreProtocol.writeProduct(out, product), in -> null, null);
+    }
+    
+    @Override
+    public void updateProduct(Product updatedProduct) {
+        call(StoreProtocol.UPDATE_PRODUCT, out -> StoreProtocol.writeProduct(out, updatedProduct), in -> null, null);
+    }
+    
+    @Override
+    public void deleteProduct(int productId) {
+        call(StoreProtocol.DELETE_PRODUCT, out -> out.writeInt(productId), in -> null, null);
+    }
+    
+    @Override
+    public Product findProductById(int productId) {
+        return call(StoreProtocol.FIND_PRODUCT, out -> out.writeInt(productId),
+                StoreProtocol::readOptionalProduct, null);
+    }
+    
+    @Override
+    public BitSet searchProductIds(String query) {
+        return call(StoreProtocol.SEARCH_PRODUCTS, out -> out.writeUTF(query),
+                StoreProtocol::readBitSet, new BitSet());
+    }
+    
+    @Override
+    public int[] queryProductIds(String query, ProductSort sort, boolean ascending) {
+        return call(StoreProtocol.QUERY_PRODUCTS, out -> {
+            out.writeUTF(query != null ? query : "");
+            out.writeByte(sort.ordinal());
+            out.writeBoolean(ascending);
+        }, StoreProtocol::readIds, new int[0]);
+    }
+    
+    @Override
+    public List<Product> getProductsById(int[] productIds) {
+        return call(StoreProtocol.GET_PRODUCTS_BY_ID, out -> StoreProtocol.writeIds(out, productIds),
+                StoreProtocol::readOptionalProducts, new ArrayList<>(Collections.nCopies(productIds.length, null)));
+    }
+    
+    @Override
+    public List<Product> getLowStockProducts() {
+        return call(StoreProtocol.LOW_STOCK_PRODUCTS, out -> { }, StoreProtocol::readProducts, new ArrayList<>());
+    }
+    
+    @Override
+    public boolean updateStock(int productId, int quantity) {
+        StoreEvents.StockUpdate event = new StoreEvents.StockUpdate();
+        event.begin();
+        long start = System.nanoTime();
+        boolean updated = call(StoreProtocol.UPDATE_STOCK, out -> {
+            out.writeInt(productId);
+            out.writeInt(quantity);
+        }, DataInputStream::readBoolean, false);
+        UPDATE_STOCK_LATENCY.recordSince(start);
+        commitStockUpdate(event, productId, quantity, updated);
+        return updated;
+    }
+    
+    @Override
+    public boolean placeOrder(Order order) {
+        if (order.isEmpty()) {
+            return false;
+        }
+        StoreEvents.Sale event = new StoreEvents.Sale();
+        event.begin();
+        long start = System.nanoTime();
+        boolean placed = call(StoreProtocol.PLACE_ORDER, out -> StoreProtocol.writeOrder(out, order), in -> {
+            boolean accepted = in.readBoolean();
+            long orderId = in.readLong();
+            if (accepted) {
+                order.setOrderId(orderId);
+            }
+            return accepted;
+        }, false);
+        PLACE_ORDER_LATENCY.recordSince(start);
+        (placed ? ORDERS_PLACED : ORDERS_REJECTED).increment();
+        commitSale(event, order, placed);
+        return placed;
+    }
+    
+    @Override
+    public void addSale(double amount, int quantity) {
+        call(StoreProtocol.ADD_SALE, out -> {
+            out.writeDouble(amount);
+            out.writeInt(quantity);
+        }, in -> null, null);
+    }
+    
+    @Override
+    public List<SaleEntry> getSales(LocalDateTime from, LocalDateTime to) {
+        return call(StoreProtocol.GET_SALES, out -> {
+            StoreProtocol.writeDateTime(out, from);
+            StoreProtocol.writeDateTime(out, to);
+        }, StoreProtocol::readSales, new ArrayList<>());
+    }
+    
+    @Override
+    public List<SalesTotal> getSalesByProduct() {
+        return call(StoreProtocol.SALES_BY_PRODUCT, out -> { }, StoreProtocol::readTotals, new ArrayList<>());
+    }
+    
+    @Override
+    public List<SalesTotal> getSalesByCategory() {
+        return call(StoreProtocol.SALES_BY_CATEGORY, out -> { }, StoreProtocol::readTotals, new ArrayList<>());
+    }
+    
+    @Override
+    public List<SalesTotal> getSalesByHour(LocalDate day) {
+        return call(StoreProtocol.SALES_BY_HOUR, out -> StoreProtocol.writeDate(out, day),
+                StoreProtocol::readTotals, new ArrayList<>());
+    }
+    
+    @Override
+    public List<SalesTotal> getSalesByDay(LocalDate from, LocalDate to) {
+        return call(StoreProtocol.SALES_BY_DAY, out -> {
+            StoreProtocol.writeDate(out, from);
+            StoreProtocol.writeDate(out, to);
+        }, StoreProtocol::readTotals, new ArrayList<>());
+    }
+    
+    // Runs on the server; progress only sees the start and the end, and cancelling
+    // stops the wait here while the server finishes the report
+    @Override
+    public SalesReport runSalesReport(LocalDate from, LocalDate to, int topN, SalesReport.Progress progress)
+            throws IOException {
+        progress.update(0, 1);
+        CompletableFuture<DataInputStream> response = send(StoreProtocol.RUN_REPORT, out -> {
+            StoreProtocol.writeDate(out, from);
+            StoreProtocol.writeDate(out, to);
+            out.writeInt(topN);
+        });
+        while (true) {
+            if (progress.isCancelled()) {
+                response.cancel(false);
+                throw new CancellationException("Report cancelled");
+            }
+            try {
+                SalesReport report = StoreProtocol.readReport(response.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS));
+                progress.update(1, 1);
+                return report;
+            } catch (TimeoutException e) {
+                // Check for cancellation again
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Report interrupted");
+            }
+        }
+    }
+    
+    @Override
+    public long rebuildSalesRollups() {
+        return call(StoreProtocol.REBUILD_ROLLUPS, out -> { }, DataInputStream::readLong, 0L);
+    }
+    
+    // The file is uploaded in chunks and imported by the server, so all tills see the same catalog
+    @Override
+    public ProductImport importProducts(Path file, boolean skipInvalidRows) throws IOException {
+        long uploadId = ThreadLocalRandom.current().nextLong();
+        try (InputStream in = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+            byte[] chunk = new byte[UPLOAD_CHUNK_SIZE];
+            int length;
+            do {
+                length = in.readNBytes(chunk, 0, chunk.length);
+                int chunkLength = length;
+                request(StoreProtocol.UPLOAD_CHUNK, out -> {
+                    out.writeLong(uploadId);
+                    out.writeInt(chunkLength);
+                    out.write(chunk, 0, chunkLength);
+                }, REQUEST_TIMEOUT_MILLIS);
+            } while (length == chunk.length);
+        }
+        return StoreProtocol.readImport(request(StoreProtocol.IMPORT_PRODUCTS, out -> {
+            out.writeLong(uploadId);
+            out.writeBoolean(skipInvalidRows);
+        }, IMPORT_TIMEOUT_MILLIS));
+    }
+    
+    @Override
+    public double getTotalSales() {
+        return call(StoreProtocol.TOTAL_SALES, out -> { }, DataInputStream::readDouble, 0.0);
+    }
+    
+    @Override
+    public int getTotalProductsSold() {
+        return call(StoreProtocol.TOTAL_PRODUCTS_SOLD, out -> { }, DataInputStream::readInt, 0);
+    }
+    
+    @Override
+    public int getNextProductId() {
+        return call(StoreProtocol.NEXT_PRODUCT_ID, out -> { }, DataInputStream::readInt, 0);
+    }
+    
+    // The newest server change this till knows of; covers every change it made itself
+    @Override
+    public long getLastMutationId() {
+        return lastMutationId.get();
+    }
+    
+    // The server's write errors come back as an IOException, like a lost connection
+    @Override
+    public boolean awaitDurable(long mutationId, long timeoutMillis) throws InterruptedException, IOException {
+        DataInputStream response = request(StoreProtocol.AWAIT_DURABLE, out -> {
+            out.writeLong(mutationId);
+            out.writeLong(timeoutMillis);
+        }, timeoutMillis + REQUEST_TIMEOUT_MILLIS);
+        return response.readBoolean();
+    }
+    
+    // Send a request and wait for its result, or print the error and return fallback
+    private <T> T call(byte op, Arguments args, Result<T> result, T fallback) {
+        try {
+            return result.readFrom(request(op, args, REQUEST_TIMEOUT_MILLIS));
+        } catch (IOException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                reportError(e);
+            }
+            return fallback;
+        }
+    }
+    
+    // Send a request and wait for its response, throwing server and connection errors
+    private DataInputStream request(byte op, Arguments args, long timeoutMillis) throws IOException {
+        CompletableFuture<DataInputStream> response = send(op, args);
+        try {
+            return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            response.cancel(false);
+            throw new IOException("Inventory server did not answer in time");
+        } catch (InterruptedException e) {
+            response.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the inventory server");
+        }
+    }
+    
+    private static void reportError(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        System.err.println("Error contacting inventory server: "
+                + (cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+    }
+    
+    // Send a request without waiting for the response
+    private CompletableFuture<DataInputStream> send(byte op, Arguments args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        args.writeTo(new DataOutputStream(bytes));
+        return connection().send(op, bytes);
+    }
+    
+    // The open connection, reconnecting if the last one was lost
+    private Connection connection() throws IOException {
+        synchronized (connectLock) {
+            if (closed) {
+                throw new IOException("Store has been shut down");
+            }
+            if (connection == null || connection.isClosed()) {
+                boolean reconnecting = connection != null;
+                connection = new Connection(new InetSocketAddress(address.getHostString(), address.getPort()));
+                if (hasProductListeners()) {
+                    connection.subscribe();
+                    // Changes made while the connection was down were not pushed
+                    if (reconnecting) {
+                        fireProductsChanged(List.of(ProductChange.reload()));
+                    }
+                }
+            }
+            return connection;
+        }
+    }
+    
+    /**
+     * One TCP connection to the server with its outstanding requests
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final Map<Integer, CompletableFuture<DataInputStream>> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger nextRequestId = new AtomicInteger();
+        private volatile boolean closed;
+        private boolean subscribed;
+        
+        Connection(InetSocketAddress server) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(server, CONNECT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                out.writeInt(StoreProtocol.MAGIC);
+                out.writeInt(StoreProtocol.VERSION);
+                out.flush();
+                socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                if (in.readInt() != StoreProtocol.MAGIC || in.readInt() != StoreProtocol.VERSION) {
+                    throw new IOException("Not a compatible inventory server: " + server);
+                }
+                socket.setSoTimeout(0);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            Thread reader = new Thread(this::readResponses, "bakery-store-client");
+            reader.setDaemon(true);
+            reader.start();
+        }
+        
+        boolean isClosed() {
+            return closed;
+        }
+        
+        // Ask the server to push product changes; the response carries nothing
+        synchronized void subscribe() {
+            if (!subscribed) {
+                subscribed = true;
+                try {
+                    send(StoreProtocol.SUBSCRIBE, new ByteArrayOutputStream());
+                } catch (IOException e) {
+                    // The connection is closed; the next one subscribes again
+                }
+            }
+        }
+        
+        CompletableFuture<DataInputStream> send(byte op, ByteArrayOutputStream args) throws IOException {
+            int requestId = nextRequestId.incrementAndGet();
+            CompletableFuture<DataInputStream> response = new CompletableFuture<>();
+            pending.put(requestId, response);
+            try {
+                synchronized (out) {
+                    out.writeInt(4 + 1 + args.size());
+                    out.writeInt(requestId);
+                    out.writeByte(op);
+                    args.writeTo(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close(e);
+                throw e;
+            }
+            // A lost connection may have failed the outstanding requests before this one was added
+            if (closed) {
+                response.completeExceptionally(new IOException("Connection to inventory server lost"));
+            }
+            return response;
+        }
+        
+        private void readResponses() {
+            try {
+                byte[] frame;
+                while ((frame = StoreProtocol.readFrame(in)) != null) {
+                    DataInputStream response = new DataInputStream(new ByteArrayInputStream(frame));
+                    int requestId = response.readInt();
+                    byte status = response.readByte();
+                    lastMutationId.accumulateAndGet(response.readLong(), Math::max);
+                    if (status == StoreProtocol.EVENT) {
+                        fireProductsChanged(StoreProtocol.readChanges(response));
+                        continue;
+                    }
+                    CompletableFuture<DataInputStream> waiting = pending.remove(requestId);
+                    if (waiting == null) {
+                        continue;
+                    }
+                    if (status == StoreProtocol.OK) {
+                        waiting.complete(response);
+                    } else {
+                        waiting.completeExceptionally(new IOException("Server error: " + response.readUTF()));
+                    }
+                }
+                close(new IOException("Inventory server closed the connection"));
+            } catch (IOException e) {
+                close(new IOException("Connection to inventory server lost: " + e.getMessage(), e));
+            }
+        }
+        
+        // Close the socket and fail every request still waiting for a response
+        void close(IOException reason) {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<DataInputStream> waiting = pending.remove(id);
+                if (waiting != null) {
+                    waiting.completeExceptionally(reason);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.bakery.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * SaleEntry is one immutable line of the sales ledger
+ * Records when a product was sold, in which order, how many and at what price
+ */
+public class SaleEntry {
+    // Product id used for sales that were not recorded against a product
+    public static final int NO_PRODUCT = 0;
+    
+    private final long timestamp;
+    private final long orderId;
+    private final int productId;
+    private final int quantity;
+    private final double unitPrice;
+    private final double total;
+    
+    public SaleEntry(long timestamp, long orderId, int productId, int quantity, double unitPrice, double total) {
+        this.timestamp = timestamp;
+        this.orderId = orderId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.total = total;
+    }
+    
+    // Getters
+    // Milliseconds since the epoch
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+    
+    public long getOrderId() {
+        return orderId;
+    }
+    
+    public int getProductId() {
+        return productId;
+    }
+    
+    public int getQuantity() {
+        return quantity;
+    }
+    
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+    
+    public double getTotal() {
+        return total;
+    }
+    
+    @Override
+    public String toString() {
+        return "SaleEntry{" +
+                "time=" + getTime() +
+                ", orderId=" + orderId +
+                ", productId=" + productId +
+                ", quantity=" + quantity +
+                ", unitPrice=" + unitPrice +
+                ", total=" + total +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * SalesFile reads and writes the running sales totals (sales.dat)
+ * Keeps the original ObjectOutputStream layout: total sales (double), products sold (int)
+ */
+final class SalesFile {
+    final double totalSales;
+    final int totalProductsSold;
+    
+    SalesFile(double totalSales, int totalProductsSold) {
+        this.totalSales = totalSales;
+        this.totalProductsSold = totalProductsSold;
+    }
+    
+    static SalesFile read(Path path) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return new SalesFile(ois.readDouble(), ois.readInt());
+        }
+    }
+    
+    // Replace the file atomically
+    static void write(Path path, double totalSales, int totalProductsSold) throws IOException {
+        AtomicFiles.write(path, out -> {
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeDouble(totalSales);
+            oos.writeInt(totalProductsSold);
+            oos.flush();
+        });
+    }
+}
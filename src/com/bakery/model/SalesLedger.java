@@ -0,0 +1,305 @@
+package com.bakery.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * SalesLedger is the append-only record of every sale, split into one segment file per day
+ * Segments live in a sales/ directory and are named after their day, e.g. 2026-10-18.seg
+ *
+ * Segment layout (big-endian): magic, version, epoch day (16 bytes), then fixed-width
+ * records of timestamp, order id, product id, quantity, unit price and total (40 bytes).
+ * Timestamps never go backwards, so each segment is sorted and a time range can be found
+ * by binary search. Only the newest segment is open for appending; older ones are made
+ * read-only when the day rolls over.
+ *
+ * Appends, sync and close belong to the PersistenceWriter thread; queries may run on any thread
+ * and see every record written so far.
+ */
+class SalesLedger implements Closeable {
+    static final int MAGIC = 0x424B534C; // "BKSL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 40;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    
+    private final Path directory;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    
+    // Segment currently open for appending, and its day (set before it is opened)
+    private FileChannel segment;
+    private LocalDate segmentDay;
+    private long segmentRecords;
+    private boolean dirty;
+    
+    private long lastTimestamp;
+    private long lastOrderId;
+    
+    // Open the ledger, creating its directory if needed
+    SalesLedger(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        
+        TreeMap<LocalDate, Path> segments = listSegments(LocalDate.MIN, LocalDate.MAX);
+        if (!segments.isEmpty()) {
+            LocalDate newest = segments.lastKey();
+            // Every older day is complete
+            for (Path older : segments.headMap(newest).values()) {
+                seal(older);
+            }
+            readLastRecord(segments.get(newest));
+            segmentDay = newest;
+        }
+    }
+    
+    // Largest order id in the ledger, 0 if it is empty
+    long getLastOrderId() {
+        return lastOrderId;
+    }
+    
+    // Position just past the last record: the day of the newest segment and its record count
+    // Together they mark how much of the ledger something derived from it has seen
+    long getEndDay() {
+        return segmentDay != null ? segmentDay.toEpochDay() : Long.MIN_VALUE;
+    }
+    
+    long getEndIndex() {
+        return segmentDay != null ? segmentRecords : 0;
+    }
+    
+    // Append a sale to the segment for its day
+    void append(SaleEntry entry) throws IOException {
+        // Keep the ledger in time order even if sales were queued slightly out of order
+        long timestamp = Math.max(entry.getTimestamp(), lastTimestamp);
+        LocalDate day = dayOf(timestamp);
+        if (segment == null || !day.equals(segmentDay)) {
+            roll(day);
+        }
+        
+        record.clear();
+        record.putLong(timestamp)
+              .putLong(entry.getOrderId())
+              .putInt(entry.getProductId())
+              .putInt(entry.getQuantity())
+              .putDouble(entry.getUnitPrice())
+              .putDouble(entry.getTotal());
+        record.flip();
+        while (record.hasRemaining()) {
+            segment.write(record);
+        }
+        dirty = true;
+        segmentRecords++;
+        lastTimestamp = timestamp;
+        lastOrderId = Math.max(lastOrderId, entry.getOrderId());
+    }
+    
+    // Force appended records to disk
+    void sync() throws IOException {
+        if (dirty) {
+            segment.force(false);
+            dirty = false;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (segment != null) {
+            sync();
+            segment.close();
+            segment = null;
+        }
+    }
+    
+    // Open the segment for a day, sealing the previous one
+    private void roll(LocalDate day) throws IOException {
+        Path previous = segmentDay != null && !segmentDay.equals(day) ? segmentPath(segmentDay) : null;
+        close();
+        if (previous != null) {
+            seal(previous);
+        }
+        
+        Path path = segmentPath(day);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(day.toEpochDay());
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                size = HEADER_SIZE;
+            }
+            // Drop a record torn by a crash so new records stay aligned
+            long end = size - (size - HEADER_SIZE) % RECORD_SIZE;
+            if (end != size) {
+                channel.truncate(end);
+            }
+            channel.position(end);
+            segmentRecords = (end - HEADER_SIZE) / RECORD_SIZE;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        segment = channel;
+        segmentDay = day;
+        dirty = true;
+    }
+    
+    private void seal(Path path) {
+        if (Files.isWritable(path) && !path.toFile().setWritable(false)) {
+            System.err.println("Warning: Could not make sales segment read-only: " + path.getFileName());
+        }
+    }
+    
+    private void readLastRecord(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long count = Math.max(0, (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+            segmentRecords = count;
+            if (count == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(RECORD_SIZE);
+            channel.read(last, HEADER_SIZE + (count - 1) * RECORD_SIZE);
+            lastTimestamp = last.getLong(0);
+            lastOrderId = last.getLong(8);
+        }
+    }
+    
+    /**
+     * Visit every sale with from <= timestamp < to, oldest first
+     * Only the segments of the days in the range are opened
+     */
+    void scan(long fromMillis, long toMillis, Consumer<SaleEntry> action) throws IOException {
+        if (fromMillis >= toMillis) {
+            return;
+        }
+        for (Path path : listSegments(dayOf(fromMillis), dayOf(toMillis - 1)).values()) {
+            scanSegment(path, 0, fromMillis, toMillis, action);
+        }
+    }
+    
+    /**
+     * Visit every sale from a position returned by getEndDay/getEndIndex onwards, oldest first
+     * Pass Long.MIN_VALUE and 0 to visit the whole ledger
+     */
+    void scanFrom(long epochDay, long index, Consumer<SaleEntry> action) throws IOException {
+        LocalDate from = epochDay == Long.MIN_VALUE ? LocalDate.MIN : LocalDate.ofEpochDay(epochDay);
+        for (Map.Entry<LocalDate, Path> segment : listSegments(from, LocalDate.MAX).entrySet()) {
+            long start = segment.getKey().equals(from) ? index : 0;
+            scanSegment(segment.getValue(), start, Long.MIN_VALUE, Long.MAX_VALUE, action);
+        }
+    }
+    
+    // All sales with from <= timestamp < to, oldest first
+    List<SaleEntry> query(long fromMillis, long toMillis) throws IOException {
+        List<SaleEntry> entries = new ArrayList<>();
+        scan(fromMillis, toMillis, entries::add);
+        return entries;
+    }
+    
+    // Segment files of the days from..to (inclusive), oldest first
+    Collection<Path> segmentsBetween(LocalDate from, LocalDate to) throws IOException {
+        return listSegments(from, to).values();
+    }
+    
+    // Visit the records of one segment from record start on, limited to from <= timestamp < to
+    static void scanSegment(Path path, long start, long fromMillis, long toMillis,
+            Consumer<SaleEntry> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return;
+            }
+            // Only whole records; the writer may be appending right now
+            int count = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    HEADER_SIZE + (long) count * RECORD_SIZE);
+            try {
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a sales segment: " + path.getFileName());
+                }
+                
+                // First record at or after fromMillis
+                int low = (int) Math.min(start, count);
+                int high = count;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (buffer.getLong(HEADER_SIZE + mid * RECORD_SIZE) < fromMillis) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                
+                for (int i = low; i < count; i++) {
+                    int offset = HEADER_SIZE + i * RECORD_SIZE;
+                    long timestamp = buffer.getLong(offset);
+                    if (timestamp >= toMillis) {
+                        break;
+                    }
+                    action.accept(new SaleEntry(timestamp,
+                            buffer.getLong(offset + 8),
+                            buffer.getInt(offset + 16),
+                            buffer.getInt(offset + 20),
+                            buffer.getDouble(offset + 24),
+                            buffer.getDouble(offset + 32)));
+                }
+            } finally {
+                ProductFile.unmap(buffer);
+            }
+        }
+    }
+    
+    // Segment files for the days from..to (inclusive), keyed by day
+    private TreeMap<LocalDate, Path> listSegments(LocalDate from, LocalDate to) throws IOException {
+        TreeMap<LocalDate, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    return;
+                }
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    if (!day.isBefore(from) && !day.isAfter(to)) {
+                        segments.put(day, path);
+                    }
+                } catch (DateTimeParseException e) {
+                    // Not a segment
+                }
+            });
+        }
+        return segments;
+    }
+    
+    private Path segmentPath(LocalDate day) {
+        return directory.resolve(day + SEGMENT_SUFFIX);
+    }
+    
+    private LocalDate dayOf(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+    }
+}
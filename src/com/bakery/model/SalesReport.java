@@ -0,0 +1,106 @@
+package com.bakery.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * SalesReport is the result of an ad-hoc report over a date range of the sales ledger
+ * Built by DataStore.runSalesReport
+ */
+public class SalesReport {
+    /**
+     * Progress callback of a running report; called from worker threads
+     */
+    public interface Progress {
+        // done of total ledger days have been scanned
+        void update(int done, int total);
+        
+        // Checked while scanning; returning true stops the report with a CancellationException
+        boolean isCancelled();
+    }
+    
+    private final LocalDate from;
+    private final LocalDate to;
+    private final double totalRevenue;
+    private final long totalQuantity;
+    private final long orderCount;
+    private final List<SalesTotal> topProducts;
+    private final List<SalesTotal> categories;
+    private final List<PriceComparison> priceComparisons;
+    private final long entriesScanned;
+    private final long elapsedMillis;
+    
+    SalesReport(LocalDate from, LocalDate to, double totalRevenue, long totalQuantity, long orderCount,
+                List<SalesTotal> topProducts, List<SalesTotal> categories,
+                List<PriceComparison> priceComparisons, long entriesScanned, long elapsedMillis) {
+        this.from = from;
+        this.to = to;
+        this.totalRevenue = totalRevenue;
+        this.totalQuantity = totalQuantity;
+        this.orderCount = orderCount;
+        this.topProducts = topProducts;
+        this.categories = categories;
+        this.priceComparisons = priceComparisons;
+        this.entriesScanned = entriesScanned;
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    // Getters
+    public LocalDate getFrom() {
+        return from;
+    }
+    
+    public LocalDate getTo() {
+        return to;
+    }
+    
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+    
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+    
+    public long getOrderCount() {
+        return orderCount;
+    }
+    
+    // Average number of items per order
+    public double getAverageBasketSize() {
+        return orderCount > 0 ? (double) totalQuantity / orderCount : 0;
+    }
+    
+    // Average amount per order
+    public double getAverageBasketValue() {
+        return orderCount > 0 ? totalRevenue / orderCount : 0;
+    }
+    
+    // Best selling products by revenue, at most the requested number
+    public List<SalesTotal> getTopProducts() {
+        return topProducts;
+    }
+    
+    // Revenue per category, largest first
+    public List<SalesTotal> getCategories() {
+        return categories;
+    }
+    
+    // Share of total revenue taken by a row of getCategories, 0..1
+    public double getShare(SalesTotal row) {
+        return totalRevenue > 0 ? row.getRevenue() / totalRevenue : 0;
+    }
+    
+    // Products sold at more than one price, with their demand at each end of the price range
+    public List<PriceComparison> getPriceComparisons() {
+        return priceComparisons;
+    }
+    
+    public long getEntriesScanned() {
+        return entriesScanned;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,170 @@
+package com.bakery.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SalesReportEngine scans a date range of the sales ledger in parallel
+ * Each ledger day is a separate segment file, so days are split across a fork-join pool,
+ * scanned into partial totals and merged pairwise on the way back up
+ */
+class SalesReportEngine {
+    // Entries between cancellation checks
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    
+    // Scans block on file reads, so they get a pool of their own rather than the common
+    // pool, which the parallel sorts of product queries rely on
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("bakery-report-scan-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+    
+    /**
+     * Totals of one product at one unit price
+     */
+    static final class PricePoint {
+        long quantity;
+        double revenue;
+        // Ledger days on which the product sold at this price
+        int days;
+    }
+    
+    /**
+     * Totals of part of the scanned range; merged into the result
+     */
+    static final class Partial {
+        final Map<Integer, SalesRollups.Totals> byProduct = new HashMap<>();
+        final Map<Integer, Map<Double, PricePoint>> pricePoints = new HashMap<>();
+        double revenue;
+        long quantity;
+        long orders;
+        long entries;
+        private long lastOrderId = -1;
+        
+        // Add an entry of a single ledger day; an order's entries are always adjacent
+        void add(SaleEntry entry) {
+            entries++;
+            revenue += entry.getTotal();
+            quantity += entry.getQuantity();
+            if (entry.getOrderId() != lastOrderId) {
+                orders++;
+                lastOrderId = entry.getOrderId();
+            }
+            byProduct.computeIfAbsent(entry.getProductId(), k -> new SalesRollups.Totals())
+                    .add(entry.getTotal(), entry.getQuantity());
+            PricePoint point = pricePoints.computeIfAbsent(entry.getProductId(), k -> new HashMap<>())
+                    .computeIfAbsent(entry.getUnitPrice(), k -> new PricePoint());
+            if (point.days == 0) {
+                point.days = 1;
+            }
+            point.quantity += entry.getQuantity();
+            point.revenue += entry.getTotal();
+        }
+        
+        // Fold another part (of other days) into this one
+        Partial merge(Partial other) {
+            revenue += other.revenue;
+            quantity += other.quantity;
+            orders += other.orders;
+            entries += other.entries;
+            other.byProduct.forEach((id, t) ->
+                    byProduct.computeIfAbsent(id, k -> new SalesRollups.Totals()).add(t.revenue, t.quantity));
+            other.pricePoints.forEach((id, prices) -> {
+                Map<Double, PricePoint> mine = pricePoints.computeIfAbsent(id, k -> new HashMap<>());
+                prices.forEach((price, point) -> {
+                    PricePoint target = mine.computeIfAbsent(price, k -> new PricePoint());
+                    target.quantity += point.quantity;
+                    target.revenue += point.revenue;
+                    target.days += point.days;
+                });
+            });
+            return this;
+        }
+    }
+    
+    private final SalesLedger ledger;
+    private final ForkJoinPool pool;
+    
+    SalesReportEngine(SalesLedger ledger) {
+        this(ledger, SCAN_POOL);
+    }
+    
+    SalesReportEngine(SalesLedger ledger, ForkJoinPool pool) {
+        this.ledger = ledger;
+        this.pool = pool;
+    }
+    
+    // Scan every ledger day from..to (inclusive)
+    Partial scan(LocalDate from, LocalDate to, SalesReport.Progress progress) throws IOException {
+        List<Path> segments = new ArrayList<>(ledger.segmentsBetween(from, to));
+        if (segments.isEmpty()) {
+            return new Partial();
+        }
+        progress.update(0, segments.size());
+        try {
+            return pool.invoke(new ScanTask(segments, 0, segments.size(), progress, new AtomicInteger()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Path> segments;
+        private final int start;
+        private final int end;
+        private final SalesReport.Progress progress;
+        private final AtomicInteger done;
+        
+        ScanTask(List<Path> segments, int start, int end, SalesReport.Progress progress, AtomicInteger done) {
+            this.segments = segments;
+            this.start = start;
+            this.end = end;
+            this.progress = progress;
+            this.done = done;
+        }
+        
+        @Override
+        protected Partial compute() {
+            if (end - start > 1) {
+                int mid = (start + end) >>> 1;
+                ScanTask left = new ScanTask(segments, start, mid, progress, done);
+                left.fork();
+                Partial right = new ScanTask(segments, mid, end, progress, done).compute();
+                return left.join().merge(right);
+            }
+            
+            if (progress.isCancelled()) {
+                throw new CancellationException("Report cancelled");
+            }
+            Partial partial = new Partial();
+            try {
+                SalesLedger.scanSegment(segments.get(start), 0, Long.MIN_VALUE, Long.MAX_VALUE, entry -> {
+                    partial.add(entry);
+                    if (partial.entries % CANCEL_CHECK_INTERVAL == 0 && progress.isCancelled()) {
+                        throw new CancellationException("Report cancelled");
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            progress.update(done.incrementAndGet(), segments.size());
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SalesRollups holds running sales totals per product, per day and per hour
+ * Updated entry by entry as sales reach the ledger, so reports never rescan the history
+ *
+ * The rollups are derived data: they are saved to sales-rollups.bin together with the
+ * ledger position they cover, and anything after that position is replayed from the
+ * ledger on startup. A missing or damaged file is rebuilt from the whole ledger.
+ * Written by the PersistenceWriter thread; reads may come from any thread.
+ */
+class SalesRollups {
+    static final int MAGIC = 0x424B5352; // "BKSR"
+    static final int VERSION = 1;
+    
+    /**
+     * Revenue and quantity of one rollup bucket
+     */
+    static final class Totals {
+        double revenue;
+        long quantity;
+        
+        void add(double amount, long count) {
+            revenue += amount;
+            quantity += count;
+        }
+    }
+    
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Integer, Totals> byProduct = new HashMap<>();
+    // Keyed by epoch day
+    private final TreeMap<Long, Totals> byDay = new TreeMap<>();
+    // Keyed by epoch day * 24 + hour of day
+    private final TreeMap<Long, Totals> byHour = new TreeMap<>();
+    
+    // Ledger position covered by these totals
+    private long ledgerDay = Long.MIN_VALUE;
+    private long ledgerIndex;
+    
+    // Add one ledger entry
+    synchronized void add(SaleEntry entry) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getTimestamp()), zone);
+        long day = time.toLocalDate().toEpochDay();
+        long hour = day * 24 + time.getHour();
+        byProduct.computeIfAbsent(entry.getProductId(), k -> new Totals()).add(entry.getTotal(), entry.getQuantity());
+        byDay.computeIfAbsent(day, k -> new Totals()).add(entry.getTotal(), entry.getQuantity());
+        byHour.computeIfAbsent(hour, k -> new Totals()).add(entry.getTotal(), entry.getQuantity());
+    }
+    
+    // Record how far into the ledger these totals reach
+    synchronized void setLedgerPosition(long day, long index) {
+        ledgerDay = day;
+        ledgerIndex = index;
+    }
+    
+    synchronized long getLedgerDay() {
+        return ledgerDay;
+    }
+    
+    synchronized long getLedgerIndex() {
+        return ledgerIndex;
+    }
+    
+    synchronized void clear() {
+        byProduct.clear();
+        byDay.clear();
+        byHour.clear();
+        ledgerDay = Long.MIN_VALUE;
+        ledgerIndex = 0;
+    }
+    
+    // Copies of the buckets, safe to use while sales keep coming in
+    synchronized Map<Integer, Totals> productTotals() {
+        Map<Integer, Totals> copy = new HashMap<>();
+        byProduct.forEach((id, t) -> copy.put(id, copyOf(t)));
+        return copy;
+    }
+    
+    synchronized TreeMap<Long, Totals> dayTotals(long fromDay, long toDay) {
+        return copyRange(byDay, fromDay, toDay);
+    }
+    
+    synchronized TreeMap<Long, Totals> hourTotals(long day) {
+        return copyRange(byHour, day * 24, day * 24 + 23);
+    }
+    
+    private static TreeMap<Long, Totals> copyRange(TreeMap<Long, Totals> source, long from, long to) {
+        TreeMap<Long, Totals> copy = new TreeMap<>();
+        source.subMap(from, true, to, true).forEach((k, t) -> copy.put(k, copyOf(t)));
+        return copy;
+    }
+    
+    private static Totals copyOf(Totals t) {
+        Totals copy = new Totals();
+        copy.add(t.revenue, t.quantity);
+        return copy;
+    }
+    
+    // Save all buckets, replacing the file atomically so a crash leaves the old file intact
+    synchronized void write(Path path) throws IOException {
+        AtomicFiles.write(path, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(ledgerDay);
+            out.writeLong(ledgerIndex);
+            out.writeInt(byProduct.size());
+            for (Map.Entry<Integer, Totals> e : byProduct.entrySet()) {
+                out.writeInt(e.getKey());
+                writeTotals(out, e.getValue());
+            }
+            writeBuckets(out, byDay);
+            writeBuckets(out, byHour);
+            out.flush();
+        });
+    }
+    
+    // Load buckets saved by write; returns false if there is no usable file
+    synchronized boolean read(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a sales rollup file");
+            }
+            long day = in.readLong();
+            long index = in.readLong();
+            int products = in.readInt();
+            for (int i = 0; i < products; i++) {
+                byProduct.put(in.readInt(), readTotals(in));
+            }
+            readBuckets(in, byDay);
+            readBuckets(in, byHour);
+            ledgerDay = day;
+            ledgerIndex = index;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading sales rollups, rebuilding from the ledger: " + e.getMessage());
+            clear();
+            return false;
+        }
+    }
+    
+    private static void writeBuckets(DataOutputStream out, TreeMap<Long, Totals> buckets) throws IOException {
+        out.writeInt(buckets.size());
+        for (Map.Entry<Long, Totals> e : buckets.entrySet()) {
+            out.writeLong(e.getKey());
+            writeTotals(out, e.getValue());
+        }
+    }
+    
+    private static void readBuckets(DataInputStream in, TreeMap<Long, Totals> buckets) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            buckets.put(in.readLong(), readTotals(in));
+        }
+    }
+    
+    private static void writeTotals(DataOutputStream out, Totals totals) throws IOException {
+        out.writeDouble(totals.revenue);
+        out.writeLong(totals.quantity);
+    }
+    
+    private static Totals readTotals(DataInputStream in) throws IOException {
+        Totals totals = new Totals();
+        totals.add(in.readDouble(), in.readLong());
+        return totals;
+    }
+}
@@ -0,0 +1,39 @@
+package com.bakery.model;
+
+/**
+ * SalesTotal is one row of a sales report
+ * Revenue and quantity sold for a product, category, hour or day
+ */
+public class SalesTotal {
+    private final String label;
+    private final double revenue;
+    private final long quantity;
+    
+    public SalesTotal(String label, double revenue, long quantity) {
+        this.label = label;
+        this.revenue = revenue;
+        this.quantity = quantity;
+    }
+    
+    // Getters
+    public String getLabel() {
+        return label;
+    }
+    
+    public double getRevenue() {
+        return revenue;
+    }
+    
+    public long getQuantity() {
+        return quantity;
+    }
+    
+    @Override
+    public String toString() {
+        return "SalesTotal{" +
+                "label='" + label + '\'' +
+                ", revenue=" + revenue +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package com.bakery.model;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * StartupTimer logs how long each phase of starting up takes
+ * Lines look like "Startup: read products.bin in 412 ms"
+ */
+public final class StartupTimer {
+    private long phaseStart = System.nanoTime();
+    
+    // Log the phase that ended now; the next phase starts here
+    public void phase(String name) {
+        long now = System.nanoTime();
+        log(name + " in " + (now - phaseStart) / 1_000_000 + " ms");
+        phaseStart = now;
+    }
+    
+    // Log a milestone with the time since the JVM started, when the platform reports it
+    public static void sinceLaunch(String milestone) {
+        ProcessHandle.current().info().startInstant().ifPresentOrElse(
+                start -> log(milestone + " " + Duration.between(start, Instant.now()).toMillis() + " ms after launch"),
+                () -> log(milestone));
+    }
+    
+    private static void log(String message) {
+        System.out.println("Startup: " + message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.bakery.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * StoreEvents are the Java Flight Recorder events of the store
+ * They show up under Bakery / Store in JDK Mission Control, next to GC and file I/O events
+ *
+ * Each event is begun before the work and committed after it, so its duration is the time
+ * taken. The per-sale events are recorded only when slower than their threshold, so a
+ * busy store does not flood the recording; the threshold can be lowered in a .jfc file.
+ * Fields that cost a file size lookup are only filled in when the event is enabled.
+ */
+final class StoreEvents {
+    private static final String CATEGORY = "Bakery";
+    private static final String STORE = "Store";
+    
+    private StoreEvents() {
+    }
+    
+    @Name("com.bakery.StoreLoad")
+    @Label("Store Load")
+    @Description("Data files read and the mutation log replayed at startup")
+    @Category({CATEGORY, STORE})
+    @StackTrace(false)
+    static final class Load extends Event {
+        @Label("Catalog Size")
+        int catalogSize;
+        
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+    }
+    
+    @Name("com.bakery.StoreSave")
+    @Label("Store Save")
+    @Description("Full snapshot of the products and sales totals written")
+    @Category({CATEGORY, STORE})
+    @StackTrace(false)
+    static final class Save extends Event {
+        @Label("Catalog Size")
+        int catalogSize;
+        
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+        
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+    
+    @Name("com.bakery.LogWrite")
+    @Label("Mutation Log Write")
+    @Description("Batch of queued changes appended to the mutation log by the writer thread")
+    @Category({CATEGORY, STORE})
+    @StackTrace(false)
+    static final class LogWrite extends Event {
+        @Label("Records")
+        int records;
+        
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+    
+    @Name("com.bakery.LogSync")
+    @Label("Data Sync")
+    @Description("Mutation log, stock levels and sales ledger forced to disk")
+    @Category({CATEGORY, STORE})
+    @StackTrace(false)
+    static final class Sync extends Event {
+    }
+    
+    @Name("com.bakery.StockUpdate")
+    @Label("Stock Update")
+    @Category({CATEGORY, STORE})
+    @Threshold("1 ms")
+    static final class StockUpdate extends Event {
+        @Label("Product ID")
+        int productId;
+        
+        @Label("Quantity")
+        int quantity;
+        
+        @Label("Updated")
+        boolean updated;
+    }
+    
+    @Name("com.bakery.Sale")
+    @Label("Sale")
+    @Description("Order placed with the store: stock taken and the sale recorded")
+    @Category({CATEGORY, STORE})
+    @Threshold("1 ms")
+    static final class Sale extends Event {
+        @Label("Order ID")
+        long orderId;
+        
+        @Label("Lines")
+        int lines;
+        
+        @Label("Items")
+        int items;
+        
+        @Label("Total")
+        double total;
+        
+        @Label("Placed")
+        boolean placed;
+    }
+}
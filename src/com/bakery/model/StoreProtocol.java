@@ -0,0 +1,375 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * StoreProtocol is the wire format between StoreServer and RemoteDataStore
+ * Each message is a length-prefixed binary frame, so requests can be pipelined on one connection
+ *
+ * On connect the client sends MAGIC and VERSION and the server answers with the same two ints.
+ * Request:  frame length (int), request id (int), operation (byte), arguments
+ * Response: frame length (int), request id (int), status (byte), last mutation id (long), result
+ * The frame length counts the bytes after it. A response carries the id of its request and
+ * may overtake earlier ones, as slow operations are answered when they finish. An ERROR
+ * response holds a message instead of a result. After SUBSCRIBE the server also pushes
+ * EVENT frames with request id 0 and a batch of product changes as the result.
+ * Values are big-endian and strings use DataOutput.writeUTF.
+ *
+ * Readers take a stream over a single frame body. Lists are sent with their length first,
+ * and a length that the rest of the frame could not hold is rejected before anything is
+ * allocated for it.
+ */
+final class StoreProtocol {
+    static final int MAGIC = 0x424B5350; // "BKSP"
+    // Version 2 added reorder levels to products
+    static final int VERSION = 2;
+    static final int DEFAULT_PORT = 7420;
+    static final int MAX_FRAME = 64 << 20;
+    // Smallest product on the wire: id, two empty strings, price, quantity and reorder level
+    private static final int PRODUCT_MIN_BYTES = 4 + 2 + 2 + 8 + 4 + 4;
+    
+    // Operations, one per DataStore method
+    static final byte GET_PRODUCTS = 1;
+    static final byte ADD_PRODUCT = 2;
+    static final byte UPDATE_PRODUCT = 3;
+    static final byte DELETE_PRODUCT = 4;
+    static final byte FIND_PRODUCT = 5;
+    static final byte SEARCH_PRODUCTS = 6;
+    static final byte UPDATE_STOCK = 7;
+    static final byte PLACE_ORDER = 8;
+    static final byte ADD_SALE = 9;
+    static final byte GET_SALES = 10;
+    static final byte SALES_BY_PRODUCT = 11;
+    static final byte SALES_BY_CATEGORY = 12;
+    static final byte SALES_BY_HOUR = 13;
+    static final byte SALES_BY_DAY = 14;
+    static final byte RUN_REPORT = 15;
+    static final byte REBUILD_ROLLUPS = 16;
+    static final byte TOTAL_SALES = 17;
+    static final byte TOTAL_PRODUCTS_SOLD = 18;
+    static final byte NEXT_PRODUCT_ID = 19;
+    static final byte AWAIT_DURABLE = 20;
+    static final byte UPLOAD_CHUNK = 21;
+    static final byte IMPORT_PRODUCTS = 22;
+    static final byte SUBSCRIBE = 23;
+    static final byte QUERY_PRODUCTS = 24;
+    static final byte GET_PRODUCTS_BY_ID = 25;
+    static final byte LOW_STOCK_PRODUCTS = 26;
+    
+    // Response status
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final byte EVENT = 2;
+    
+    private StoreProtocol() {
+    }
+    
+    // Operations that may take seconds and are answered out of order
+    static boolean isSlow(byte op) {
+        return op == RUN_REPORT || op == AWAIT_DURABLE || op == IMPORT_PRODUCTS || op == QUERY_PRODUCTS;
+    }
+    
+    // Read the body of the next frame, or null at the end of the stream
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 5 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return body;
+    }
+    
+    // Read a list length and check the frame still holds that many elements of minBytes each
+    static int readCount(DataInputStream in, int minBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * minBytes > in.available()) {
+            throw new IOException("Invalid list length: " + count);
+        }
+        return count;
+    }
+    
+    static void writeProduct(DataOutput out, Product product) throws IOException {
+        out.writeInt(product.getProductId());
+        out.writeUTF(product.getProductName());
+        out.writeUTF(product.getCategory());
+        out.writeDouble(product.getPrice());
+        out.writeInt(product.getQuantity());
+        out.writeInt(product.getReorderLevel());
+    }
+    
+    static Product readProduct(DataInput in) throws IOException {
+        return new Product(in.readInt(), in.readUTF(), in.readUTF(), in.readDouble(), in.readInt(), in.readInt());
+    }
+    
+    static void writeProducts(DataOutput out, List<Product> products) throws IOException {
+        out.writeInt(products.size());
+        for (Product product : products) {
+            writeProduct(out, product);
+        }
+    }
+    
+    static List<Product> readProducts(DataInputStream in) throws IOException {
+        int count = readCount(in, PRODUCT_MIN_BYTES);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(readProduct(in));
+        }
+        return products;
+    }
+    
+    // A product that may be missing
+    static void writeOptionalProduct(DataOutput out, Product product) throws IOException {
+        out.writeBoolean(product != null);
+        if (product != null) {
+            writeProduct(out, product);
+        }
+    }
+    
+    static Product readOptionalProduct(DataInput in) throws IOException {
+        return in.readBoolean() ? readProduct(in) : null;
+    }
+    
+    // Products in a fixed order, any of which may be missing
+    static void writeOptionalProducts(DataOutput out, List<Product> products) throws IOException {
+        out.writeInt(products.size());
+        for (Product product : products) {
+            writeOptionalProduct(out, product);
+        }
+    }
+    
+    static List<Product> readOptionalProducts(DataInputStream in) throws IOException {
+        int count = readCount(in, 1);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(readOptionalProduct(in));
+        }
+        return products;
+    }
+    
+    static void writeIds(DataOutput out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+    
+    static int[] readIds(DataInputStream in) throws IOException {
+        int[] ids = new int[readCount(in, 4)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readInt();
+        }
+        return ids;
+    }
+    
+    static void writeBitSet(DataOutput out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+    
+    static BitSet readBitSet(DataInputStream in) throws IOException {
+        long[] words = new long[readCount(in, 8)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+    
+    // Order lines only; the order id is sent back in the response. The name and price are
+    // the till's, for its own receipt; the server charges the prices it has
+    static void writeOrder(DataOutput out, Order order) throws IOException {
+        List<OrderLine> lines = order.getLines();
+        out.writeInt(lines.size());
+        for (OrderLine line : lines) {
+            out.writeInt(line.getProductId());
+            out.writeUTF(line.getProductName());
+            out.writeDouble(line.getUnitPrice());
+            out.writeInt(line.getQuantity());
+        }
+    }
+    
+    static Order readOrder(DataInputStream in) throws IOException {
+        Order order = new Order();
+        // Product id, name, price and quantity
+        int count = readCount(in, 4 + 2 + 8 + 4);
+        for (int i = 0; i < count; i++) {
+            order.addLine(in.readInt(), in.readUTF(), in.readDouble(), in.readInt());
+        }
+        return order;
+    }
+    
+    static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date.toEpochDay());
+    }
+    
+    static LocalDate readDate(DataInput in) throws IOException {
+        return LocalDate.ofEpochDay(in.readLong());
+    }
+    
+    // Sent as a wall-clock time; the server reads it in its own time zone
+    static void writeDateTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+    
+    static LocalDateTime readDateTime(DataInput in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+    
+    static void writeSales(DataOutput out, List<SaleEntry> sales) throws IOException {
+        out.writeInt(sales.size());
+        for (SaleEntry entry : sales) {
+            out.writeLong(entry.getTimestamp());
+            out.writeLong(entry.getOrderId());
+            out.writeInt(entry.getProductId());
+            out.writeInt(entry.getQuantity());
+            out.writeDouble(entry.getUnitPrice());
+            out.writeDouble(entry.getTotal());
+        }
+    }
+    
+    static List<SaleEntry> readSales(DataInputStream in) throws IOException {
+        int count = readCount(in, 8 + 8 + 4 + 4 + 8 + 8);
+        List<SaleEntry> sales = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sales.add(new SaleEntry(in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                    in.readDouble(), in.readDouble()));
+        }
+        return sales;
+    }
+    
+    static void writeTotals(DataOutput out, List<SalesTotal> totals) throws IOException {
+        out.writeInt(totals.size());
+        for (SalesTotal total : totals) {
+            out.writeUTF(total.getLabel());
+            out.writeDouble(total.getRevenue());
+            out.writeLong(total.getQuantity());
+        }
+    }
+    
+    static List<SalesTotal> readTotals(DataInputStream in) throws IOException {
+        int count = readCount(in, 2 + 8 + 8);
+        List<SalesTotal> totals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            totals.add(new SalesTotal(in.readUTF(), in.readDouble(), in.readLong()));
+        }
+        return totals;
+    }
+    
+    static void writeChanges(DataOutput out, List<ProductChange> changes) throws IOException {
+        out.writeInt(changes.size());
+        for (ProductChange change : changes) {
+            out.writeByte(change.getType().ordinal());
+            out.writeInt(change.getProductId());
+            if (change.getProduct() != null) {
+                writeProduct(out, change.getProduct());
+            } else {
+                out.writeInt(change.getQuantity());
+            }
+        }
+    }
+    
+    static List<ProductChange> readChanges(DataInputStream in) throws IOException {
+        // Type, product id and at least a quantity
+        int count = readCount(in, 1 + 4 + 4);
+        List<ProductChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.readByte();
+            int productId = in.readInt();
+            if (type == ProductChange.Type.ADDED.ordinal()) {
+                changes.add(ProductChange.added(readProduct(in)));
+            } else if (type == ProductChange.Type.UPDATED.ordinal()) {
+                changes.add(ProductChange.updated(readProduct(in)));
+            } else {
+                int quantity = in.readInt();
+                if (type == ProductChange.Type.REMOVED.ordinal()) {
+                    changes.add(ProductChange.removed(productId));
+                } else if (type == ProductChange.Type.STOCK_CHANGED.ordinal()) {
+                    changes.add(ProductChange.stockChanged(productId, quantity));
+                } else {
+                    changes.add(ProductChange.reload());
+                }
+            }
+        }
+        return changes;
+    }
+    
+    static void writeImport(DataOutput out, ProductImport result) throws IOException {
+        out.writeInt(result.getRowCount());
+        out.writeInt(result.getAddedCount());
+        out.writeInt(result.getUpdatedCount());
+        out.writeInt(result.getErrorCount());
+        out.writeBoolean(result.isApplied());
+        out.writeInt(result.getErrors().size());
+        for (String error : result.getErrors()) {
+            out.writeUTF(error);
+        }
+    }
+    
+    static ProductImport readImport(DataInputStream in) throws IOException {
+        int rows = in.readInt();
+        int added = in.readInt();
+        int updated = in.readInt();
+        int errorCount = in.readInt();
+        boolean applied = in.readBoolean();
+        int count = readCount(in, 2);
+        List<String> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            errors.add(in.readUTF());
+        }
+        return new ProductImport(rows, added, updated, errorCount, applied, errors);
+    }
+    
+    static void writeReport(DataOutput out, SalesReport report) throws IOException {
+        writeDate(out, report.getFrom());
+        writeDate(out, report.getTo());
+        out.writeDouble(report.getTotalRevenue());
+        out.writeLong(report.getTotalQuantity());
+        out.writeLong(report.getOrderCount());
+        writeTotals(out, report.getTopProducts());
+        writeTotals(out, report.getCategories());
+        List<PriceComparison> comparisons = report.getPriceComparisons();
+        out.writeInt(comparisons.size());
+        for (PriceComparison c : comparisons) {
+            out.writeUTF(c.getLabel());
+            out.writeDouble(c.getLowPrice());
+            out.writeDouble(c.getLowDailyQuantity());
+            out.writeDouble(c.getHighPrice());
+            out.writeDouble(c.getHighDailyQuantity());
+        }
+        out.writeLong(report.getEntriesScanned());
+        out.writeLong(report.getElapsedMillis());
+    }
+    
+    static SalesReport readReport(DataInputStream in) throws IOException {
+        LocalDate from = readDate(in);
+        LocalDate to = readDate(in);
+        double revenue = in.readDouble();
+        long quantity = in.readLong();
+        long orders = in.readLong();
+        List<SalesTotal> topProducts = readTotals(in);
+        List<SalesTotal> categories = readTotals(in);
+        int count = readCount(in, 2 + 4 * 8);
+        List<PriceComparison> comparisons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            comparisons.add(new PriceComparison(in.readUTF(), in.readDouble(), in.readDouble(),
+                    in.readDouble(), in.readDouble()));
+        }
+        return new SalesReport(from, to, revenue, quantity, orders, topProducts, categories, comparisons,
+                in.readLong(), in.readLong());
+    }
+}
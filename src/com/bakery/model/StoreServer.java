@@ -0,0 +1,434 @@
+package com.bakery.model;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StoreServer shares one DataStore with the tills connected to it over TCP
+ * Tills use RemoteDataStore; the wire format is described in StoreProtocol
+ *
+ * Each connection has its own thread, which answers requests in the order they arrive
+ * and flushes the responses to pipelined requests together once no more are waiting.
+ * Reports and durability waits run on a separate pool instead, so they do not hold up
+ * the stock updates queued behind them. The DataStore does its own locking, so tills
+ * selling different products are served in parallel.
+ *
+ * Tills that subscribe get every product change pushed to them, so their tables stay
+ * current without reloading the catalog.
+ */
+public class StoreServer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Change batches queued for a till before it is told to reload instead
+    private static final int EVENT_QUEUE_CAPACITY = 4096;
+    private static final long EVENT_POLL_MILLIS = 500;
+    // A till that connects must say what it is within this time
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    // Largest import file a till may upload; a million-product CSV is well under it
+    private static final long MAX_UPLOAD_BYTES = 256L * 1024 * 1024;
+    private static final long REJECTED_UPLOAD = -1;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private final DataStore store;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final ExecutorService slowRequests;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    // Import files being uploaded, by upload id; each connection also keeps the ids of its own
+    private final Map<Long, Path> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean running = true;
+    
+    // Bind to the given address; call start() to accept tills
+    public StoreServer(DataStore store, InetSocketAddress address) throws IOException {
+        this.store = store;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(address);
+        this.connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "bakery-server-connection-" + connectionCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.slowRequests = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "bakery-server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    // Start accepting connections on a background thread
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "bakery-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    // Port the server is listening on
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    // Stop accepting tills and drop the open connections
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+        connections.shutdown();
+        slowRequests.shutdown();
+        for (Path upload : uploads.values()) {
+            Files.deleteIfExists(upload);
+        }
+    }
+    
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                clients.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting till connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        EventStream events = null;
+        // Uploads started on this connection and not imported yet, with the bytes received so far
+        // (REJECTED_UPLOAD once one has been turned away)
+        Map<Long, Long> ownUploads = new ConcurrentHashMap<>();
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            if (in.readInt() != StoreProtocol.MAGIC || in.readInt() != StoreProtocol.VERSION) {
+                System.err.println("Rejected connection from " + socket.getRemoteSocketAddress()
+                        + ": not a compatible till");
+                return;
+            }
+            // Tills may be idle for as long as they like once connected
+            socket.setSoTimeout(0);
+            out.writeInt(StoreProtocol.MAGIC);
+            out.writeInt(StoreProtocol.VERSION);
+            out.flush();
+            
+            byte[] frame;
+            while ((frame = StoreProtocol.readFrame(in)) != null) {
+                DataInputStream request = new DataInputStream(new ByteArrayInputStream(frame));
+                int requestId = request.readInt();
+                byte op = request.readByte();
+                if (op == StoreProtocol.SUBSCRIBE && events == null) {
+                    events = new EventStream(socket, out);
+                    store.addProductListener(events);
+                    connections.execute(events);
+                }
+                if (StoreProtocol.isSlow(op)) {
+                    slowRequests.execute(() -> {
+                        try {
+                            respond(out, requestId, op, request, ownUploads, true);
+                        } catch (IOException e) {
+                            closeQuietly(socket);
+                        }
+                    });
+                } else {
+                    // Flush once the pipelined requests read so far have all been answered
+                    respond(out, requestId, op, request, ownUploads, in.available() == 0);
+                }
+            }
+        } catch (SocketException | EOFException e) {
+            // Till disconnected
+        } catch (SocketTimeoutException e) {
+            System.err.println("Rejected connection from " + socket.getRemoteSocketAddress()
+                    + ": no handshake within " + HANDSHAKE_TIMEOUT_MILLIS + " ms");
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error serving till " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+            }
+        } finally {
+            clients.remove(socket);
+            if (events != null) {
+                store.removeProductListener(events);
+                events.close();
+            }
+            // Drop the files this till uploaded but never imported
+            for (Long uploadId : ownUploads.keySet()) {
+                deleteUpload(uploads.remove(uploadId));
+            }
+        }
+    }
+    
+    // Run one request and write its response
+    private void respond(DataOutputStream out, int requestId, byte op, DataInputStream args, Map<Long, Long> ownUploads,
+                         boolean flush) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream result = new DataOutputStream(bytes);
+        byte status = StoreProtocol.OK;
+        try {
+            handle(op, args, result, ownUploads);
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            status = StoreProtocol.ERROR;
+            bytes.reset();
+            // writeUTF takes at most 64KB, and a message can quote whatever a till sent
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            result.writeUTF(message.length() > MAX_ERROR_LENGTH
+                    ? message.substring(0, MAX_ERROR_LENGTH) + "..." : message);
+        }
+        long mutationId = store.getLastMutationId();
+        
+        synchronized (out) {
+            out.writeInt(4 + 1 + 8 + bytes.size());
+            out.writeInt(requestId);
+            out.writeByte(status);
+            out.writeLong(mutationId);
+            bytes.writeTo(out);
+            if (flush) {
+                out.flush();
+            }
+        }
+    }
+    
+    private void handle(byte op, DataInputStream in, DataOutputStream out, Map<Long, Long> ownUploads)
+            throws IOException, InterruptedException {
+        switch (op) {
+            case StoreProtocol.GET_PRODUCTS:
+                StoreProtocol.writeProducts(out, store.getProducts());
+                break;
+            case StoreProtocol.ADD_PRODUCT:
+                store.addProduct(StoreProtocol.readProduct(in));
+                break;
+            case StoreProtocol.UPDATE_PRODUCT:
+                store.updateProduct(StoreProtocol.readProduct(in));
+                break;
+            case StoreProtocol.DELETE_PRODUCT:
+                store.deleteProduct(in.readInt());
+                break;
+            case StoreProtocol.FIND_PRODUCT:
+                StoreProtocol.writeOptionalProduct(out, store.findProductById(in.readInt()));
+                break;
+            case StoreProtocol.SEARCH_PRODUCTS:
+                StoreProtocol.writeBitSet(out, store.searchProductIds(in.readUTF()));
+                break;
+            case StoreProtocol.QUERY_PRODUCTS:
+                String query = in.readUTF();
+                ProductSort sort = ProductSort.values()[in.readByte()];
+                StoreProtocol.writeIds(out, store.queryProductIds(query, sort, in.readBoolean()));
+                break;
+            case StoreProtocol.GET_PRODUCTS_BY_ID:
+                StoreProtocol.writeOptionalProducts(out, store.getProductsById(StoreProtocol.readIds(in)));
+                break;
+            case StoreProtocol.LOW_STOCK_PRODUCTS:
+                StoreProtocol.writeProducts(out, store.getLowStockProducts());
+                break;
+            case StoreProtocol.UPDATE_STOCK:
+                out.writeBoolean(store.updateStock(in.readInt(), in.readInt()));
+                break;
+            case StoreProtocol.PLACE_ORDER:
+                Order order = StoreProtocol.readOrder(in);
+                out.writeBoolean(store.placeOrder(order));
+                out.writeLong(order.getOrderId());
+                break;
+            case StoreProtocol.ADD_SALE:
+                store.addSale(in.readDouble(), in.readInt());
+                break;
+            case StoreProtocol.GET_SALES:
+                StoreProtocol.writeSales(out, store.getSales(StoreProtocol.readDateTime(in),
+                        StoreProtocol.readDateTime(in)));
+                break;
+            case StoreProtocol.SALES_BY_PRODUCT:
+                StoreProtocol.writeTotals(out, store.getSalesByProduct());
+                break;
+            case StoreProtocol.SALES_BY_CATEGORY:
+                StoreProtocol.writeTotals(out, store.getSalesByCategory());
+                break;
+            case StoreProtocol.SALES_BY_HOUR:
+                StoreProtocol.writeTotals(out, store.getSalesByHour(StoreProtocol.readDate(in)));
+                break;
+            case StoreProtocol.SALES_BY_DAY:
+                StoreProtocol.writeTotals(out, store.getSalesByDay(StoreProtocol.readDate(in),
+                        StoreProtocol.readDate(in)));
+                break;
+            case StoreProtocol.RUN_REPORT:
+                StoreProtocol.writeReport(out, store.runSalesReport(StoreProtocol.readDate(in),
+                        StoreProtocol.readDate(in), in.readInt(), new SalesReport.Progress() {
+                            @Override
+                            public void update(int done, int total) {
+                                // Progress is not sent to the till
+                            }
+                            
+                            @Override
+                            public boolean isCancelled() {
+                                return !running;
+                            }
+                        }));
+                break;
+            case StoreProtocol.REBUILD_ROLLUPS:
+                out.writeLong(store.rebuildSalesRollups());
+                break;
+            case StoreProtocol.TOTAL_SALES:
+                out.writeDouble(store.getTotalSales());
+                break;
+            case StoreProtocol.TOTAL_PRODUCTS_SOLD:
+                out.writeInt(store.getTotalProductsSold());
+                break;
+            case StoreProtocol.NEXT_PRODUCT_ID:
+                out.writeInt(store.getNextProductId());
+                break;
+            case StoreProtocol.AWAIT_DURABLE:
+                out.writeBoolean(store.awaitDurable(in.readLong(), in.readLong()));
+                break;
+            case StoreProtocol.UPLOAD_CHUNK:
+                appendUpload(in.readLong(), in, ownUploads);
+                break;
+            case StoreProtocol.SUBSCRIBE:
+                // The connection's event stream was started by serve()
+                break;
+            case StoreProtocol.IMPORT_PRODUCTS:
+                long uploadId = in.readLong();
+                Path upload = ownUploads.remove(uploadId) != null ? uploads.remove(uploadId) : null;
+                if (upload == null) {
+                    throw new IOException("No file was uploaded for this import");
+                }
+                try {
+                    StoreProtocol.writeImport(out, store.importProducts(upload, in.readBoolean()));
+                } finally {
+                    Files.deleteIfExists(upload);
+                }
+                break;
+            default:
+                throw new IOException("Unknown operation: " + op);
+        }
+    }
+    
+    // Add a chunk of an import file to its temporary copy on the server
+    // An upload that grows past MAX_UPLOAD_BYTES is dropped, and so are its later chunks and import
+    private void appendUpload(long uploadId, DataInputStream in, Map<Long, Long> ownUploads) throws IOException {
+        byte[] chunk = new byte[StoreProtocol.readCount(in, 1)];
+        in.readFully(chunk);
+        Long received = ownUploads.get(uploadId);
+        if (received == null) {
+            if (uploads.containsKey(uploadId)) {
+                throw new IOException("Upload id is in use by another till");
+            }
+            uploads.put(uploadId, Files.createTempFile("bakery-import-", ".csv"));
+            received = 0L;
+        }
+        if (received == REJECTED_UPLOAD || received + chunk.length > MAX_UPLOAD_BYTES) {
+            ownUploads.put(uploadId, REJECTED_UPLOAD);
+            deleteUpload(uploads.remove(uploadId));
+            throw new IOException("Import file is larger than the server accepts ("
+                    + MAX_UPLOAD_BYTES / (1024 * 1024) + " MB)");
+        }
+        Files.write(uploads.get(uploadId), chunk, StandardOpenOption.APPEND);
+        ownUploads.put(uploadId, received + chunk.length);
+    }
+    
+    private static void deleteUpload(Path upload) {
+        if (upload == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException e) {
+            System.err.println("Error deleting import upload: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Pushes product changes to one subscribed till
+     * The store's threads only queue the changes and this stream's own thread writes them,
+     * so a slow till never holds up the store; if the queue overflows the till is told to
+     * reload its catalog instead.
+     */
+    private final class EventStream implements ProductListener, Runnable {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final BlockingQueue<List<ProductChange>> queue = new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY);
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+        
+        EventStream(Socket socket, DataOutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+        
+        @Override
+        public void productsChanged(List<ProductChange> changes) {
+            if (!queue.offer(changes)) {
+                overflowed = true;
+            }
+        }
+        
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    List<ProductChange> changes = queue.poll(EVENT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (overflowed) {
+                        overflowed = false;
+                        queue.clear();
+                        changes = List.of(ProductChange.reload());
+                    }
+                    // Send every batch queued so far with one flush
+                    while (changes != null) {
+                        write(changes);
+                        changes = queue.poll();
+                    }
+                    synchronized (out) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                closeQuietly(socket);
+            } catch (InterruptedException e) {
+                // Server is shutting down
+            }
+        }
+        
+        private void write(List<ProductChange> changes) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changes.size() * 16);
+            StoreProtocol.writeChanges(new DataOutputStream(bytes), changes);
+            synchronized (out) {
+                out.writeInt(4 + 1 + 8 + bytes.size());
+                out.writeInt(0);
+                out.writeByte(StoreProtocol.EVENT);
+                out.writeLong(store.getLastMutationId());
+                bytes.writeTo(out);
+            }
+        }
+        
+        void close() {
+            closed = true;
+        }
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
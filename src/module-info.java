@@ -2,6 +2,9 @@ module com.bakery.app {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires jdk.unsupported;
+    requires java.management;
+    requires jdk.jfr;
     
     exports com.bakery.app;
     exports com.bakery.controller;
@@ -0,0 +1,194 @@
+package com.bakery.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Orders as a till that does not use Order, or means harm, could send them to the server
+ */
+class StoreServerTest {
+    private interface Arguments {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+    
+    private static final double PRICE = 2.50;
+    private static final int STOCK = 5;
+    
+    @TempDir
+    Path dataDir;
+    
+    private LocalDataStore store;
+    private StoreServer server;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private int productId;
+    private int nextRequestId;
+    
+    @BeforeEach
+    void start() throws IOException {
+        String previous = System.getProperty("bakery.data.dir");
+        System.setProperty("bakery.data.dir", dataDir.toString());
+        try {
+            store = new LocalDataStore();
+        } finally {
+            if (previous != null) {
+                System.setProperty("bakery.data.dir", previous);
+            } else {
+                System.clearProperty("bakery.data.dir");
+            }
+        }
+        productId = store.getNextProductId();
+        store.addProduct(new Product(productId, "Sourdough", "Bread", PRICE, STOCK));
+        
+        server = new StoreServer(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(StoreProtocol.MAGIC);
+        out.writeInt(StoreProtocol.VERSION);
+        out.flush();
+        assertEquals(StoreProtocol.MAGIC, in.readInt());
+        assertEquals(StoreProtocol.VERSION, in.readInt());
+    }
+    
+    @AfterEach
+    void stop() throws IOException {
+        socket.close();
+        server.close();
+        store.close();
+    }
+    
+    @Test
+    void duplicateLinesAreCheckedTogether() throws IOException {
+        DataInputStream response = placeOrder(new int[] {productId, 3}, new int[] {productId, 3});
+        assertEquals(StoreProtocol.OK, response.readByte());
+        response.readLong();
+        assertFalse(response.readBoolean(), "6 items placed against a stock of 5");
+        assertEquals(STOCK, store.findProductById(productId).getQuantity());
+        assertEquals(0, store.getTotalProductsSold());
+        
+        response = placeOrder(new int[] {productId, 2}, new int[] {productId, 3});
+        assertEquals(StoreProtocol.OK, response.readByte());
+        response.readLong();
+        assertTrue(response.readBoolean());
+        assertEquals(0, store.findProductById(productId).getQuantity());
+        assertEquals(STOCK, store.getTotalProductsSold());
+    }
+    
+    @Test
+    void negativeAndZeroQuantitiesAreRejected() throws IOException {
+        for (int quantity : new int[] {-4, 0}) {
+            DataInputStream response = placeOrder(new int[] {productId, quantity});
+            assertEquals(StoreProtocol.ERROR, response.readByte());
+        }
+        DataInputStream response = placeOrder(new int[] {productId, 1}, new int[] {productId, -1});
+        assertEquals(StoreProtocol.ERROR, response.readByte());
+        
+        assertEquals(STOCK, store.findProductById(productId).getQuantity());
+        assertEquals(0, store.getTotalSales());
+        assertEquals(0, store.getTotalProductsSold());
+    }
+    
+    @Test
+    void linesAreChargedAtTheStorePrice() throws IOException, InterruptedException {
+        DataInputStream response = placeOrder(new int[] {productId, 2});
+        assertEquals(StoreProtocol.OK, response.readByte());
+        response.readLong();
+        assertTrue(response.readBoolean());
+        long orderId = response.readLong();
+        // The ledger entry is written by the writer thread
+        assertTrue(store.awaitDurable(store.getLastMutationId(), 5000));
+        
+        assertEquals(2 * PRICE, store.getTotalSales(), 1e-9);
+        SaleEntry sale = store.getSales(LocalDateTime.now().minusDays(1),
+                LocalDateTime.now().plusDays(1)).get(0);
+        assertEquals(orderId, sale.getOrderId());
+        assertEquals(PRICE, sale.getUnitPrice(), 1e-9);
+        assertEquals(2 * PRICE, sale.getTotal(), 1e-9);
+    }
+    
+    @Test
+    void listLengthsBeyondTheFrameAreRejected() throws IOException {
+        for (byte op : new byte[] {StoreProtocol.GET_PRODUCTS_BY_ID, StoreProtocol.PLACE_ORDER}) {
+            DataInputStream response = send(op, request -> request.writeInt(Integer.MAX_VALUE));
+            assertEquals(StoreProtocol.ERROR, response.readByte());
+        }
+        DataInputStream response = send(StoreProtocol.UPLOAD_CHUNK, request -> {
+            request.writeLong(1);
+            request.writeInt(1 << 30);
+        });
+        assertEquals(StoreProtocol.ERROR, response.readByte());
+        
+        // The connection is still usable
+        response = placeOrder(new int[] {productId, 1});
+        assertEquals(StoreProtocol.OK, response.readByte());
+    }
+    
+    @Test
+    void longErrorMessagesKeepTheConnection() throws IOException {
+        byte[] header = new byte[100_000];
+        Arrays.fill(header, (byte) 'x');
+        DataInputStream response = send(StoreProtocol.UPLOAD_CHUNK, request -> {
+            request.writeLong(1);
+            request.writeInt(header.length);
+            request.write(header);
+        });
+        assertEquals(StoreProtocol.OK, response.readByte());
+        response = send(StoreProtocol.IMPORT_PRODUCTS, request -> {
+            request.writeLong(1);
+            request.writeBoolean(true);
+        });
+        assertEquals(StoreProtocol.ERROR, response.readByte());
+        response.readLong();
+        assertTrue(response.readUTF().length() < header.length);
+        
+        // The connection is still usable
+        response = placeOrder(new int[] {productId, 1});
+        assertEquals(StoreProtocol.OK, response.readByte());
+    }
+    
+    // Send PLACE_ORDER with {product id, quantity} lines priced at a cent each;
+    // returns the response from its status on
+    private DataInputStream placeOrder(int[]... lines) throws IOException {
+        return send(StoreProtocol.PLACE_ORDER, request -> {
+            request.writeInt(lines.length);
+            for (int[] line : lines) {
+                request.writeInt(line[0]);
+                request.writeUTF("Free bread");
+                request.writeDouble(0.01);
+                request.writeInt(line[1]);
+            }
+        });
+    }
+    
+    // Send a request with the given arguments; returns the response from its status on
+    private DataInputStream send(byte op, Arguments args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        int requestId = ++nextRequestId;
+        request.writeInt(requestId);
+        request.writeByte(op);
+        args.writeTo(request);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.flush();
+        
+        DataInputStream response = new DataInputStream(new ByteArrayInputStream(StoreProtocol.readFrame(in)));
+        assertEquals(requestId, response.readInt());
+        return response;
+    }
+}